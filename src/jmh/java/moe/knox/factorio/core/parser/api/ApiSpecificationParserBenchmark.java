@@ -0,0 +1,60 @@
+package moe.knox.factorio.core.parser.api;
+
+import com.google.gson.stream.JsonReader;
+import moe.knox.factorio.core.parser.api.data.RuntimeApi;
+import moe.knox.factorio.core.parser.api.data.ValueTypeInterner;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the runtime api json and the arrangement of the parsed elements.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ApiSpecificationParserBenchmark {
+    /**
+     * the size of the runtime-api.json, see {@link RuntimeApiFixtures}
+     */
+    @Param({"small", "medium", "large"})
+    public String documentSize;
+
+    private String json;
+
+    @Setup(Level.Trial)
+    public void loadFixture() throws IOException {
+        json = RuntimeApiFixtures.load(documentSize);
+    }
+
+    @Benchmark
+    public RuntimeApi parse() {
+        return new ApiSpecificationParser().parse(new StringReader(json));
+    }
+
+    @Benchmark
+    public RuntimeApi arrangeElements(UnarrangedApi unarrangedApi) {
+        unarrangedApi.runtimeApi.arrangeElements();
+        return unarrangedApi.runtimeApi;
+    }
+
+    /**
+     * arrangeElements sorts in place, so every invocation needs a freshly parsed api
+     */
+    @State(Scope.Thread)
+    public static class UnarrangedApi {
+        private RuntimeApi runtimeApi;
+
+        @Setup(Level.Invocation)
+        public void parse(ApiSpecificationParserBenchmark benchmark) throws IOException {
+            try (ValueTypeInterner.Scope ignored = ValueTypeInterner.open()) {
+                runtimeApi = ParsingHelper.getGson().getAdapter(RuntimeApi.class).read(new JsonReader(new StringReader(benchmark.json)));
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package moe.knox.factorio.core.parser.api;
+
+import moe.knox.factorio.core.parser.api.data.RuntimeApi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The checked-in `runtime-api.json` files the benchmarks run against, one per document size.
+ * <p>
+ * They are generated with the shape of the real api files, so the benchmarks don't need the network. They are not the
+ * api of any real version: small is 2.7 MB, medium 3.1 MB and large 3.5 MB of json, which spans the sizes of the
+ * api files of the 1.1 versions. A benchmark result tells how the cost grows with the document size, it is no
+ * measurement of a factorio version.
+ */
+public final class RuntimeApiFixtures {
+    private RuntimeApiFixtures() {
+    }
+
+    /**
+     * @param documentSize `small`, `medium` or `large`
+     */
+    public static String load(String documentSize) throws IOException {
+        String resource = "/fixtures/" + documentSize + "/runtime-api.json.gz";
+        try (InputStream inputStream = new GZIPInputStream(Objects.requireNonNull(RuntimeApiFixtures.class.getResourceAsStream(resource), resource))) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @return the parsed and arranged api of the document of this size
+     */
+    public static RuntimeApi parse(String documentSize) throws IOException {
+        return new ApiSpecificationParser().parse(new StringReader(load(documentSize)));
+    }
+}
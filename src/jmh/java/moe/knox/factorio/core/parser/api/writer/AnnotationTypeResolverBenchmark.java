@@ -0,0 +1,71 @@
+package moe.knox.factorio.core.parser.api.writer;
+
+import moe.knox.factorio.core.parser.api.RuntimeApiFixtures;
+import moe.knox.factorio.core.parser.api.data.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of every type referenced by the api, with a new resolver (and so an empty cache) per invocation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class AnnotationTypeResolverBenchmark {
+    /**
+     * the size of the runtime-api.json, see {@link RuntimeApiFixtures}
+     */
+    @Param({"small", "medium", "large"})
+    public String documentSize;
+
+    private final List<ValueType> types = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void collectTypes() throws IOException {
+        RuntimeApi runtimeApi = RuntimeApiFixtures.parse(documentSize);
+
+        for (FactorioClass factorioClass : runtimeApi.classes) {
+            for (Method method : factorioClass.methods) {
+                collectTypes(method.parameters);
+                if (method.returnType != null) {
+                    types.add(method.returnType);
+                }
+            }
+            for (Attribute attribute : factorioClass.attributes) {
+                types.add(attribute.type);
+            }
+        }
+
+        for (Event event : runtimeApi.events) {
+            collectTypes(event.data);
+        }
+
+        for (Concept concept : runtimeApi.concepts) {
+            types.add(concept.type());
+        }
+    }
+
+    private void collectTypes(List<Parameter> parameters) {
+        if (parameters != null) {
+            for (Parameter parameter : parameters) {
+                types.add(parameter.type);
+            }
+        }
+    }
+
+    @Benchmark
+    public void getType(Blackhole blackhole) {
+        var typeResolver = new AnnotationTypeResolver();
+        for (ValueType type : types) {
+            blackhole.consume(typeResolver.getType(type));
+        }
+    }
+}
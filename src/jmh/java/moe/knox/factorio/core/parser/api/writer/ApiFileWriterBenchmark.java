@@ -0,0 +1,38 @@
+package moe.knox.factorio.core.parser.api.writer;
+
+import moe.knox.factorio.core.parser.api.RuntimeApiFixtures;
+import moe.knox.factorio.core.parser.api.data.RuntimeApi;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation of the stubs, without any file system access.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ApiFileWriterBenchmark {
+    /**
+     * the size of the runtime-api.json, see {@link RuntimeApiFixtures}
+     */
+    @Param({"small", "medium", "large"})
+    public String documentSize;
+
+    private RuntimeApi runtimeApi;
+
+    @Setup(Level.Trial)
+    public void parseFixture() throws IOException {
+        runtimeApi = RuntimeApiFixtures.parse(documentSize);
+    }
+
+    @Benchmark
+    public void writeRuntimeApi() throws IOException {
+        ApiFileWriter.fromIoWriter(Writer.nullWriter()).writeRuntimeApi(runtimeApi);
+    }
+}
@@ -0,0 +1,58 @@
+package moe.knox.factorio.core.parser.api.writer;
+
+import moe.knox.factorio.core.parser.api.RuntimeApiFixtures;
+import moe.knox.factorio.core.parser.api.data.RuntimeApi;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the stub generation with the {@link java.io.Writer} based output compared to the {@link Utf8ChannelStubOutput}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StubOutputBenchmark {
+    /**
+     * the size of the runtime-api.json, see {@link RuntimeApiFixtures}
+     */
+    @Param({"small", "medium", "large"})
+    public String documentSize;
+
+    private RuntimeApi runtimeApi;
+    private Path outputFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        runtimeApi = RuntimeApiFixtures.parse(documentSize);
+        outputFile = Files.createTempFile("factorio", ".lua");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(outputFile);
+    }
+
+    @Benchmark
+    public void writer() throws IOException {
+        try (var writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile.toFile())))) {
+            ApiFileWriter.fromIoWriter(writer).writeRuntimeApi(runtimeApi);
+        }
+    }
+
+    @Benchmark
+    public void utf8Channel() throws IOException {
+        try (var output = Utf8ChannelStubOutput.open(outputFile)) {
+            new ApiFileWriter(output).writeRuntimeApi(runtimeApi);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package moe.knox.factorio.core.parser.prototype;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.safety.Safelist;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of the property types and descriptions of a wiki page, compared with the previous extraction, which
+ * serialised every paragraph to html, split it at the line breaks and parsed every part again.
+ * Run with the gc profiler to compare the allocations.
+ * <p>
+ * The page is synthetic, it has the markup of a wiki prototype page with 34 properties, but it is not a saved page of
+ * the wiki. The results tell the cost per paragraph of this markup, not of a real page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class PropertyBlockExtractorBenchmark {
+    private static final String PAGE = "/fixtures/wiki/Prototype_Character.html";
+
+    private Elements paragraphs;
+
+    @Setup(Level.Trial)
+    public void loadPage() throws IOException {
+        Document document;
+        try (InputStream inputStream = Objects.requireNonNull(getClass().getResourceAsStream(PAGE), PAGE)) {
+            document = Jsoup.parse(inputStream, null, "https://wiki.factorio.com/Prototype/Character");
+        }
+        paragraphs = document.select("h3 + p");
+    }
+
+    @Benchmark
+    public void extract(Blackhole blackhole) {
+        for (Element paragraph : paragraphs) {
+            blackhole.consume(PropertyBlockExtractor.extract(paragraph));
+        }
+    }
+
+    @Benchmark
+    public void reparse(Blackhole blackhole) {
+        for (Element paragraph : paragraphs) {
+            blackhole.consume(reparse(paragraph));
+        }
+    }
+
+    /**
+     * The extraction as it was done in {@link PrototypeParser} before
+     */
+    private static PropertyBlockExtractor.PropertyBlock reparse(Element element) {
+        String typeName = null;
+        String typeLink = null;
+        boolean isArray = false;
+        List<String> descriptions = new ArrayList<>();
+
+        String[] splittedElementHtml = element.html().split("<br>");
+        for (int i = 0; i < splittedElementHtml.length; i++) {
+            if (i == 0) {
+                String[] splittedType = splittedElementHtml[i].split(":");
+                if (!Jsoup.clean(splittedType[0], Safelist.none()).equals("Type")) {
+                    return null;
+                }
+                Document typeDocument = Jsoup.parseBodyFragment(splittedType[1]);
+
+                if (typeDocument.text().startsWith("table of ")) {
+                    isArray = true;
+                }
+
+                Elements links = typeDocument.select("a");
+                if (links.size() == 0) {
+                    continue;
+                }
+                Element lastLink = links.last();
+                typeName = lastLink.text();
+                typeLink = lastLink.attr("href");
+            } else {
+                Document document = Jsoup.parseBodyFragment(splittedElementHtml[i]);
+                String description = document.text().strip().replaceAll("(::)|(\\r\\n|\\r|\\n)", "");
+                descriptions.add(description.strip().replaceAll("^[:]+|[:]+$", "").strip());
+            }
+        }
+
+        return new PropertyBlockExtractor.PropertyBlock(typeName, typeLink, isArray, descriptions);
+    }
+}
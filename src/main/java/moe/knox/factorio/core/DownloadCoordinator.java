@@ -0,0 +1,233 @@
+package moe.knox.factorio.core;
+
+import com.intellij.openapi.application.ApplicationManager;
+import moe.knox.factorio.intellij.FactorioLibraryProvider;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Keeps track of the downloads of the API, the prototypes and the lualib, one future per artifact and version. It is
+ * shared by all projects, so a version is downloaded only once, even when several projects use it.
+ * <p>
+ * A download can name the directory which stays in use while it runs, like the stubs which are regenerated in place,
+ * so the libraries do not disappear while they are updated. When all downloads of a version are finished and one of
+ * them changed files, the libraries are reloaded once.
+ */
+public final class DownloadCoordinator {
+    private static DownloadCoordinator instance;
+
+    private final Consumer<String> reload;
+
+    // guarded by this
+    private final Map<Key, Download> downloads = new HashMap<>();
+    private final Set<String> changedVersions = new HashSet<>();
+
+    public enum Artifact {
+        API,
+        PROTOTYPES,
+        LUALIB
+    }
+
+    public enum Status {
+        /**
+         * the artifact was not downloaded since the start of the IDE
+         */
+        NONE,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    /**
+     * @param version the selected Factorio version
+     */
+    public record Key(@NotNull Artifact artifact, @NotNull String version) {
+    }
+
+    /**
+     * @param dir     the directory of the artifact
+     * @param changed if files were written, which are part of the libraries
+     */
+    public record Result(@NotNull Path dir, boolean changed) {
+    }
+
+    private record Download(CompletableFuture<Result> future, @Nullable Path previous) {
+    }
+
+    /**
+     * Completes a download which failed. A download which failed after it wrote some files changed them as well.
+     */
+    public static final class Failure extends CoreException {
+        private final boolean changed;
+
+        public Failure(String message, boolean changed) {
+            super(message);
+            this.changed = changed;
+        }
+
+        public Failure(String message, Throwable e, boolean changed) {
+            super(message, e);
+            this.changed = changed;
+        }
+
+        public boolean isChanged() {
+            return changed;
+        }
+    }
+
+    /**
+     * @param reload called with the version, after all its downloads are finished and one of them changed files
+     */
+    public DownloadCoordinator(@NotNull Consumer<String> reload) {
+        this.reload = reload;
+    }
+
+    /**
+     * The coordinator of all projects, it reloads the Library-Provider
+     */
+    public static synchronized DownloadCoordinator getInstance() {
+        if (instance == null) {
+            instance = new DownloadCoordinator(version -> ApplicationManager.getApplication().invokeLater(FactorioLibraryProvider::reload));
+        }
+        return instance;
+    }
+
+    /**
+     * Start the download, unless the download of the key is already running. The starter runs the download and
+     * completes the future with its result, or with a {@link Failure}. The key stays reserved until then, so no second
+     * download writes into the same directory. The starter has to complete the future also when its task is cancelled
+     * or never run.
+     *
+     * @param previous the directory which stays in use while the download runs, null if there is none
+     * @return the future of the new or the running download
+     */
+    @NotNull
+    public CompletableFuture<Result> start(@NotNull Key key, @Nullable Path previous, @NotNull Consumer<CompletableFuture<Result>> starter) {
+        CompletableFuture<Result> future;
+        synchronized (this) {
+            Download running = downloads.get(key);
+            if (running != null && !running.future().isDone()) {
+                return running.future();
+            }
+
+            future = new CompletableFuture<>();
+            downloads.put(key, new Download(future, previous));
+        }
+
+        future.whenComplete((result, error) -> finished(key, result != null ? result.changed() : error instanceof Failure failure && failure.isChanged()));
+        try {
+            starter.accept(future);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Does not wait for the download.
+     */
+    @NotNull
+    public synchronized Status getStatus(@NotNull Key key) {
+        Download download = downloads.get(key);
+        if (download == null) {
+            return Status.NONE;
+        } else if (!download.future().isDone()) {
+            return Status.RUNNING;
+        } else if (download.future().isCompletedExceptionally()) {
+            return Status.FAILED;
+        }
+        return Status.DONE;
+    }
+
+    public boolean isRunning(@NotNull Key key) {
+        return getStatus(key) == Status.RUNNING;
+    }
+
+    /**
+     * @return true if the artifact is downloaded for any version
+     */
+    public synchronized boolean isRunning(@NotNull Artifact artifact) {
+        for (Map.Entry<Key, Download> download : downloads.entrySet()) {
+            if (download.getKey().artifact() == artifact && !download.getValue().future().isDone()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the directory which stays in use while the download of the key runs, null if there is none or the
+     * download is not running
+     */
+    @Nullable
+    public synchronized Path getPrevious(@NotNull Key key) {
+        Download download = downloads.get(key);
+        if (download == null || download.future().isDone() || download.previous() == null) {
+            return null;
+        }
+        return Files.isDirectory(download.previous()) ? download.previous() : null;
+    }
+
+    /**
+     * Wait for the download of the key, for callers which must not block use {@link #getStatus(Key)}.
+     *
+     * @return null if there is no download, it failed or did not finish in time
+     */
+    @Nullable
+    public Result await(@NotNull Key key, @NotNull Duration timeout) {
+        CompletableFuture<Result> future;
+        synchronized (this) {
+            Download download = downloads.get(key);
+            if (download == null) {
+                return null;
+            }
+            future = download.future();
+        }
+
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reload once, after the last download of the version finished.
+     */
+    private void finished(Key key, boolean changed) {
+        synchronized (this) {
+            if (changed) {
+                changedVersions.add(key.version());
+            }
+
+            for (Map.Entry<Key, Download> download : downloads.entrySet()) {
+                if (download.getKey().version().equals(key.version()) && !download.getValue().future().isDone()) {
+                    return;
+                }
+            }
+
+            if (!changedVersions.remove(key.version())) {
+                return;
+            }
+        }
+
+        reload.accept(key.version());
+    }
+}
@@ -1,78 +1,146 @@
 package moe.knox.factorio.core;
 
-import com.intellij.openapi.util.JDOMUtil;
-import com.intellij.serialization.SerializationException;
-import com.intellij.util.xmlb.XmlSerializer;
-import moe.knox.factorio.core.parser.prototype.PrototypeParser;
-import org.jdom.Document;
-import org.jdom.Element;
-
-import java.io.File;
-import java.io.UncheckedIOException;
-import java.net.MalformedURLException;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.application.PathManager;
+import moe.knox.factorio.core.util.WriteBehindFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Metadata of the scraped prototypes.
+ * <p>
+ * The state is saved as json lines: the first line has the single values, every following line is a prototype type.
+ * Changes are written in the background and reads never wait for it.
+ */
 public class FactorioPrototypeState {
-    private static FactorioPrototypeState instance;
-    private static String file = PrototypeParser.prototypeRootPath + "prototype.xml";
+    private static final String file = PathManager.getPluginsPath() + "/factorio_autocompletion/factorio_prototypes/prototype_state.jsonl";
+    private static final int format = 1;
+
+    /**
+     * changes within this time are written together
+     */
+    private static final long flushDelayMillis = 500;
+
+    private final Gson gson = new Gson();
+    private final AtomicReference<DataHolder> data;
+    private final WriteBehindFile writer;
 
-    private DataHolder data;
+    /**
+     * Immutable, every change creates a new one.
+     */
+    public static final class DataHolder {
+        public final List<String> prototypeTypes;
+        public final String kuckuck;
 
-    public static class DataHolder {
         public DataHolder() {
-            kuckuck = "";
-            prototypeTypes = new ArrayList<>();
+            this(new ArrayList<>(), "");
         }
 
-        public List<String> prototypeTypes;
-        public String kuckuck;
+        public DataHolder(List<String> prototypeTypes, String kuckuck) {
+            this.prototypeTypes = List.copyOf(prototypeTypes);
+            this.kuckuck = kuckuck;
+        }
     }
 
-    private FactorioPrototypeState() {
-        try {
-            data = XmlSerializer.deserialize(new File(file).toURI().toURL(), DataHolder.class);
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
-        } catch (SerializationException e) {
-//            e.printStackTrace();
-            data = new DataHolder();
-        }
+    FactorioPrototypeState(@NotNull Path file, long flushDelayMillis) {
+        data = new AtomicReference<>(load(file));
+        writer = new WriteBehindFile(file, flushDelayMillis, this::serialize);
     }
 
     public void setKuckuck(String kuckuck) {
-        data.kuckuck = kuckuck;
-        save();
+        data.updateAndGet(current -> new DataHolder(current.prototypeTypes, kuckuck));
+        writer.changed();
     }
 
     public List<String> getPrototypeTypes() {
-        return data.prototypeTypes;
+        return data.get().prototypeTypes;
     }
 
     public void setPrototypeTypes(List<String> prototypeTypes) {
-        data.prototypeTypes = prototypeTypes;
-        save();
+        data.updateAndGet(current -> new DataHolder(prototypeTypes, current.kuckuck));
+        writer.changed();
     }
 
-    private void save() {
-        // serialize data to have it as xml elements
-        Element serializedData = XmlSerializer.serialize(data);
+    /**
+     * Write pending changes now.
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
 
-        // create xml document from serialized data
-        Document document = new Document(serializedData);
+    WriteBehindFile getWriter() {
+        return writer;
+    }
 
-        // save document to file
-        try {
-            JDOMUtil.write(document, "\n");
-        } catch (UncheckedIOException e) {
-            e.printStackTrace();
+    private byte[] serialize() {
+        DataHolder current = data.get();
+
+        JsonObject header = new JsonObject();
+        header.addProperty("format", format);
+        header.addProperty("kuckuck", current.kuckuck);
+
+        StringBuilder content = new StringBuilder(gson.toJson(header)).append('\n');
+        for (String prototypeType : current.prototypeTypes) {
+            content.append(gson.toJson(prototypeType)).append('\n');
         }
+
+        return content.toString().getBytes(StandardCharsets.UTF_8);
     }
 
-    public static synchronized FactorioPrototypeState getInstance() {
-        if (instance == null) {
-            instance = new FactorioPrototypeState();
+    /**
+     * A missing or broken file is an empty state, it is filled again by the next scrape.
+     */
+    private static DataHolder load(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return new DataHolder();
         }
-        return instance;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String headerLine = reader.readLine();
+            if (headerLine == null) {
+                return new DataHolder();
+            }
+
+            JsonObject header = JsonParser.parseString(headerLine).getAsJsonObject();
+            if (!header.has("format") || header.get("format").getAsInt() != format) {
+                return new DataHolder();
+            }
+
+            List<String> prototypeTypes = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    prototypeTypes.add(JsonParser.parseString(line).getAsString());
+                }
+            }
+
+            return new DataHolder(prototypeTypes, header.has("kuckuck") ? header.get("kuckuck").getAsString() : "");
+        } catch (IOException | JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+            e.printStackTrace();
+            return new DataHolder();
+        }
+    }
+
+    public static FactorioPrototypeState getInstance() {
+        return InstanceHolder.instance;
+    }
+
+    /**
+     * The state is loaded by the first call of {@link #getInstance()}, without locking later calls.
+     */
+    private static class InstanceHolder {
+        private static final FactorioPrototypeState instance = new FactorioPrototypeState(Paths.get(file), flushDelayMillis);
     }
 }
@@ -1,6 +1,5 @@
 package moe.knox.factorio.core;
 
-import com.google.gson.Gson;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.diagnostic.Logger;
@@ -9,39 +8,42 @@ import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.NlsContexts;
 import com.intellij.openapi.util.io.FileUtil;
+import moe.knox.factorio.core.http.ResumableDownloader;
 import moe.knox.factorio.core.parser.Parser;
+import moe.knox.factorio.core.util.BlobStore;
+import moe.knox.factorio.core.util.ZipExtractor;
+import moe.knox.factorio.core.version.TagCatalog;
 import moe.knox.factorio.intellij.FactorioState;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class LuaLibDownloader extends Parser {
     private static final Logger LOG = Logger.getInstance(Parser.class);
 
     public static final String luaLibRootPath = PathManager.getPluginsPath() + "/factorio_autocompletion/lualib/";
     public static final String prototypeRootPath = PathManager.getPluginsPath() + "/factorio_autocompletion/core_prototypes/";
-    public static final String lualibGithubTagsLink = "https://api.github.com/repos/wube/factorio-data/git/refs/tags";
-
-    private static AtomicBoolean downloadInProgress = new AtomicBoolean(false);
+    public static final String downloadRootPath = PathManager.getPluginsPath() + "/factorio_autocompletion/downloads/";
 
     private String saveDir;
     private String prototypeSaveDir;
     private FactorioState config;
-    private RefTag tag;
+    private TagCatalog.Tag tag;
 
     public LuaLibDownloader(@Nullable Project project, String saveDir, String prototypeSaveDir, @NlsContexts.ProgressTitle @NotNull String title, boolean canBeCancelled) {
         this(project, saveDir, prototypeSaveDir, null, title, canBeCancelled);
     }
 
-    public LuaLibDownloader(@Nullable Project project, String saveDir, String prototypeSaveDir, RefTag tag, @NlsContexts.ProgressTitle @NotNull String title, boolean canBeCancelled) {
+    public LuaLibDownloader(@Nullable Project project, String saveDir, String prototypeSaveDir, TagCatalog.Tag tag, @NlsContexts.ProgressTitle @NotNull String title, boolean canBeCancelled) {
         super(project, title, canBeCancelled);
         this.saveDir = saveDir;
         this.prototypeSaveDir = prototypeSaveDir;
@@ -58,11 +60,10 @@ public class LuaLibDownloader extends Parser {
         return getCurrentLink(project, true);
     }
 
+    /**
+     * The new version is extracted next to the current one, which stays in use until it is replaced.
+     */
     private static String getCurrentLink(Project project, boolean isPrototype) {
-        if (downloadInProgress.get()) {
-            return null;
-        }
-
         FactorioState config = FactorioState.getInstance(project);
         String lualibPath = luaLibRootPath + config.selectedFactorioVersion.version();
         String prototypePath = prototypeRootPath + config.selectedFactorioVersion.version();
@@ -77,16 +78,14 @@ public class LuaLibDownloader extends Parser {
             }
         } else {
             // else request download
-            if (downloadInProgress.compareAndSet(false, true)) {
-                ProgressManager.getInstance().run(new LuaLibDownloader(project, lualibPath, prototypePath, "Download Factorio Lualib", false));
-            }
+            startDownload(project, null);
         }
 
         return null;
     }
 
     public static void removeCurrentLualib(Project project) {
-        if (!downloadInProgress.get()) {
+        if (!DownloadCoordinator.getInstance().isRunning(DownloadCoordinator.Artifact.LUALIB)) {
             FactorioState config = FactorioState.getInstance(project);
             String apiPath = luaLibRootPath;
             FileUtil.delete(new File(apiPath));
@@ -98,6 +97,21 @@ public class LuaLibDownloader extends Parser {
         }
     }
 
+    /**
+     * Remove the lualib of all versions from the blob store, so their blobs can be collected. Without it, the dirs
+     * removed by {@link #removeCurrentLualib} are restored from the store.
+     */
+    public static void forgetStoredLualibs() {
+        BlobStore blobStore = BlobStore.getInstance();
+        try {
+            blobStore.forget("lualib");
+            blobStore.forget("core_prototypes");
+            blobStore.collectGarbage();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * When an update is available it will also remove the old one and start the download of the new one.
      *
@@ -113,158 +127,258 @@ public class LuaLibDownloader extends Parser {
         File prototypeFile = new File(prototypePath);
         if (lualibFile.exists() && prototypeFile.exists()) {
             if (config.selectedFactorioVersion.latest()) {
-                RefTag[] tags = downloadTags();
-                if (tags != null) {
-                    String tag = tags[tags.length - 1].ref;
-                    if (!tag.substring(tag.lastIndexOf("/") + 1).equals(config.currentLualibVersion)) {
-                        removeCurrentLualib(project);
-
-                        // download new lualib
-                        if (downloadInProgress.compareAndSet(false, true)) {
-                            ProgressManager.getInstance().run(new LuaLibDownloader(project, lualibPath, prototypePath, tags[tags.length - 1], "Download Factorio Lualib", false));
+                CompletableFuture<List<TagCatalog.Tag>> tags = TagCatalog.getInstance().getTagsAsync();
+                if (!tags.isDone()) {
+                    // the startup does not wait for GitHub, the update is started when the tags are there
+                    tags.whenComplete((refreshedTags, error) -> ApplicationManager.getApplication().invokeLater(() -> {
+                        if (project.isDisposed()) {
+                            return;
+                        }
+                        if (error != null) {
+                            NotificationService.getInstance(project).notifyErrorCheckingNewVersion();
+                        } else {
+                            updateToLatestTag(project, refreshedTags);
                         }
+                    }));
+                    return false;
+                }
 
-                        return true;
-                    }
-                } else {
+                try {
+                    return updateToLatestTag(project, tags.join());
+                } catch (CompletionException e) {
+                    e.printStackTrace();
                     NotificationService.getInstance(project).notifyErrorCheckingNewVersion();
                 }
             }
             return false;
         } else {
             // api not there, request it...
-            if (downloadInProgress.compareAndSet(false, true)) {
-                ProgressManager.getInstance().run(new LuaLibDownloader(project, lualibPath, prototypePath, "Download Factorio Lualib", false));
-            }
+            startDownload(project, null);
             return true;
         }
     }
 
-    private static RefTag[] downloadTags() {
-        RefTag[] tags = null;
-        try {
-            URL url = new URL(lualibGithubTagsLink);
-            InputStreamReader inputStream = new InputStreamReader(url.openStream());
-            Gson gson = new Gson();
-            tags = gson.fromJson(inputStream, RefTag[].class);
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Download the latest lualib, if it is not the current one. The current one is replaced when the new one is there.
+     *
+     * @return true if the latest lualib is downloaded
+     */
+    private static boolean updateToLatestTag(Project project, List<TagCatalog.Tag> tags) {
+        FactorioState config = FactorioState.getInstance(project);
+        TagCatalog.Tag latestTag = TagCatalog.latest(tags);
+        if (latestTag == null || latestTag.name().equals(config.currentLualibVersion)) {
+            return false;
         }
-        return tags;
+
+        // download new lualib
+        startDownload(project, latestTag);
+        return true;
     }
 
-    private RefTag getCurrentTag() {
-        // request download API
-        RefTag[] tags = downloadTags();
-        if (tags != null) {
-            // find correct Tag
-            RefTag correctTag = null;
-            if (config.selectedFactorioVersion.latest()) {
-                correctTag = tags[tags.length - 1];
-            } else {
-                for (RefTag tag : tags) {
-                    if (tag.ref.substring(tag.ref.lastIndexOf("/") + 1).equals(config.selectedFactorioVersion.version())) {
-                        correctTag = tag;
-                        break;
-                    }
-                }
-            }
+    /**
+     * Start the download, unless the lualib of the version is already downloaded by this or another project.
+     *
+     * @param tag null for the tag of the selected version
+     */
+    private static void startDownload(Project project, @Nullable TagCatalog.Tag tag) {
+        FactorioState config = FactorioState.getInstance(project);
+        String lualibPath = luaLibRootPath + config.selectedFactorioVersion.version();
+        String prototypePath = prototypeRootPath + config.selectedFactorioVersion.version();
 
-            return correctTag;
-        } else {
+        DownloadCoordinator.Key key = new DownloadCoordinator.Key(DownloadCoordinator.Artifact.LUALIB, config.selectedFactorioVersion.version());
+        DownloadCoordinator.getInstance().start(key, null, download -> {
+            LuaLibDownloader luaLibDownloader = new LuaLibDownloader(project, lualibPath, prototypePath, tag, "Download Factorio Lualib", false);
+            luaLibDownloader.download = download;
+            ProgressManager.getInstance().run(luaLibDownloader);
+        });
+    }
+
+    private TagCatalog.Tag getCurrentTag() {
+        TagCatalog catalog = TagCatalog.getInstance();
+        try {
+            TagCatalog.Tag tag = findTag(catalog.fetchTags());
+            if (tag == null) {
+                // the tag of a new version may not be in the catalog yet
+                catalog.invalidate();
+                tag = findTag(catalog.fetchTags());
+            }
+            return tag;
+        } catch (IOException e) {
+            e.printStackTrace();
             NotificationService.getInstance(myProject).notifyErrorDownloadingVersion();
         }
 
         return null;
     }
 
-    private void downloadExtractZip(RefTag tag) {
-        // download and extract zipball
+    @Nullable
+    private TagCatalog.Tag findTag(List<TagCatalog.Tag> tags) {
+        if (config.selectedFactorioVersion.latest()) {
+            return TagCatalog.latest(tags);
+        }
+        return TagCatalog.find(tags, config.selectedFactorioVersion.version());
+    }
+
+    /**
+     * Download the zipball of the tag and extract the needed directories of it. The directories are extracted next
+     * to the save dirs and moved in place when everything is there, so an interrupted download never leaves an
+     * incomplete lualib behind. The download is resumed by the next run.
+     */
+    private void downloadExtractZip(TagCatalog.Tag tag) throws IOException {
+        String tagName = tag.name();
+        if (restoreFromBlobStore(tagName)) {
+            FactorioState.getInstance(myProject).currentLualibVersion = tagName;
+            return;
+        }
+
+        Path zipFile = Paths.get(downloadRootPath, "factorio-data-" + tagName + ".zip");
+        // the zipball is sent chunked, without a size to check. A truncated zip has no central directory, the CRCs of
+        // the extracted entries are checked by the extraction
+        new ResumableDownloader().download("https://api.github.com/repos/wube/factorio-data/zipball/" + tagName, zipFile, null, ZipExtractor::verify);
+
+        Path saveDirPath = Paths.get(saveDir);
+        Path prototypeSaveDirPath = Paths.get(prototypeSaveDir);
+        Path stagingSaveDir = saveDirPath.resolveSibling(saveDirPath.getFileName() + ".tmp");
+        Path stagingPrototypeSaveDir = prototypeSaveDirPath.resolveSibling(prototypeSaveDirPath.getFileName() + ".tmp");
         try {
-            String tagName = tag.ref.substring(tag.ref.lastIndexOf("/") + 1);
-            URL url = new URL("https://api.github.com/repos/wube/factorio-data/zipball/" + tagName);
-            InputStream inputStream = url.openStream();
-            ZipInputStream zipInputStream = new ZipInputStream(inputStream);
+            // leftovers of an interrupted extraction
+            FileUtil.delete(stagingSaveDir.toFile());
+            FileUtil.delete(stagingPrototypeSaveDir.toFile());
 
-            Path corePrototypeSubDir = Paths.get(prototypeSaveDir, "core");
-            Path basePrototypeSubDir = Paths.get(prototypeSaveDir, "base");
+            Path corePrototypeSubDir = stagingPrototypeSaveDir.resolve("core");
+            Path basePrototypeSubDir = stagingPrototypeSaveDir.resolve("base");
 
+            Files.createDirectories(stagingSaveDir);
             Files.createDirectories(corePrototypeSubDir);
             Files.createDirectories(basePrototypeSubDir);
 
-            // Iterate over all files in the zip and only save the needed
-            ZipEntry zipEntry;
-            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
-                saveZipEntry(zipInputStream, zipEntry, "/lualib/", saveDir);
-                saveZipEntry(zipInputStream, zipEntry, "/core/prototypes/", corePrototypeSubDir.toString());
-                saveZipEntry(zipInputStream, zipEntry, "/base/prototypes/", basePrototypeSubDir.toString());
-            }
+            ZipExtractor.Result result = new ZipExtractor().extract(zipFile, List.of(
+                    new ZipExtractor.Target("/lualib/", stagingSaveDir),
+                    new ZipExtractor.Target("/core/prototypes/", corePrototypeSubDir),
+                    new ZipExtractor.Target("/base/prototypes/", basePrototypeSubDir)
+            ));
+            LOG.info("Extracted " + result.files() + " files (" + result.bytes() + " bytes) of factorio-data " + tagName);
+
+            // the prototypes first, a lualib dir without its prototypes is not used
+            moveDir(stagingPrototypeSaveDir, prototypeSaveDirPath);
+            moveDir(stagingSaveDir, saveDirPath);
+        } finally {
+            FileUtil.delete(stagingSaveDir.toFile());
+            FileUtil.delete(stagingPrototypeSaveDir.toFile());
+            Files.deleteIfExists(zipFile);
+        }
 
-            FactorioState.getInstance(myProject).currentLualibVersion = tagName;
+        FactorioState.getInstance(myProject).currentLualibVersion = tagName;
+        addToBlobStore(tagName);
+    }
+
+    /**
+     * A version, which was downloaded before, is linked together from the blob store. Like the extraction, it is
+     * restored next to the save dirs and moved in place only when both dirs are restored.
+     *
+     * @return false if the version has to be downloaded
+     */
+    private boolean restoreFromBlobStore(String tagName) {
+        BlobStore blobStore = BlobStore.getInstance();
+        if (!blobStore.contains("core_prototypes/" + tagName) || !blobStore.contains("lualib/" + tagName)) {
+            return false;
+        }
+
+        Path saveDirPath = Paths.get(saveDir);
+        Path prototypeSaveDirPath = Paths.get(prototypeSaveDir);
+        Path stagingSaveDir = saveDirPath.resolveSibling(saveDirPath.getFileName() + ".tmp");
+        Path stagingPrototypeSaveDir = prototypeSaveDirPath.resolveSibling(prototypeSaveDirPath.getFileName() + ".tmp");
+        try {
+            // leftovers of an interrupted extraction
+            FileUtil.delete(stagingSaveDir.toFile());
+            FileUtil.delete(stagingPrototypeSaveDir.toFile());
+
+            if (blobStore.restore("core_prototypes/" + tagName, stagingPrototypeSaveDir)
+                    && blobStore.restore("lualib/" + tagName, stagingSaveDir)) {
+                // the prototypes first, a lualib dir without its prototypes is not used
+                moveDir(stagingPrototypeSaveDir, prototypeSaveDirPath);
+                moveDir(stagingSaveDir, saveDirPath);
+                LOG.info("Restored factorio-data " + tagName + " from the blob store");
+                return true;
+            }
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            FileUtil.delete(stagingSaveDir.toFile());
+            FileUtil.delete(stagingPrototypeSaveDir.toFile());
         }
-    }
 
-    private void saveZipEntry(ZipInputStream zipInputStream, ZipEntry zipEntry, String inZipDir, String toSaveDir) {
-        int pos = zipEntry.getName().lastIndexOf(inZipDir);
-        if (pos > -1) {
-            // This thing is inside core-prototype
-            String filename = zipEntry.getName().substring(pos + inZipDir.length());
-            if (filename.isEmpty()) {
-                return;
-            }
+        return false;
+    }
 
-            Path path = Paths.get(toSaveDir, filename);
+    /**
+     * The files, which are the same in other versions, are stored only once.
+     */
+    private void addToBlobStore(String tagName) {
+        BlobStore blobStore = BlobStore.getInstance();
+        try {
+            BlobStore.StoreResult prototypes = blobStore.store("core_prototypes/" + tagName, Paths.get(prototypeSaveDir));
+            BlobStore.StoreResult lualib = blobStore.store("lualib/" + tagName, Paths.get(saveDir));
+            blobStore.collectGarbage();
+            LOG.info("factorio-data " + tagName + " shares " + (prototypes.sharedFiles() + lualib.sharedFiles()) + " of "
+                    + (prototypes.files() + lualib.files()) + " files with other versions");
+        } catch (IOException e) {
+            // the files stay where they are, only without the blob store
+            e.printStackTrace();
+        }
+    }
 
-            if (zipEntry.isDirectory()) {
-                try {
-                    Files.createDirectories(path);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            } else {
-                // save file
-                byte[] buffer = new byte[2048];
-                try (FileOutputStream fos = new FileOutputStream(path.toFile());
-                     BufferedOutputStream bos = new BufferedOutputStream(fos, buffer.length)) {
-
-                    int len;
-                    while ((len = zipInputStream.read(buffer)) > 0) {
-                        bos.write(buffer, 0, len);
-                    }
-                } catch (FileNotFoundException e) {
-                    e.printStackTrace();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
+    private static void moveDir(Path source, Path target) throws IOException {
+        FileUtil.delete(target.toFile());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
         }
     }
 
+    /**
+     * The lualib is not a library, only the prototype index of the project is reloaded.
+     */
     @Override
     public void run(@NotNull ProgressIndicator progressIndicator) {
+        boolean downloaded;
+        try {
+            downloaded = downloadTag();
+        } catch (RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        }
+
+        if (downloaded) {
+            download.complete(new DownloadCoordinator.Result(Paths.get(saveDir), false));
+        } else {
+            download.completeExceptionally(new DownloadCoordinator.Failure("The lualib was not downloaded", false));
+        }
+    }
+
+    /**
+     * @return false if there is no tag or its download failed
+     */
+    private boolean downloadTag() {
         if (this.tag == null) {
             this.tag = getCurrentTag();
         }
 
         if (this.tag != null) {
-            // create directory where to save to
-            Path saveDirPath = Paths.get(saveDir);
-            Path prototypeSaveDirPath = Paths.get(prototypeSaveDir);
-
             try {
-                Files.createDirectories(saveDirPath);
-                Files.createDirectories(prototypeSaveDirPath);
                 downloadExtractZip(this.tag);
 
                 // Reload base prototype service indexes
                 ApplicationManager.getApplication().invokeLater(() ->
                         PrototypesService.getInstance(myProject).reloadIndex()
                 );
+                return true;
             } catch (IOException e) {
+                // the download is resumed by the next run
                 e.printStackTrace();
-                LOG.error(e);
+                LOG.warn(e);
+                NotificationService.getInstance(myProject).notifyErrorDownloadingVersion();
 //                Notification notification = notificationGroup.createNotification("Error creating Lualib Directory", NotificationType.WARNING);
 //                notification.addAction(new NotificationAction("Open Settings") {
 //                    @Override
@@ -276,12 +390,6 @@ public class LuaLibDownloader extends Parser {
         } else {
             NotificationService.getInstance(myProject).notifyErrorTagsDownloading();
         }
-        downloadInProgress.set(false);
-    }
-
-    private class RefTag {
-        String ref;
-        String mode_id;
-        String url;
+        return false;
     }
 }
@@ -0,0 +1,375 @@
+package moe.knox.factorio.core.http;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.intellij.openapi.application.PathManager;
+import moe.knox.factorio.core.parser.GeneratedFiles;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * On-disk cache of http responses, shared by all downloads of the plugin.
+ * Every body is stored together with its ETag and Last-Modified header. A cached response is revalidated with a
+ * conditional request, so an unchanged resource costs only a 304 response. When the server can not be reached,
+ * the cached body is served.
+ */
+public final class HttpCache {
+    private static final int timeoutMillis = 30_000;
+    private static final String bodyExtension = ".body";
+    private static final String metaExtension = ".json";
+
+    private static HttpCache instance;
+
+    private final Path directory;
+    private final Gson gson = new Gson();
+
+    public HttpCache(@NotNull Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The cache in the plugin directory
+     */
+    public static synchronized HttpCache getInstance() {
+        if (instance == null) {
+            instance = new HttpCache(Path.of(PathManager.getPluginsPath(), "factorio_autocompletion", "http_cache"));
+        }
+        return instance;
+    }
+
+    /**
+     * Download the resource or revalidate the cached copy of it.
+     *
+     * @return the body of the resource
+     * @throws HttpResponseException if the server answered with an error and nothing usable is cached
+     * @throws IOException           if the server can not be reached and nothing is cached
+     */
+    public byte @NotNull [] getBytes(@NotNull String url) throws IOException {
+        try (InputStream inputStream = openStream(url)) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    /**
+     * Like {@link #getBytes}, but reads the body from the cache file.
+     */
+    @NotNull
+    public InputStream openStream(@NotNull String url) throws IOException {
+        return Files.newInputStream(fetch(url));
+    }
+
+    /**
+     * Remove the cached copy of the resource
+     */
+    public void invalidate(@NotNull String url) throws IOException {
+        String key = key(url);
+        Files.deleteIfExists(directory.resolve(key + metaExtension));
+        Files.deleteIfExists(directory.resolve(key + bodyExtension));
+    }
+
+    /**
+     * Like {@link #openStream}, but a new body is read while it is downloaded, instead of after the download.
+     * It is added to the cache when the stream is closed, the rest of the body is read by closing it.
+     * A connection which breaks while reading the body is not replaced by the cached body.
+     */
+    @NotNull
+    public InputStream openStreaming(@NotNull String url) throws IOException {
+        String key = key(url);
+        Path bodyFile = directory.resolve(key + bodyExtension);
+        Path metaFile = directory.resolve(key + metaExtension);
+
+        Entry entry = Files.isRegularFile(bodyFile) ? readEntry(metaFile) : null;
+
+        HttpURLConnection connection = request(url, entry);
+        if (connection == null) {
+            return Files.newInputStream(bodyFile);
+        }
+
+        try {
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, key, ".tmp");
+            return new CachingInputStream(bodyStream(connection), tempFile, complete -> {
+                try {
+                    if (complete) {
+                        Files.move(tempFile, bodyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        writeEntry(metaFile, newEntry(url, connection));
+                    }
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                    connection.disconnect();
+                }
+            });
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the file with the current body of the resource
+     */
+    private Path fetch(String url) throws IOException {
+        String key = key(url);
+        Path bodyFile = directory.resolve(key + bodyExtension);
+        Path metaFile = directory.resolve(key + metaExtension);
+
+        Entry entry = Files.isRegularFile(bodyFile) ? readEntry(metaFile) : null;
+
+        HttpURLConnection connection = request(url, entry);
+        if (connection == null) {
+            return bodyFile;
+        }
+
+        try {
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, key, ".tmp");
+            try {
+                try (InputStream body = bodyStream(connection)) {
+                    Files.copy(body, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(tempFile, bodyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+
+            writeEntry(metaFile, newEntry(url, connection));
+
+            return bodyFile;
+        } catch (IOException e) {
+            // the connection broke while reading the body
+            if (entry != null) {
+                return bodyFile;
+            }
+            throw e;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Send the request, it is conditional if there is a cached entry.
+     *
+     * @return the connection to read the new body from, null if the cached body is used
+     */
+    @Nullable
+    private HttpURLConnection request(String url, @Nullable Entry entry) throws IOException {
+        HttpURLConnection connection;
+        int statusCode;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            if (entry != null) {
+                if (entry.etag != null) {
+                    connection.setRequestProperty("If-None-Match", entry.etag);
+                }
+                if (entry.lastModified != null) {
+                    connection.setRequestProperty("If-Modified-Since", entry.lastModified);
+                }
+            }
+            statusCode = connection.getResponseCode();
+        } catch (IOException e) {
+            // offline, use what is there
+            if (entry != null) {
+                return null;
+            }
+            throw e;
+        }
+
+        if (statusCode == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+            connection.disconnect();
+            return null;
+        }
+
+        if (statusCode >= 400) {
+            long retryAfter = retryAfter(connection);
+            connection.disconnect();
+
+            // the server has problems, a resource which is gone is not served anymore
+            if (statusCode >= 500 && entry != null) {
+                return null;
+            }
+            throw new HttpResponseException(statusCode, url, retryAfter);
+        }
+
+        return connection;
+    }
+
+    /**
+     * @return the decompressed body
+     */
+    private static InputStream bodyStream(HttpURLConnection connection) throws IOException {
+        InputStream body = connection.getInputStream();
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+            return new GZIPInputStream(body);
+        }
+        return body;
+    }
+
+    private static Entry newEntry(String url, HttpURLConnection connection) {
+        Entry entry = new Entry();
+        entry.url = url;
+        entry.etag = connection.getHeaderField("ETag");
+        entry.lastModified = connection.getHeaderField("Last-Modified");
+        return entry;
+    }
+
+    @Nullable
+    private Entry readEntry(Path metaFile) {
+        if (!Files.isRegularFile(metaFile)) {
+            return null;
+        }
+
+        try (Reader reader = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, Entry.class);
+        } catch (IOException | JsonParseException e) {
+            // a broken entry is downloaded again
+            return null;
+        }
+    }
+
+    private void writeEntry(Path metaFile, Entry entry) throws IOException {
+        Path tempFile = Files.createTempFile(directory, metaFile.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                gson.toJson(entry, writer);
+            }
+            Files.move(tempFile, metaFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * @return the seconds of the Retry-After header, -1 if there is none or it is a date
+     */
+    public static long retryAfter(@NotNull HttpURLConnection connection) {
+        String retryAfter = connection.getHeaderField("Retry-After");
+        if (retryAfter == null) {
+            return -1;
+        }
+
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.strip()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String key(String url) {
+        return GeneratedFiles.hash(url.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class Entry {
+        String url; // only for debugging, the file name is the hash of it
+        String etag;
+        String lastModified;
+    }
+
+    /**
+     * Copies everything read to a file. The parsers stop reading at the end of the json, so the remaining body is read
+     * when the stream is closed.
+     */
+    private static final class CachingInputStream extends FilterInputStream {
+        private final OutputStream copy;
+        private final Completion completion;
+        private boolean complete = false;
+        private boolean closed = false;
+
+        CachingInputStream(InputStream body, Path copyFile, Completion completion) throws IOException {
+            super(body);
+            this.copy = Files.newOutputStream(copyFile);
+            this.completion = completion;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                complete = true;
+            } else {
+                copy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte @NotNull [] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read < 0) {
+                complete = true;
+            } else {
+                copy.write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        /**
+         * Skipped bytes are read, so they are copied as well
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            try {
+                try {
+                    skip(Long.MAX_VALUE);
+                } finally {
+                    try {
+                        super.close();
+                    } finally {
+                        copy.close();
+                    }
+                }
+            } finally {
+                completion.closed(complete);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Completion {
+        /**
+         * @param complete if the body was read to the end
+         */
+        void closed(boolean complete) throws IOException;
+    }
+
+}
@@ -0,0 +1,41 @@
+package moe.knox.factorio.core.http;
+
+import java.io.IOException;
+
+/**
+ * The server answered with an error status code
+ */
+public class HttpResponseException extends IOException {
+    private final int statusCode;
+    private final String url;
+    private final long retryAfterSeconds;
+
+    public HttpResponseException(int statusCode, String url) {
+        this(statusCode, url, -1);
+    }
+
+    /**
+     * @param retryAfterSeconds the seconds of the Retry-After header, -1 without it
+     */
+    public HttpResponseException(int statusCode, String url, long retryAfterSeconds) {
+        super("HTTP error " + statusCode + " fetching " + url);
+        this.statusCode = statusCode;
+        this.url = url;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the seconds the server asked to wait before the next request, -1 if it did not ask
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,281 @@
+package moe.knox.factorio.core.http;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Schedules the requests to a host, so it is not overloaded and does not throttle the plugin.
+ * <p>
+ * Every host has a token bucket, which limits the requests per second, and a concurrency limit, which adapts to the
+ * host: it grows by one after as many fast responses as the limit is high, it shrinks by one with every slow response
+ * and it is halved with a 429 or 5xx response. After such a response all requests to the host pause.
+ * Failed requests are retried with a jittered exponential backoff, or after the time of the Retry-After header.
+ */
+public final class RequestScheduler {
+    private static RequestScheduler instance;
+
+    private final Settings settings;
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxConcurrency      upper bound of the concurrency limit of a host
+     * @param requestsPerSecond   rate of the token bucket
+     * @param burst               size of the token bucket
+     * @param maxAttempts         attempts of a request, including the first one
+     * @param baseBackoffMillis   backoff of the first retry, it doubles with every further one
+     * @param maxBackoffMillis    upper bound of a backoff, also of the Retry-After header
+     * @param latencyTargetMillis responses slower than this reduce the concurrency limit
+     */
+    public record Settings(int maxConcurrency, double requestsPerSecond, int burst, int maxAttempts,
+                           long baseBackoffMillis, long maxBackoffMillis, long latencyTargetMillis) {
+        public static Settings defaults() {
+            return new Settings(6, 8, 8, 4, 500, 30_000, 2_000);
+        }
+    }
+
+    /**
+     * Snapshot of the metrics of a host
+     *
+     * @param requests         requests sent, including retries
+     * @param tooManyRequests  429 responses
+     * @param serverErrors     5xx responses
+     * @param failures         requests which failed after all attempts
+     * @param concurrencyLimit the current concurrency limit
+     */
+    public record HostMetrics(String host, long requests, long retries, long tooManyRequests, long serverErrors,
+                              long failures, double averageLatencyMillis, int concurrencyLimit) {
+    }
+
+    @FunctionalInterface
+    public interface Request<T> {
+        T execute() throws IOException;
+    }
+
+    public RequestScheduler(@NotNull Settings settings) {
+        if (settings.maxConcurrency() < 1 || settings.requestsPerSecond() <= 0 || settings.burst() < 1 || settings.maxAttempts() < 1) {
+            throw new IllegalArgumentException("invalid request scheduler settings: " + settings);
+        }
+        this.settings = settings;
+    }
+
+    /**
+     * The scheduler shared by all downloads of the plugin
+     */
+    public static synchronized RequestScheduler getInstance() {
+        if (instance == null) {
+            instance = new RequestScheduler(Settings.defaults());
+        }
+        return instance;
+    }
+
+    /**
+     * Run the request when the host of the url allows it, retry it if it failed temporarily.
+     *
+     * @throws IOException the error of the last attempt, or an InterruptedIOException if the thread was interrupted
+     */
+    public <T> T execute(@NotNull String url, @NotNull Request<T> request) throws IOException {
+        Host host = hosts.computeIfAbsent(hostOf(url), Host::new);
+
+        for (int attempt = 1; ; attempt++) {
+            host.acquire();
+            long start = System.nanoTime();
+            IOException error;
+            try {
+                T result = request.execute();
+                host.succeeded(System.nanoTime() - start);
+                return result;
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                host.release();
+            }
+
+            if (Thread.currentThread().isInterrupted()) {
+                throw error;
+            }
+
+            int statusCode = error instanceof HttpResponseException responseException ? responseException.getStatusCode() : -1;
+            boolean throttled = statusCode == 429 || statusCode >= 500;
+            if (statusCode == 429) {
+                host.tooManyRequests.increment();
+            } else if (statusCode >= 500) {
+                host.serverErrors.increment();
+            }
+
+            if (!isRetryable(error) || attempt >= settings.maxAttempts()) {
+                host.failures.increment();
+                throw error;
+            }
+
+            long backoffMillis = backoffMillis(attempt, error);
+            if (throttled) {
+                host.throttle(backoffMillis);
+            }
+            host.retries.increment();
+            sleep(backoffMillis);
+        }
+    }
+
+    /**
+     * @return the metrics of every host, which was requested
+     */
+    @NotNull
+    public List<HostMetrics> getMetrics() {
+        List<HostMetrics> metrics = new ArrayList<>();
+        hosts.values().forEach(host -> metrics.add(host.metrics()));
+        return metrics;
+    }
+
+    /**
+     * Temporary errors: throttling, server errors and broken connections. Not found pages or an unknown host are
+     * not retried.
+     */
+    private static boolean isRetryable(IOException error) {
+        if (error instanceof HttpResponseException responseException) {
+            int statusCode = responseException.getStatusCode();
+            return statusCode == 429 || statusCode >= 500;
+        }
+
+        return !(error instanceof UnknownHostException);
+    }
+
+    /**
+     * Full jitter: a random time up to the exponential backoff, but at least the time the server asked for
+     */
+    private long backoffMillis(int attempt, IOException error) {
+        long exponential = Math.min(settings.maxBackoffMillis(), settings.baseBackoffMillis() << Math.min(attempt - 1, 20));
+        long backoff = ThreadLocalRandom.current().nextLong(exponential + 1);
+
+        if (error instanceof HttpResponseException responseException && responseException.getRetryAfterSeconds() >= 0) {
+            backoff = Math.max(backoff, Math.min(settings.maxBackoffMillis(), TimeUnit.SECONDS.toMillis(responseException.getRetryAfterSeconds())));
+        }
+
+        return backoff;
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting to retry");
+        }
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : url;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    private final class Host {
+        final String name;
+
+        final LongAdder requests = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder tooManyRequests = new LongAdder();
+        final LongAdder serverErrors = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder latencyNanos = new LongAdder();
+        final LongAdder responses = new LongAdder();
+
+        // guarded by this
+        private double tokens;
+        private long refilledAt;
+        private int inFlight = 0;
+        private int limit;
+        private int fastResponses = 0;
+        private long pausedUntil;
+
+        Host(String name) {
+            this.name = name;
+            this.tokens = settings.burst();
+            this.refilledAt = System.nanoTime();
+            this.pausedUntil = refilledAt;
+            this.limit = Math.max(1, settings.maxConcurrency() / 2);
+        }
+
+        synchronized void acquire() throws InterruptedIOException {
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    refill(now);
+
+                    if (now - pausedUntil < 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, pausedUntil - now);
+                    } else if (inFlight >= limit) {
+                        // woken up by a finished request
+                        wait();
+                    } else if (tokens < 1) {
+                        TimeUnit.NANOSECONDS.timedWait(this, (long) Math.ceil((1 - tokens) / settings.requestsPerSecond() * 1e9));
+                    } else {
+                        tokens -= 1;
+                        inFlight++;
+                        requests.increment();
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for " + name);
+            }
+        }
+
+        synchronized void release() {
+            inFlight--;
+            notifyAll();
+        }
+
+        synchronized void succeeded(long latency) {
+            latencyNanos.add(latency);
+            responses.increment();
+
+            if (latency > TimeUnit.MILLISECONDS.toNanos(settings.latencyTargetMillis())) {
+                limit = Math.max(1, limit - 1);
+                fastResponses = 0;
+            } else if (++fastResponses >= limit) {
+                limit = Math.min(settings.maxConcurrency(), limit + 1);
+                fastResponses = 0;
+            }
+        }
+
+        /**
+         * Halve the concurrency limit and pause all requests
+         */
+        synchronized void throttle(long pauseMillis) {
+            limit = Math.max(1, limit / 2);
+            fastResponses = 0;
+
+            long pauseEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pauseMillis);
+            if (pauseEnd - pausedUntil > 0) {
+                pausedUntil = pauseEnd;
+            }
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(settings.burst(), tokens + (now - refilledAt) / 1e9 * settings.requestsPerSecond());
+            refilledAt = now;
+        }
+
+        synchronized HostMetrics metrics() {
+            long responseCount = responses.sum();
+            double averageLatency = responseCount > 0 ? latencyNanos.sum() / 1e6 / responseCount : 0;
+            return new HostMetrics(name, requests.sum(), retries.sum(), tooManyRequests.sum(), serverErrors.sum(),
+                    failures.sum(), averageLatency, limit);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package moe.knox.factorio.core.http;
+
+import moe.knox.factorio.core.parser.GeneratedFiles;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads a large file into `<file>.part` and resumes it with a Range request after the connection broke.
+ * <p>
+ * The validator of the first response (its strong ETag or Last-Modified) is kept in `<file>.part.validator` and sent
+ * as If-Range, so a resource which changed in between is downloaded again from the start instead of being spliced.
+ * The finished file is checked against the announced size and the expected checksum, only then it is moved to its
+ * place. A chunked response announces no size, for it the caller can pass a verifier, which checks the content of
+ * the file. A server without Range support answers with the whole file, which replaces the part.
+ */
+public final class ResumableDownloader {
+    private static final int timeoutMillis = 30_000;
+    private static final int bufferSize = 64 * 1024;
+    private static final String partExtension = ".part";
+    private static final String validatorExtension = ".part.validator";
+    private static final Pattern contentRange = Pattern.compile("bytes (?:(\\d+)-(\\d+)|\\*)/(\\d+|\\*)");
+
+    private final RequestScheduler requestScheduler;
+
+    /**
+     * @param file    the downloaded file
+     * @param size    its size in bytes
+     * @param sha256  its hex encoded SHA-256
+     * @param resumes number of requests, which continued a part instead of starting from the beginning
+     */
+    public record Result(Path file, long size, String sha256, int resumes) {
+    }
+
+    /**
+     * Checks the content of a finished download, before it is moved to its place
+     */
+    @FunctionalInterface
+    public interface Verifier {
+        /**
+         * @throws IOException if the file is broken
+         */
+        void verify(@NotNull Path file) throws IOException;
+    }
+
+    public ResumableDownloader() {
+        this(RequestScheduler.getInstance());
+    }
+
+    public ResumableDownloader(@NotNull RequestScheduler requestScheduler) {
+        this.requestScheduler = requestScheduler;
+    }
+
+    /**
+     * Download the url into the file. A part of a previous download of the same file is continued.
+     * Broken connections are retried by the request scheduler, every retry continues the part.
+     *
+     * @param expectedSha256 hex encoded SHA-256 the file must have, null if it is unknown
+     * @throws IOException if the download failed, the part is kept to be resumed, unless the checksum did not match
+     */
+    @NotNull
+    public Result download(@NotNull String url, @NotNull Path file, @Nullable String expectedSha256) throws IOException {
+        return download(url, file, expectedSha256, null);
+    }
+
+    /**
+     * Like {@link #download(String, Path, String)}, the finished part is checked by the verifier as well.
+     *
+     * @param verifier checks the content of the finished part, null to accept any content
+     * @throws IOException if the download failed, the part is kept to be resumed, unless the checksum did not match or
+     *                     the verifier rejected it
+     */
+    @NotNull
+    public Result download(@NotNull String url, @NotNull Path file, @Nullable String expectedSha256, @Nullable Verifier verifier) throws IOException {
+        Path partFile = file.resolveSibling(file.getFileName() + partExtension);
+        Path validatorFile = file.resolveSibling(file.getFileName() + validatorExtension);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+
+        AtomicInteger resumes = new AtomicInteger();
+        requestScheduler.execute(url, () -> {
+            transfer(url, partFile, validatorFile, resumes);
+            return null;
+        });
+
+        long size = Files.size(partFile);
+        String sha256 = GeneratedFiles.hash(partFile);
+        if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+            // the part is broken, the next download starts from the beginning
+            Files.deleteIfExists(partFile);
+            Files.deleteIfExists(validatorFile);
+            throw new IOException("Checksum of " + url + " is " + sha256 + " instead of " + expectedSha256);
+        }
+        if (verifier != null) {
+            try {
+                verifier.verify(partFile);
+            } catch (IOException e) {
+                Files.deleteIfExists(partFile);
+                Files.deleteIfExists(validatorFile);
+                throw e;
+            }
+        }
+
+        try {
+            Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.deleteIfExists(validatorFile);
+
+        return new Result(file, size, sha256, resumes.get());
+    }
+
+    /**
+     * A single request, which appends the rest of the file to the part.
+     *
+     * @throws IOException if the connection broke before the whole file was received
+     */
+    private static void transfer(String url, Path partFile, Path validatorFile, AtomicInteger resumes) throws IOException {
+        long existing = Files.isRegularFile(partFile) ? Files.size(partFile) : 0;
+        String validator = existing > 0 && Files.isRegularFile(validatorFile) ? Files.readString(validatorFile, StandardCharsets.UTF_8) : null;
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            // the range is of the stored bytes
+            connection.setRequestProperty("Accept-Encoding", "identity");
+            if (existing > 0) {
+                connection.setRequestProperty("Range", "bytes=" + existing + "-");
+                if (validator != null) {
+                    connection.setRequestProperty("If-Range", validator);
+                }
+            }
+
+            int statusCode = connection.getResponseCode();
+            long total;
+            boolean append;
+            if (statusCode == 206) {
+                Matcher matcher = contentRange.matcher(String.valueOf(connection.getHeaderField("Content-Range")));
+                if (!matcher.matches() || matcher.group(1) == null || Long.parseLong(matcher.group(1)) != existing) {
+                    throw new IOException("Unexpected Content-Range " + connection.getHeaderField("Content-Range") + " of " + url);
+                }
+                total = matcher.group(3).equals("*") ? -1 : Long.parseLong(matcher.group(3));
+                append = true;
+                resumes.incrementAndGet();
+            } else if (statusCode == 200) {
+                total = connection.getContentLengthLong();
+                append = false;
+                writeValidator(connection, validatorFile);
+            } else if (statusCode == 416 && existing > 0) {
+                Matcher matcher = contentRange.matcher(String.valueOf(connection.getHeaderField("Content-Range")));
+                if (matcher.matches() && !matcher.group(3).equals("*") && Long.parseLong(matcher.group(3)) == existing) {
+                    // the part is already complete
+                    return;
+                }
+
+                // the part is longer than the file, the retry starts from the beginning
+                Files.deleteIfExists(partFile);
+                Files.deleteIfExists(validatorFile);
+                throw new IOException("Range of " + existing + " bytes is not satisfiable for " + url);
+            } else {
+                throw new HttpResponseException(statusCode, url, HttpCache.retryAfter(connection));
+            }
+
+            StandardOpenOption mode = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+            try (InputStream inputStream = connection.getInputStream();
+                 FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+                byte[] buffer = new byte[bufferSize];
+                int read;
+                while ((read = inputStream.read(buffer)) >= 0) {
+                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                    while (byteBuffer.hasRemaining()) {
+                        channel.write(byteBuffer);
+                    }
+                }
+                channel.force(false);
+            }
+
+            long size = Files.size(partFile);
+            if (total >= 0 && size != total) {
+                throw new IOException("Download of " + url + " ended after " + size + " of " + total + " bytes");
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Only strong validators can be used for If-Range.
+     */
+    private static void writeValidator(HttpURLConnection connection, Path validatorFile) throws IOException {
+        String etag = connection.getHeaderField("ETag");
+        String validator = etag != null && !etag.startsWith("W/") ? etag : connection.getHeaderField("Last-Modified");
+        if (validator != null) {
+            Files.writeString(validatorFile, validator, StandardCharsets.UTF_8);
+        } else {
+            Files.deleteIfExists(validatorFile);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package moe.knox.factorio.core.parser;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Writes generated files only when their content changed.
+ * Every rewritten file is indexed again by the IDE, even when the content is the same.
+ */
+public final class GeneratedFiles {
+    private GeneratedFiles() {
+    }
+
+    /**
+     * @return the hex encoded SHA-256 of the content
+     */
+    @NotNull
+    public static String hash(byte @NotNull [] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            // every java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the hex encoded SHA-256 of the content of the file
+     */
+    @NotNull
+    public static String hash(@NotNull Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Write the content to the file, unless the file already has content with the same hash.
+     *
+     * @param hash {@link #hash} of the content
+     * @return true if the file was written
+     */
+    public static boolean writeIfChanged(@NotNull Path file, byte @NotNull [] content, @NotNull String hash) throws IOException {
+        if (Files.isRegularFile(file) && Files.size(file) == content.length && hash.equals(hash(Files.readAllBytes(file)))) {
+            return false;
+        }
+
+        // the file may be a hard link of the blob store, it is replaced instead of written through
+        Path tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tempFile, content);
+            try {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return true;
+    }
+
+    public static boolean writeIfChanged(@NotNull Path file, byte @NotNull [] content) throws IOException {
+        return writeIfChanged(file, content, hash(content));
+    }
+}
@@ -1,25 +1,39 @@
 package moe.knox.factorio.core.parser;
 
-import com.google.common.io.Files;
 import com.intellij.openapi.progress.PerformInBackgroundOption;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.NlsContexts;
+import moe.knox.factorio.core.DownloadCoordinator;
 import moe.knox.factorio.core.NotificationService;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class Parser extends Task.Backgroundable {
     protected static String newLine = System.lineSeparator();
 
+    /**
+     * the download of the {@link DownloadCoordinator}, which is completed by the parser
+     */
+    protected CompletableFuture<DownloadCoordinator.Result> download = new CompletableFuture<>();
+
     public Parser(@Nullable Project project, @NlsContexts.ProgressTitle @NotNull String title, boolean canBeCancelled) {
         super(project, title, canBeCancelled);
     }
 
+    /**
+     * Called after the task, also when it was cancelled or failed. The download is failed, unless the parser completed it.
+     */
+    @Override
+    public void onFinished() {
+        download.completeExceptionally(new DownloadCoordinator.Failure(getTitle() + " did not finish", false));
+    }
+
     /**
      * Shows error in the balloon "Event Log" of the IDE. This is useful, to inform the user, that the download failed.
      * Not all download fails report in an unusable autocompletion, some results in only partially unavailable autocompletion.
@@ -51,20 +65,19 @@ public abstract class Parser extends Task.Backgroundable {
     /**
      * Save the fileContent to the specified file. The file is saved within the main application and with write access.
      * The result of this invoke of the main application is avaited.
+     * A file which already has this content is not written again.
      *
      * @param filePath    The Path to the file to save to
      * @param fileContent The content of the file
+     * @return true if the file was written
      */
-    protected void saveStringToFile(String filePath, String fileContent) {
-        // create file
-        File file = new File(filePath);
+    protected boolean saveStringToFile(String filePath, String fileContent) {
         try {
-            file.createNewFile();
-            Files.write(fileContent.getBytes(), file);
+            return GeneratedFiles.writeIfChanged(Paths.get(filePath), fileContent.getBytes());
         } catch (IOException e) {
             e.printStackTrace();
             showDownloadingError(true);
-            return;
+            return false;
         }
     }
 }
@@ -1,16 +1,20 @@
 package moe.knox.factorio.core.parser.api;
 
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.NlsContexts;
 import com.intellij.openapi.util.io.FileUtil;
-import moe.knox.factorio.core.parser.api.writer.ApiFileWriter;
+import moe.knox.factorio.core.CoreException;
+import moe.knox.factorio.core.DownloadCoordinator;
+import moe.knox.factorio.core.parser.api.snapshot.RuntimeApiSnapshot;
+import moe.knox.factorio.core.parser.api.snapshot.RuntimeApiSnapshotStore;
+import moe.knox.factorio.core.parser.api.writer.ShardedApiFileWriter;
 import moe.knox.factorio.core.version.FactorioApiVersion;
 import moe.knox.factorio.core.NotificationService;
 import moe.knox.factorio.core.parser.Parser;
+import moe.knox.factorio.core.util.BlobStore;
 import moe.knox.factorio.intellij.FactorioState;
 import moe.knox.factorio.core.version.ApiVersionCollection;
 import moe.knox.factorio.core.version.ApiVersionResolver;
@@ -23,14 +27,15 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ApiParser extends Parser {
     private final static String apiRootPath = PathManager.getPluginsPath() + "/factorio_autocompletion/factorio_api/";
-    private static AtomicBoolean downloadInProgress = new AtomicBoolean(false);
+    private final static RuntimeApiSnapshotStore snapshotStore = new RuntimeApiSnapshotStore(Paths.get(apiRootPath, "snapshots"));
     private FactorioState config;
     private ProgressIndicator indicator;
     private String saveDir;
+    private boolean regenerate = false;
+    private boolean stubsChanged = false;
     private double curTodo = 0;
     private double maxTodo = 0;
 
@@ -41,39 +46,66 @@ public class ApiParser extends Parser {
 
     /**
      * get the current API Link. If the API is not there, the download will be started in a background thread.
-     * When the download is in progress, this function returns instantly null.
+     * When the API is downloaded for the first time, this function returns instantly null. Stubs which are
+     * regenerated in place stay in use.
      *
      * @param project
      * @return the path to the API or null
      */
     @Nullable
-    synchronized public static String getCurrentApiLink(Project project) {
-        if (downloadInProgress.get()) {
-            return null;
-        }
-
+    public static String getCurrentApiLink(Project project) {
         Path apiPath = getApiRuntimeDir(project);
+        DownloadCoordinator.Key key = downloadKey(project);
+        DownloadCoordinator coordinator = DownloadCoordinator.getInstance();
+
+        if (coordinator.isRunning(key)) {
+            Path previous = coordinator.getPrevious(key);
+            return previous != null ? previous.toString() : null;
+        }
 
         // check if API is downloaded
         if (Files.exists(apiPath)) {
             return apiPath.toString();
         } else {
             // request download API
-            if (downloadInProgress.compareAndSet(false, true)) {
-                ProgressManager.getInstance().run(new ApiParser(project, apiPath.toString(), "Download and Parse Factorio API", false));
-            }
+            startDownload(project, apiPath, null, "Download and Parse Factorio API", false);
             return null;
         }
     }
 
+    /**
+     * Generate the stubs of the current API again, in place. Only the files whose content changed are rewritten.
+     * The snapshot is not used, the API is revalidated with the server and parsed again.
+     */
+    public static void regenerateCurrentAPI(Project project) {
+        Path apiPath = getApiRuntimeDir(project);
+        startDownload(project, apiPath, Files.exists(apiPath) ? apiPath : null, "Generate Factorio API", true);
+    }
+
+    /**
+     * Only the stubs are removed, they stay in the blob store, so switching back to the version restores them.
+     */
     public static void removeCurrentAPI(Project project) {
-        if (!downloadInProgress.get()) {
+        if (!DownloadCoordinator.getInstance().isRunning(downloadKey(project))) {
             Path apiPath = getApiRuntimeDir(project);
             FileUtil.delete(apiPath.toFile());
             FactorioLibraryProvider.reload();
         }
     }
 
+    /**
+     * Remove the stubs of all versions from the blob store, so their blobs can be collected.
+     */
+    public static void forgetStoredAPIs() {
+        BlobStore blobStore = BlobStore.getInstance();
+        try {
+            blobStore.forget("factorio_api");
+            blobStore.collectGarbage();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     public static void checkForUpdate(Project project) {
         FactorioState config = FactorioState.getInstance(project);
 
@@ -83,14 +115,25 @@ public class ApiParser extends Parser {
             if (newestVersion != null && !newestVersion.equals(config.selectedFactorioVersion)) {
                 // new version detected, update it
                 removeCurrentAPI(project);
-                if (downloadInProgress.compareAndSet(false, true)) {
-                    Path apiPath = getApiRuntimeDir(project);
-                    ProgressManager.getInstance().run(new ApiParser(project, apiPath.toString(), "Download and Parse Factorio API", false));
-                }
+                startDownload(project, getApiRuntimeDir(project), null, "Download and Parse Factorio API", false);
             }
         }
     }
 
+    /**
+     * Start the parser, unless the API of the version is already downloaded by this or another project.
+     *
+     * @param previous the stubs, which stay in use while they are regenerated
+     */
+    private static void startDownload(Project project, Path apiPath, @Nullable Path previous, @NlsContexts.ProgressTitle @NotNull String title, boolean regenerate) {
+        DownloadCoordinator.getInstance().start(downloadKey(project), previous, download -> {
+            ApiParser apiParser = new ApiParser(project, apiPath.toString(), title, false);
+            apiParser.regenerate = regenerate;
+            apiParser.download = download;
+            ProgressManager.getInstance().run(apiParser);
+        });
+    }
+
     private static FactorioApiVersion detectLatestAllowedVersion(Project project)
     {
         ApiVersionCollection factorioApiVersions;
@@ -108,7 +151,7 @@ public class ApiParser extends Parser {
     /**
      * Entry-point for the Task.Backgroundable.
      * This is the basic entrypoint for the ProgressManager started Thread.
-     * After the download is finished, the FactorioLibraryProvider is reloaded.
+     * After the downloads of the version are finished, the FactorioLibraryProvider is reloaded by the coordinator.
      *
      * @param indicator
      */
@@ -119,13 +162,17 @@ public class ApiParser extends Parser {
             config = FactorioState.getInstance(myProject);
 
             // start the whole thing
-            assureDir();
+            if (!assureDir()) {
+                download.completeExceptionally(new DownloadCoordinator.Failure("The API was not generated", stubsChanged));
+                return;
+            }
 
-            // whole thing finished, reload the Library-Provider
-            ApplicationManager.getApplication().invokeLater(() -> FactorioLibraryProvider.reload());
-        }
-        finally {
-            downloadInProgress.set(false);
+            // whole thing finished. Unchanged stubs don't need to be indexed again
+            download.complete(new DownloadCoordinator.Result(Paths.get(saveDir), stubsChanged));
+        } catch (RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
             indicator.stop();
         }
     }
@@ -133,18 +180,27 @@ public class ApiParser extends Parser {
     /**
      * Entry-point with creating the used directory to the save the directory to.
      * It will assure, that the directory is there and will start the download and parsing.
+     *
+     * @return false if the stubs could not be generated
      */
-    private void assureDir() {
+    private boolean assureDir() {
         File dirFile = new File(saveDir);
         if (!dirFile.exists()) {
-            // file does not exist ... create it
-            if (dirFile.mkdirs()) {
+            // stubs of a version, which was used before, do not need to be generated again
+            if (!regenerate && restoreFromBlobStore(config.selectedFactorioVersion)) {
+                stubsChanged = true;
+            } else if (dirFile.mkdirs()) {
+                // file does not exist ... create it
                 // download and parse API
-                downloadAndParseAPI();
+                return downloadAndParseAPI();
             } else {
                 NotificationService.getInstance(myProject).notifyErrorCreatingApiDirs();
+                return false;
             }
+        } else if (regenerate) {
+            return downloadAndParseAPI();
         }
+        return true;
     }
 
     private void updateIndicator() {
@@ -156,26 +212,97 @@ public class ApiParser extends Parser {
      * Entry-point for the whole parsing.
      * Download the main-Page of the factorio-lua-api, parse all classes and start the other parsers.
      * Here also the indicator will be updated, to show the current percentage of the parsing.
+     *
+     * @return false if the API could not be downloaded
      */
-    private void downloadAndParseAPI() {
-        ApiSpecificationParser apiSpecificationParser = new ApiSpecificationParser();
+    private boolean downloadAndParseAPI() {
+        FactorioApiVersion version = config.selectedFactorioVersion;
 
-        RuntimeApi runtimeApi;
+        // one file per class and concept group, so the stubs can be generated and indexed in parallel
+        ShardedApiFileWriter writer = new ShardedApiFileWriter(Paths.get(saveDir));
+        try {
+            // the parsed API is loaded from its snapshot, only when there is none it is downloaded and parsed.
+            // A regeneration downloads the API again, so a corrected runtime-api.json is picked up
+            RuntimeApi runtimeApi = regenerate ? null : loadSnapshot(version);
+            if (runtimeApi != null) {
+                stubsChanged = writer.writeRuntimeApi(runtimeApi).hasChanges();
+            } else {
+                // every section is written while the next one is downloaded and parsed
+                try (ShardedApiFileWriter.Session session = writer.begin()) {
+                    runtimeApi = (new ApiSpecificationParser()).parseSections(version, session::submit);
+                    stubsChanged = session.finish(runtimeApi).hasChanges();
+                }
 
-        runtimeApi = apiSpecificationParser.parse(config.selectedFactorioVersion);
+                try {
+                    snapshotStore.save(runtimeApi);
+                } catch (IOException e) {
+                    // the snapshot is only a cache, the stubs are written anyway
+                    e.printStackTrace();
+                }
+            }
 
-        var outputFileName = Paths.get(saveDir, "factorio.lua").toString();
+            addToBlobStore(version);
+            return true;
+        } catch (IOException e) {
+            // some files may be written already
+            stubsChanged = true;
+            e.printStackTrace();
+            showDownloadingError(true);
+            return false;
+        }
+    }
 
-        try (var writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFileName)))) {
-            ApiFileWriter.fromIoWriter(writer).writeRuntimeApi(runtimeApi);
+    /**
+     * The stubs, which are the same in other versions, are stored only once.
+     */
+    private void addToBlobStore(FactorioApiVersion version) {
+        BlobStore blobStore = BlobStore.getInstance();
+        try {
+            blobStore.store(blobStoreKey(version), Paths.get(saveDir));
+            blobStore.collectGarbage();
+        } catch (IOException e) {
+            // the stubs stay where they are, only without the blob store
+            e.printStackTrace();
+        }
+    }
 
-            writer.flush();
+    /**
+     * The stubs of a version, which were generated before, are linked together from the blob store.
+     *
+     * @return false if the stubs have to be generated
+     */
+    private boolean restoreFromBlobStore(FactorioApiVersion version) {
+        try {
+            return BlobStore.getInstance().restore(blobStoreKey(version), Paths.get(saveDir));
         } catch (IOException e) {
             e.printStackTrace();
-            showDownloadingError(true);
+            return false;
+        }
+    }
+
+    /**
+     * @return the snapshot of the current runtime-api.json of this version, null if there is none
+     */
+    @Nullable
+    private static RuntimeApi loadSnapshot(FactorioApiVersion version) {
+        try {
+            // only the start of the json is read, it is served from the http cache while it is unchanged
+            RuntimeApiSnapshot.Key key = (new ApiSpecificationParser()).readKey(version);
+            return snapshotStore.load(key);
+        } catch (CoreException e) {
+            e.printStackTrace();
+            return null;
         }
     }
 
+    private static String blobStoreKey(FactorioApiVersion version) {
+        return "factorio_api/" + version.version();
+    }
+
+    private static DownloadCoordinator.Key downloadKey(Project project) {
+        return new DownloadCoordinator.Key(DownloadCoordinator.Artifact.API, FactorioState.getInstance(project).selectedFactorioVersion.version());
+    }
+
     private static Path getApiRuntimeDir(Project project)
     {
         var config = FactorioState.getInstance(project);
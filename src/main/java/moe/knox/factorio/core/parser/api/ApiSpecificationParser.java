@@ -1,40 +1,205 @@
 package moe.knox.factorio.core.parser.api;
 
-import com.google.gson.GsonBuilder;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 import moe.knox.factorio.core.CoreException;
+import moe.knox.factorio.core.http.HttpCache;
+import moe.knox.factorio.core.parser.api.snapshot.RuntimeApiSnapshot;
 import moe.knox.factorio.core.version.FactorioApiVersion;
-import moe.knox.factorio.core.parser.api.data.RuntimeApi;
+import moe.knox.factorio.core.parser.api.data.*;
+import org.jetbrains.annotations.NotNull;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URL;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 public final class ApiSpecificationParser {
     private final String factorioApiBaseLink = "https://lua-api.factorio.com";
 
+    /**
+     * null to use the cache in the plugin directory, it is only looked up when something is downloaded
+     */
+    private final HttpCache httpCache;
+
+    public ApiSpecificationParser() {
+        this(null);
+    }
+
+    public ApiSpecificationParser(HttpCache httpCache) {
+        this.httpCache = httpCache;
+    }
+
     public RuntimeApi parse(FactorioApiVersion version) throws CoreException
     {
-        try (InputStreamReader inputStreamReader = new InputStreamReader(createVersionStream(version))) {
-            GsonBuilder builder = new GsonBuilder();
-            ParsingHelper.addDeserializers(builder);
-            RuntimeApi runtimeApi = builder
-                    .create()
-//                    .registerTypeAdapter(Concept.class, new JsonPolymorphismDeserializer<Concept>())
-//                    .registerTypeAdapter(Type.ComplexData.class, new JsonPolymorphismDeserializer<Type.ComplexData>())
-//                    .registerTypeAdapter(Operator.class, new JsonPolymorphismDeserializer<Operator>())
-                    .fromJson(inputStreamReader, RuntimeApi.class);
+        try (Reader reader = new InputStreamReader(createVersionStream(version), StandardCharsets.UTF_8)) {
+            return parse(reader);
+        } catch (IOException e) {
+            throw new CoreException("Parsing error", e);
+        }
+    }
+
+    /**
+     * Read the versions of the runtime-api.json of this factorio version, which key its snapshot.
+     */
+    public RuntimeApiSnapshot.Key readKey(FactorioApiVersion version) throws CoreException
+    {
+        try (Reader reader = new InputStreamReader(createVersionStream(version), StandardCharsets.UTF_8)) {
+            return readKey(reader);
+        } catch (IOException e) {
+            throw new CoreException("Parsing error", e);
+        }
+    }
+
+    /**
+     * Read only the application_version and api_version of a runtime-api.json. Both are at the start of the json, the
+     * rest is not read.
+     *
+     * @param reader The json source, it is not closed by this method
+     */
+    public RuntimeApiSnapshot.Key readKey(Reader reader) throws CoreException
+    {
+        try {
+            Gson gson = ParsingHelper.getGson();
+            JsonReader jsonReader = new JsonReader(reader);
+            String applicationVersion = null;
+            String apiVersion = null;
+
+            jsonReader.beginObject();
+            while ((applicationVersion == null || apiVersion == null) && jsonReader.hasNext()) {
+                switch (jsonReader.nextName()) {
+                    case "application_version" -> applicationVersion = readString(gson, jsonReader);
+                    case "api_version" -> apiVersion = readString(gson, jsonReader);
+                    default -> jsonReader.skipValue();
+                }
+            }
+
+            return new RuntimeApiSnapshot.Key(applicationVersion, apiVersion);
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            throw new CoreException("Parsing error", e);
+        }
+    }
+
+    /**
+     * Parse a runtime-api.json in a single streaming pass.
+     *
+     * @param reader The json source, it is not closed by this method
+     */
+    public RuntimeApi parse(Reader reader) throws CoreException
+    {
+        try (ValueTypeInterner.Scope ignored = ValueTypeInterner.open()) {
+            JsonReader jsonReader = new JsonReader(reader);
+            RuntimeApi runtimeApi = ParsingHelper.getGson().getAdapter(RuntimeApi.class).read(jsonReader);
             runtimeApi.arrangeElements();
 
             return runtimeApi;
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            throw new CoreException("Parsing error", e);
+        }
+    }
+
+    /**
+     * Download and parse the api at the same time, see {@link #parseSections(Reader, SectionListener)}.
+     */
+    public RuntimeApi parseSections(FactorioApiVersion version, @NotNull SectionListener listener) throws CoreException
+    {
+        String url = versionUrl(version);
+        try (Reader reader = new InputStreamReader((httpCache != null ? httpCache : HttpCache.getInstance()).openStreaming(url), StandardCharsets.UTF_8)) {
+            return parseSections(reader, listener);
         } catch (IOException e) {
             throw new CoreException("Parsing error", e);
         }
     }
 
+    /**
+     * Parse a runtime-api.json and hand every section to the listener as soon as it is parsed and arranged, while the
+     * rest of the json is still read. The listener is called on the parsing thread, in the order of the json.
+     *
+     * @param reader The json source, it is not closed by this method
+     * @return the complete api, the same as {@link #parse(Reader)}
+     */
+    public RuntimeApi parseSections(Reader reader, @NotNull SectionListener listener) throws CoreException
+    {
+        try (ValueTypeInterner.Scope ignored = ValueTypeInterner.open()) {
+            Gson gson = ParsingHelper.getGson();
+            JsonReader jsonReader = new JsonReader(reader);
+            RuntimeApi runtimeApi = new RuntimeApi();
+
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                String name = jsonReader.nextName();
+                RuntimeApi.Section section = null;
+                switch (name) {
+                    case "application" -> runtimeApi.application = readString(gson, jsonReader);
+                    case "stage" -> runtimeApi.stage = readString(gson, jsonReader);
+                    case "application_version" -> runtimeApi.application_version = readString(gson, jsonReader);
+                    case "api_version" -> runtimeApi.api_version = readString(gson, jsonReader);
+                    case "classes" -> {
+                        runtimeApi.classes = readList(gson, jsonReader, FactorioClass.class);
+                        section = RuntimeApi.Section.CLASSES;
+                    }
+                    case "events" -> {
+                        runtimeApi.events = readList(gson, jsonReader, Event.class);
+                        section = RuntimeApi.Section.EVENTS;
+                    }
+                    case "defines" -> {
+                        runtimeApi.defines = readList(gson, jsonReader, Define.class);
+                        section = RuntimeApi.Section.DEFINES;
+                    }
+                    case "builtin_types" -> {
+                        runtimeApi.builtinTypes = readList(gson, jsonReader, BuiltinType.class);
+                        section = RuntimeApi.Section.BUILTIN_TYPES;
+                    }
+                    case "concepts" -> {
+                        runtimeApi.concepts = readList(gson, jsonReader, Concept.class);
+                        section = RuntimeApi.Section.CONCEPTS;
+                    }
+                    case "global_objects" -> {
+                        runtimeApi.globalObjects = readList(gson, jsonReader, GlobalObject.class);
+                        section = RuntimeApi.Section.GLOBAL_OBJECTS;
+                    }
+                    default -> jsonReader.skipValue();
+                }
+
+                if (section != null) {
+                    runtimeApi.arrangeElements(section);
+                    listener.sectionParsed(section, runtimeApi);
+                }
+            }
+            jsonReader.endObject();
+
+            return runtimeApi;
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            throw new CoreException("Parsing error", e);
+        }
+    }
+
+    private static String readString(Gson gson, JsonReader jsonReader) throws IOException {
+        return gson.getAdapter(String.class).read(jsonReader);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> readList(Gson gson, JsonReader jsonReader, Class<T> elementType) throws IOException {
+        return (List<T>) gson.getAdapter(TypeToken.getParameterized(List.class, elementType)).read(jsonReader);
+    }
+
     private InputStream createVersionStream(FactorioApiVersion version) throws IOException {
-        String url = factorioApiBaseLink + "/" + version.version() + "/runtime-api.json";
+        return (httpCache != null ? httpCache : HttpCache.getInstance()).openStream(versionUrl(version));
+    }
+
+    private String versionUrl(FactorioApiVersion version) {
+        return factorioApiBaseLink + "/" + version.version() + "/runtime-api.json";
+    }
 
-        return (new URL(url)).openStream();
+    /**
+     * Receives the sections of the api while it is parsed
+     */
+    @FunctionalInterface
+    public interface SectionListener {
+        /**
+         * @param runtimeApi the api with all sections parsed so far, the section is arranged
+         */
+        void sectionParsed(RuntimeApi.Section section, RuntimeApi runtimeApi) throws IOException;
     }
 }
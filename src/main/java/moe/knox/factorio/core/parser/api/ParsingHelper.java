@@ -3,23 +3,24 @@ package moe.knox.factorio.core.parser.api;
 import com.google.gson.*;
 import marcono1234.gson.recordadapter.RecordTypeAdapterFactory;
 import moe.knox.factorio.core.parser.api.data.*;
-import moe.knox.factorio.core.parser.api.data.JsonPolymorphism.JsonPolymorphismDeserializer;
+import moe.knox.factorio.core.parser.api.data.JsonPolymorphism.JsonPolymorphismTypeAdapterFactory;
 
 public class ParsingHelper {
-    public static GsonBuilder addDeserializers(GsonBuilder builder) {
-        return addDeserializers(builder, null);
+    /**
+     * Gson is immutable and thread-safe, so all adapters are resolved once per JVM and shared by every parse.
+     * The types of the runtime api are interned by the {@link ValueTypeInterner} of the parse, see
+     * {@link ValueTypeInterner#open()}.
+     */
+    private static final Gson GSON = addDeserializers(new GsonBuilder()).create();
+
+    public static Gson getGson() {
+        return GSON;
     }
 
-    public static GsonBuilder addDeserializers(GsonBuilder builder, Class excludeType) {
+    public static GsonBuilder addDeserializers(GsonBuilder builder) {
         builder.registerTypeAdapterFactory(RecordTypeAdapterFactory.builder().allowMissingComponentValues().create());
-
-        if (excludeType == null || excludeType != Operator.class) {
-            builder.registerTypeAdapter(Operator.class, new JsonPolymorphismDeserializer<Operator>());
-        }
-
-        if (excludeType == null || excludeType != Parameter.class) {
-            builder.registerTypeAdapter(Parameter.class, new Parameter.ParameterDeserializer());
-        }
+        builder.registerTypeAdapterFactory(new JsonPolymorphismTypeAdapterFactory());
+        builder.registerTypeAdapterFactory(new Parameter.ParameterTypeAdapterFactory());
 
         return builder;
     }
@@ -6,7 +6,7 @@ package moe.knox.factorio.core.parser.api.data;
  *  These have to be hardcoded since there is no information what they really are :(
  */
 public class BuiltinType {
-    String name; // The name of the builtin type.
-    double order; // The order of the builtin type as shown in the html.
-    String description; // The text description of the builtin type.
+    public String name; // The name of the builtin type.
+    public double order; // The order of the builtin type as shown in the html.
+    public String description; // The text description of the builtin type.
 }
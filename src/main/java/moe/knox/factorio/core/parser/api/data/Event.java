@@ -9,14 +9,14 @@ import java.util.List;
  * Represents an event
  */
 public class Event implements Arrangeable {
-    String name; // The name of the event.
-    double order; // The order of the event as shown in the html.
-    String description; // The text description of the event.
-    List<String> notes; // (optional): A list of strings containing additional information about the event.
-    List<String> examples; // (optional): A list of strings containing example code and explanations.
+    public String name; // The name of the event.
+    public double order; // The order of the event as shown in the html.
+    public String description; // The text description of the event.
+    public List<String> notes; // (optional): A list of strings containing additional information about the event.
+    public List<String> examples; // (optional): A list of strings containing example code and explanations.
     @SerializedName("see_also")
-    List<String> seeAlso; // (optional): A list of strings that are references to other relevant classes or their methods and attributes.
-    List<Parameter> data; // The event-specific information that is provided.
+    public List<String> seeAlso; // (optional): A list of strings that are references to other relevant classes or their methods and attributes.
+    public List<Parameter> data; // The event-specific information that is provided.
 
     public void arrangeElements() {
         if (data != null && !data.isEmpty()) {
@@ -0,0 +1,175 @@
+package moe.knox.factorio.core.parser.api.data.JsonPolymorphism;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads an object whose start and discriminator were already consumed from the underlying reader. The consumed
+ * tokens are replayed first, then the rest of the object is read from the underlying reader.
+ */
+class DiscriminatorJsonReader extends JsonReader {
+    private static final Reader UNREADABLE_READER = new Reader() {
+        @Override
+        public int read(char[] buffer, int offset, int count) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private enum State {
+        BEGIN_OBJECT,
+        NAME,
+        VALUE,
+        DELEGATE
+    }
+
+    private final JsonReader in;
+    private final String name;
+    private final String value;
+    private State state = State.BEGIN_OBJECT;
+
+    DiscriminatorJsonReader(JsonReader in, String name, String value) {
+        super(UNREADABLE_READER);
+        this.in = in;
+        this.name = name;
+        this.value = value;
+        setLenient(in.isLenient());
+    }
+
+    @Override
+    public JsonToken peek() throws IOException {
+        return switch (state) {
+            case BEGIN_OBJECT -> JsonToken.BEGIN_OBJECT;
+            case NAME -> JsonToken.NAME;
+            case VALUE -> JsonToken.STRING;
+            case DELEGATE -> in.peek();
+        };
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        if (state == State.BEGIN_OBJECT) {
+            state = State.NAME;
+            return;
+        }
+        expectDelegate(JsonToken.BEGIN_OBJECT);
+        in.beginObject();
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        return state != State.DELEGATE || in.hasNext();
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        if (state == State.NAME) {
+            state = State.VALUE;
+            return name;
+        }
+        expectDelegate(JsonToken.NAME);
+        return in.nextName();
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        if (state == State.VALUE) {
+            state = State.DELEGATE;
+            return value;
+        }
+        expectDelegate(JsonToken.STRING);
+        return in.nextString();
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        switch (state) {
+            case BEGIN_OBJECT -> {
+                state = State.DELEGATE;
+                while (in.hasNext()) {
+                    in.nextName();
+                    in.skipValue();
+                }
+                in.endObject();
+            }
+            case NAME -> state = State.VALUE;
+            case VALUE -> state = State.DELEGATE;
+            case DELEGATE -> in.skipValue();
+        }
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        expectDelegate(JsonToken.END_OBJECT);
+        in.endObject();
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        expectDelegate(JsonToken.BEGIN_ARRAY);
+        in.beginArray();
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        expectDelegate(JsonToken.END_ARRAY);
+        in.endArray();
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        expectDelegate(JsonToken.BOOLEAN);
+        return in.nextBoolean();
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        expectDelegate(JsonToken.NULL);
+        in.nextNull();
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        expectDelegate(JsonToken.NUMBER);
+        return in.nextDouble();
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        expectDelegate(JsonToken.NUMBER);
+        return in.nextLong();
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        expectDelegate(JsonToken.NUMBER);
+        return in.nextInt();
+    }
+
+    @Override
+    public String getPath() {
+        return in.getPath();
+    }
+
+    @Override
+    public String getPreviousPath() {
+        return in.getPreviousPath();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " at " + in;
+    }
+
+    private void expectDelegate(JsonToken expected) throws IOException {
+        if (state != State.DELEGATE) {
+            throw new IllegalStateException("Expected " + expected + " but was " + peek() + " at path " + getPath());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package moe.knox.factorio.core.parser.api.data.JsonPolymorphism;
+
+import com.google.gson.*;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fills the field annotated with {@link JsonPolymorphism}, whose value matches the discriminator field named by
+ * {@link JsonPolymorphismClass}, with the whole json object.
+ * <p>
+ * The annotations are scanned once per type. Every element is then bound through a dispatch table from the
+ * discriminator value to the field handle and the adapter of the field type. When the discriminator is the first
+ * member of the object, the rest of the object is streamed once into the field. Otherwise the payload is read before
+ * its type is known, and only then the object is buffered as a tree and bound from it.
+ */
+public class JsonPolymorphismTypeAdapterFactory implements TypeAdapterFactory {
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+        JsonPolymorphismClass classAnnotation = rawType.getAnnotation(JsonPolymorphismClass.class);
+        if (classAnnotation == null) {
+            return null;
+        }
+
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+        Map<String, Binding> bindings = createBindings(gson, rawType);
+
+        return new PolymorphismTypeAdapter<>(delegate, classAnnotation.value(), bindings, isStreamable(rawType, classAnnotation.value()));
+    }
+
+    /**
+     * The object can only be streamed into the field of its variant, if the type has no other fields which need the
+     * payload.
+     */
+    private static boolean isStreamable(Class<?> rawType, String discriminatorName) {
+        for (Field field : rawType.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                continue;
+            }
+
+            if (!field.getName().equals(discriminatorName) && field.getAnnotation(JsonPolymorphism.class) == null) {
+                return false;
+            }
+        }
+
+        return rawType.getSuperclass() == Object.class;
+    }
+
+    private static Map<String, Binding> createBindings(Gson gson, Class<?> rawType) {
+        MethodHandles.Lookup lookup;
+        try {
+            lookup = MethodHandles.privateLookupIn(rawType, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("No access to the fields of " + rawType.getName(), e);
+        }
+
+        Map<String, Binding> bindings = new HashMap<>();
+        for (Field field : rawType.getDeclaredFields()) {
+            JsonPolymorphism annotation = field.getAnnotation(JsonPolymorphism.class);
+            if (annotation == null) {
+                continue;
+            }
+
+            if (Modifier.isFinal(field.getModifiers())) {
+                throw new IllegalArgumentException("The polymorphic field " + rawType.getName() + "." + field.getName() + " must not be final");
+            }
+
+            Binding binding;
+            try {
+                binding = new Binding(lookup.unreflectVarHandle(field), gson.getAdapter(field.getType()));
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("No access to the field " + rawType.getName() + "." + field.getName(), e);
+            }
+
+            for (String value : annotation.value()) {
+                if (bindings.putIfAbsent(value, binding) != null) {
+                    throw new IllegalArgumentException(rawType.getName() + " maps \"" + value + "\" to more than one field");
+                }
+            }
+        }
+
+        return bindings;
+    }
+
+    private record Binding(VarHandle field, TypeAdapter<?> adapter) {
+    }
+
+    private static class PolymorphismTypeAdapter<T> extends TypeAdapter<T> {
+        private final TypeAdapter<T> delegate;
+        private final String discriminatorName;
+        private final Map<String, Binding> bindings;
+        private final boolean streamable;
+
+        private PolymorphismTypeAdapter(TypeAdapter<T> delegate, String discriminatorName, Map<String, Binding> bindings, boolean streamable) {
+            this.delegate = delegate;
+            this.discriminatorName = discriminatorName;
+            this.bindings = bindings;
+            this.streamable = streamable;
+        }
+
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            delegate.write(out, value);
+        }
+
+        @Override
+        public T read(JsonReader in) throws IOException {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                return delegate.read(in);
+            }
+
+            in.beginObject();
+            if (!in.hasNext()) {
+                in.endObject();
+                return delegate.fromJsonTree(new JsonObject());
+            }
+
+            String firstName = in.nextName();
+            if (streamable && firstName.equals(discriminatorName) && in.peek() == JsonToken.STRING) {
+                return readStreamed(in, in.nextString());
+            }
+
+            // the discriminator follows the payload, the object has to be buffered until its type is known
+            JsonObject jsonObject = new JsonObject();
+            jsonObject.add(firstName, JsonParser.parseReader(in));
+            while (in.hasNext()) {
+                jsonObject.add(in.nextName(), JsonParser.parseReader(in));
+            }
+            in.endObject();
+
+            T result = delegate.fromJsonTree(jsonObject);
+
+            JsonElement discriminator = jsonObject.get(discriminatorName);
+            if (discriminator == null || !discriminator.isJsonPrimitive()) {
+                return result;
+            }
+
+            Binding binding = bindings.get(discriminator.getAsString());
+            if (binding != null) {
+                binding.field().set(result, binding.adapter().fromJsonTree(jsonObject));
+            }
+
+            return result;
+        }
+
+        private T readStreamed(JsonReader in, String discriminator) throws IOException {
+            JsonReader objectReader = new DiscriminatorJsonReader(in, discriminatorName, discriminator);
+
+            Binding binding = bindings.get(discriminator);
+            if (binding == null) {
+                return delegate.read(objectReader);
+            }
+
+            Object variant = binding.adapter().read(objectReader);
+
+            JsonObject discriminatorObject = new JsonObject();
+            discriminatorObject.addProperty(discriminatorName, discriminator);
+            T result = delegate.fromJsonTree(discriminatorObject);
+            binding.field().set(result, variant);
+
+            return result;
+        }
+    }
+}
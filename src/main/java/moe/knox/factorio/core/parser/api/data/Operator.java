@@ -5,9 +5,9 @@ import moe.knox.factorio.core.parser.api.data.JsonPolymorphism.JsonPolymorphismC
 
 @JsonPolymorphismClass("name")
 public class Operator implements Arrangeable {
-    final public String name;
-    final public @JsonPolymorphism("call") Method method;
-    final public @JsonPolymorphism({"index", "length"}) Attribute attribute;
+    public String name;
+    public @JsonPolymorphism("call") Method method;
+    public @JsonPolymorphism({"index", "length"}) Attribute attribute;
 
     public Operator(String name, Method method, Attribute attribute) {
         this.name = name;
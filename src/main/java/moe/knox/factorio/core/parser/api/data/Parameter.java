@@ -1,9 +1,11 @@
 package moe.knox.factorio.core.parser.api.data;
 
 import com.google.gson.*;
-import moe.knox.factorio.core.parser.api.ParsingHelper;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
-import java.util.Random;
+import java.io.IOException;
 
 public class Parameter implements Arrangeable {
     public String name; // The name of the parameter.
@@ -18,18 +20,36 @@ public class Parameter implements Arrangeable {
         }
     }
 
-    public static class ParameterDeserializer implements JsonDeserializer<Parameter> {
+    /**
+     * Reads parameters with the default streaming adapter and renames parameters, which are lua keywords.
+     */
+    public static class ParameterTypeAdapterFactory implements TypeAdapterFactory {
         @Override
-        public Parameter deserialize(JsonElement jsonElement, java.lang.reflect.Type type, JsonDeserializationContext jsonDeserializationContext) throws JsonParseException {
-            GsonBuilder builder = new GsonBuilder();
-            ParsingHelper.addDeserializers(builder, Parameter.class);
-            Parameter parameter = builder.create().fromJson(jsonElement, Parameter.class);
-
-            if (parameter.name.equals("function") || parameter.name.equals("end")) {
-                // only letters allowed!
-                parameter.name = "param_" + new Random().nextInt(999);
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+            if (typeToken.getRawType() != Parameter.class) {
+                return null;
             }
-            return parameter;
+
+            TypeAdapter<T> delegate = gson.getDelegateAdapter(this, typeToken);
+
+            return new TypeAdapter<>() {
+                @Override
+                public void write(JsonWriter out, T value) throws IOException {
+                    delegate.write(out, value);
+                }
+
+                @Override
+                public T read(JsonReader in) throws IOException {
+                    T result = delegate.read(in);
+
+                    if (result instanceof Parameter parameter && (parameter.name.equals("function") || parameter.name.equals("end"))) {
+                        // only letters allowed! the name stays the same for every run, so the generated stubs are stable
+                        parameter.name = "param_" + parameter.name;
+                    }
+
+                    return result;
+                }
+            };
         }
     }
 }
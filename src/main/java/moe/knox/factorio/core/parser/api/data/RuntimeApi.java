@@ -73,33 +73,69 @@ public class RuntimeApi implements Arrangeable {
     @SerializedName("global_objects")
     public List<GlobalObject> globalObjects;
 
-    public void arrangeElements() {
-        if (classes != null && !classes.isEmpty()) {
-            classes.sort(Comparator.comparingDouble(factorioClass -> factorioClass.order));
-            classes.forEach(FactorioClass::arrangeElements);
-        }
-
-        if (events != null && !events.isEmpty()) {
-            events.sort(Comparator.comparingDouble(event -> event.order));
-            events.forEach(Event::arrangeElements);
-        }
-
-        if (defines != null && !defines.isEmpty()) {
-            defines.sort(Comparator.comparingDouble(define -> define.order));
-            defines.forEach(Define::arrangeElements);
-        }
-
-        if (builtinTypes != null && !builtinTypes.isEmpty()) {
-            builtinTypes.sort(Comparator.comparingDouble(builtinType -> builtinType.order));
+    /**
+     * The top level lists of the api, by their name in the json
+     */
+    public enum Section {
+        CLASSES("classes"),
+        EVENTS("events"),
+        DEFINES("defines"),
+        BUILTIN_TYPES("builtin_types"),
+        CONCEPTS("concepts"),
+        GLOBAL_OBJECTS("global_objects");
+
+        public final String jsonName;
+
+        Section(String jsonName) {
+            this.jsonName = jsonName;
         }
+    }
 
-        if (concepts != null && !concepts.isEmpty()) {
-            concepts.sort(Comparator.comparingDouble(Concept::order));
-            concepts.forEach(Concept::arrangeElements);
+    public void arrangeElements() {
+        for (Section section : Section.values()) {
+            arrangeElements(section);
         }
+    }
 
-        if (globalObjects != null && !globalObjects.isEmpty()) {
-            globalObjects.sort(Comparator.comparingDouble(globalObject -> globalObject.order));
+    /**
+     * Arrange the elements of a single section, the other sections can still be incomplete.
+     */
+    public void arrangeElements(Section section) {
+        switch (section) {
+            case CLASSES -> {
+                if (classes != null && !classes.isEmpty()) {
+                    classes.sort(Comparator.comparingDouble(factorioClass -> factorioClass.order));
+                    classes.forEach(FactorioClass::arrangeElements);
+                }
+            }
+            case EVENTS -> {
+                if (events != null && !events.isEmpty()) {
+                    events.sort(Comparator.comparingDouble(event -> event.order));
+                    events.forEach(Event::arrangeElements);
+                }
+            }
+            case DEFINES -> {
+                if (defines != null && !defines.isEmpty()) {
+                    defines.sort(Comparator.comparingDouble(define -> define.order));
+                    defines.forEach(Define::arrangeElements);
+                }
+            }
+            case BUILTIN_TYPES -> {
+                if (builtinTypes != null && !builtinTypes.isEmpty()) {
+                    builtinTypes.sort(Comparator.comparingDouble(builtinType -> builtinType.order));
+                }
+            }
+            case CONCEPTS -> {
+                if (concepts != null && !concepts.isEmpty()) {
+                    concepts.sort(Comparator.comparingDouble(Concept::order));
+                    concepts.forEach(Concept::arrangeElements);
+                }
+            }
+            case GLOBAL_OBJECTS -> {
+                if (globalObjects != null && !globalObjects.isEmpty()) {
+                    globalObjects.sort(Comparator.comparingDouble(globalObject -> globalObject.order));
+                }
+            }
         }
     }
 }
@@ -2,62 +2,111 @@ package moe.knox.factorio.core.parser.api.data;
 
 import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
-import moe.knox.factorio.core.parser.api.data.desirealizer.ValueTypeJsonDeserializer;
+import moe.knox.factorio.core.parser.api.data.desirealizer.ValueTypeTypeAdapterFactory;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 
-@JsonAdapter(ValueTypeJsonDeserializer.class)
-public interface ValueType extends Arrangeable {
-    HashMap<String, Class<? extends ValueType>> TYPES_PER_NATIVE_NAME = new HashMap<>(){{
-        put("simple", Simple.class);
-        put("array", Array.class);
-        put("literal", Literal.class);
-        put("type", Type.class);
-        put("function", Function.class);
-        put("tuple", Tuple.class);
-        put("struct", Struct.class);
-        put("union", Union.class);
-        put("dictionary", Dictionary.class);
-        put("LuaCustomTable", LuaCustomTable.class);
-        put("table", Table.class);
-        put("LuaLazyLoadedValue", LuaLazyLoadedValue.class);
-    }};
-
-    private static Map<Class<? extends ValueType>, String> nativeNamesPerType() {
-        Map<Class<? extends ValueType>, String> reversedMap = new HashMap<>();
-
-        for(Map.Entry<String, Class<? extends ValueType>> entry : TYPES_PER_NATIVE_NAME.entrySet()){
-            reversedMap.put(entry.getValue(), entry.getKey());
-        }
-
-        return reversedMap;
-    }
+@JsonAdapter(ValueTypeTypeAdapterFactory.class)
+public sealed interface ValueType extends Arrangeable {
+    Map<String, Class<? extends ValueType>> TYPES_PER_NATIVE_NAME = Map.ofEntries(
+            Map.entry("simple", Simple.class),
+            Map.entry("array", Array.class),
+            Map.entry("literal", Literal.class),
+            Map.entry("type", Type.class),
+            Map.entry("function", Function.class),
+            Map.entry("tuple", Tuple.class),
+            Map.entry("struct", Struct.class),
+            Map.entry("union", Union.class),
+            Map.entry("dictionary", Dictionary.class),
+            Map.entry("LuaCustomTable", LuaCustomTable.class),
+            Map.entry("table", Table.class),
+            Map.entry("LuaLazyLoadedValue", LuaLazyLoadedValue.class)
+    );
 
     default String getDescription() { return ""; };
 
     @Override
     default void arrangeElements() {}
 
-    default String getNativeName() {
-        return nativeNamesPerType().get(getClass());
+    /**
+     * The name of the type as used by `complex_type` in the json. Each record returns a constant.
+     */
+    String getNativeName();
+
+    /**
+     * Exhaustive dispatch over all types. Every new type has to be added here, so no consumer can miss it.
+     *
+     * @param <R> result of the visit
+     * @param <E> exception the visitor may throw
+     */
+    <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E;
+
+    interface Visitor<R, E extends Exception> {
+        R visitSimple(Simple type) throws E;
+
+        R visitArray(Array type) throws E;
+
+        R visitLiteral(Literal type) throws E;
+
+        R visitType(Type type) throws E;
+
+        R visitFunction(Function type) throws E;
+
+        R visitTuple(Tuple type) throws E;
+
+        R visitStruct(Struct type) throws E;
+
+        R visitUnion(Union type) throws E;
+
+        R visitDictionary(Dictionary type) throws E;
+
+        R visitLuaCustomTable(LuaCustomTable type) throws E;
+
+        R visitTable(Table type) throws E;
+
+        R visitLuaLazyLoadedValue(LuaLazyLoadedValue type) throws E;
     }
 
-    record Simple(String value) implements ValueType {}
+    record Simple(String value) implements ValueType {
+        public String getNativeName() { return "simple"; }
 
-    record Array(ValueType value) implements ValueType {}
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E { return visitor.visitSimple(this); }
+    }
+
+    record Array(ValueType value) implements ValueType {
+        public String getNativeName() { return "array"; }
+
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E { return visitor.visitArray(this); }
+    }
 
     record Literal(String value, String description) implements ValueType {
         public String getDescription() { return description; }
+
+        public String getNativeName() { return "literal"; }
+
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E { return visitor.visitLiteral(this); }
     }
 
     record Type(String value, String description) implements ValueType {
         public String getDescription() { return description; }
+
+        public String getNativeName() { return "type"; }
+
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E { return visitor.visitType(this); }
     }
 
-    record Function(List<ValueType> parameters) implements ValueType {}
+    record Function(List<ValueType> parameters) implements ValueType {
+        public String getNativeName() { return "function"; }
+
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E { return visitor.visitFunction(this); }
+    }
 
     record Tuple(List<TypeTupleParameter> parameters) implements ValueType {
+        public String getNativeName() { return "tuple"; }
+
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E { return visitor.visitTuple(this); }
+
         public record TypeTupleParameter(String name, int order, String description, ValueType type, boolean optional) {
         }
     }
@@ -74,17 +123,28 @@ public interface ValueType extends Arrangeable {
         ) {
         }
 
-        @Override
-        public void arrangeElements() {
-            attributes.sort(Comparator.comparingDouble(attribute -> attribute.order));
-        }
+        public String getNativeName() { return "struct"; }
+
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E { return visitor.visitStruct(this); }
     }
 
-    record Union(List<ValueType> options, @SerializedName("full_format") boolean fullFormat) implements ValueType {}
+    record Union(List<ValueType> options, @SerializedName("full_format") boolean fullFormat) implements ValueType {
+        public String getNativeName() { return "union"; }
 
-    record Dictionary(ValueType key, ValueType value) implements ValueType {}
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E { return visitor.visitUnion(this); }
+    }
+
+    record Dictionary(ValueType key, ValueType value) implements ValueType {
+        public String getNativeName() { return "dictionary"; }
+
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E { return visitor.visitDictionary(this); }
+    }
+
+    record LuaCustomTable(ValueType key, ValueType value) implements ValueType {
+        public String getNativeName() { return "LuaCustomTable"; }
 
-    record LuaCustomTable(ValueType key, ValueType value) implements ValueType {}
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E { return visitor.visitLuaCustomTable(this); }
+    }
 
     record Table(
             List<Parameter> parameters,
@@ -99,6 +159,10 @@ public interface ValueType extends Arrangeable {
     ) implements ValueType {
         public String getDescription() { return variantParameterDescription; }
 
+        public String getNativeName() { return "table"; }
+
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E { return visitor.visitTable(this); }
+
         @Override
         public void arrangeElements() {
             if (variantParameterGroups != null && !variantParameterGroups.isEmpty()) {
@@ -110,5 +174,9 @@ public interface ValueType extends Arrangeable {
         }
     }
 
-    record LuaLazyLoadedValue(ValueType value) implements ValueType {}
+    record LuaLazyLoadedValue(ValueType value) implements ValueType {
+        public String getNativeName() { return "LuaLazyLoadedValue"; }
+
+        public <R, E extends Exception> R accept(Visitor<R, E> visitor) throws E { return visitor.visitLuaLazyLoadedValue(this); }
+    }
 }
@@ -0,0 +1,223 @@
+package moe.knox.factorio.core.parser.api.data;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Canonicalizes structurally equal {@link ValueType}s, so every shape like {@code Simple("string")} exists only once.
+ * <p>
+ * Nodes have to be interned bottom-up (children before their parent), as the parsers do.
+ * Then all children of a canonical node are canonical as well, so two candidates are hashed and compared only one
+ * level deep, with the identity of their children. A lookup costs the size of the node, not of its whole tree.
+ * Canonical nodes can be compared and used as keys by identity.
+ * <p>
+ * An interner belongs to one parse, the types it keeps are released together with the parsed api. A parse with the
+ * shared Gson opens a {@link Scope}, the {@link ValueType} adapter interns with the interner of the scope of its thread.
+ * <p>
+ * {@link ValueType.Table}s hold mutable {@link Parameter}s, they and every type containing them are never interned.
+ */
+public final class ValueTypeInterner {
+    private static final ThreadLocal<ValueTypeInterner> current = new ThreadLocal<>();
+
+    private final ConcurrentMap<Key, ValueType> canonicalTypes = new ConcurrentHashMap<>();
+
+    /**
+     * Intern the types read on the current thread with a new interner, until the scope is closed.
+     */
+    public static Scope open() {
+        return new Scope(new ValueTypeInterner());
+    }
+
+    /**
+     * @return the interner of the open scope of the current thread, null if there is none
+     */
+    @Nullable
+    public static ValueTypeInterner current() {
+        return current.get();
+    }
+
+    /**
+     * The interner of a parse on the current thread. Scopes can be nested, closing one restores the outer one.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final ValueTypeInterner interner;
+        @Nullable
+        private final ValueTypeInterner outer;
+
+        private Scope(ValueTypeInterner interner) {
+            this.interner = interner;
+            this.outer = current.get();
+            current.set(interner);
+        }
+
+        public ValueTypeInterner getInterner() {
+            return interner;
+        }
+
+        @Override
+        public void close() {
+            if (outer != null) {
+                current.set(outer);
+            } else {
+                current.remove();
+            }
+        }
+    }
+
+    /**
+     * A node with the hash of its own values and the identities of its children, which is computed once.
+     */
+    private static final class Key {
+        private final ValueType type;
+        private final Object[] components;
+        private final int hash;
+
+        private Key(ValueType type) {
+            this.type = type;
+            this.components = components(type);
+
+            int hash = type.getClass().hashCode();
+            for (Object component : components) {
+                hash = 31 * hash + (component instanceof ValueType ? System.identityHashCode(component) : Objects.hashCode(component));
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other) || other.hash != hash || other.type.getClass() != type.getClass()
+                    || other.components.length != components.length) {
+                return false;
+            }
+
+            for (int i = 0; i < components.length; i++) {
+                Object component = components[i];
+                boolean equal = component instanceof ValueType ? component == other.components[i] : Objects.equals(component, other.components[i]);
+                if (!equal) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * @return the canonical instance, which is structurally equal to the given type
+     */
+    @Contract("null -> null; !null -> !null")
+    @SuppressWarnings("unchecked")
+    public <T extends ValueType> T intern(@Nullable T type) {
+        if (type == null || !isInternable(type)) {
+            return type;
+        }
+
+        ValueType canonical = canonicalTypes.putIfAbsent(new Key(type), type);
+
+        return canonical == null ? type : (T) canonical;
+    }
+
+    /**
+     * @return number of distinct canonical types
+     */
+    public int size() {
+        return canonicalTypes.size();
+    }
+
+    private boolean isInternable(ValueType type) {
+        if (type instanceof ValueType.Simple || type instanceof ValueType.Literal || type instanceof ValueType.Type) {
+            return true;
+        } else if (type instanceof ValueType.Array array) {
+            return isCanonical(array.value());
+        } else if (type instanceof ValueType.LuaLazyLoadedValue lazyLoadedValue) {
+            return isCanonical(lazyLoadedValue.value());
+        } else if (type instanceof ValueType.Dictionary dictionary) {
+            return isCanonical(dictionary.key()) && isCanonical(dictionary.value());
+        } else if (type instanceof ValueType.LuaCustomTable luaCustomTable) {
+            return isCanonical(luaCustomTable.key()) && isCanonical(luaCustomTable.value());
+        } else if (type instanceof ValueType.Union union) {
+            return areCanonical(union.options());
+        } else if (type instanceof ValueType.Function function) {
+            return areCanonical(function.parameters());
+        } else if (type instanceof ValueType.Tuple tuple) {
+            return tuple.parameters() == null || tuple.parameters().stream().allMatch(parameter -> isCanonical(parameter.type()));
+        } else if (type instanceof ValueType.Struct struct) {
+            return struct.attributes() == null || struct.attributes().stream().allMatch(attribute -> isCanonical(attribute.type()));
+        }
+
+        return false;
+    }
+
+    private boolean isCanonical(@Nullable ValueType type) {
+        // a table is never canonical, every other node is looked up one level deep
+        return type == null || (!(type instanceof ValueType.Table) && canonicalTypes.get(new Key(type)) == type);
+    }
+
+    private boolean areCanonical(@Nullable List<ValueType> types) {
+        return types == null || types.stream().allMatch(this::isCanonical);
+    }
+
+    /**
+     * The values of the node in a fixed order, its children are compared by identity.
+     * A missing list is distinguished from an empty one by its length marker.
+     */
+    private static Object[] components(ValueType type) {
+        if (type instanceof ValueType.Simple simple) {
+            return new Object[]{simple.value()};
+        } else if (type instanceof ValueType.Literal literal) {
+            return new Object[]{literal.value(), literal.description()};
+        } else if (type instanceof ValueType.Type typeType) {
+            return new Object[]{typeType.value(), typeType.description()};
+        } else if (type instanceof ValueType.Array array) {
+            return new Object[]{array.value()};
+        } else if (type instanceof ValueType.LuaLazyLoadedValue lazyLoadedValue) {
+            return new Object[]{lazyLoadedValue.value()};
+        } else if (type instanceof ValueType.Dictionary dictionary) {
+            return new Object[]{dictionary.key(), dictionary.value()};
+        } else if (type instanceof ValueType.LuaCustomTable luaCustomTable) {
+            return new Object[]{luaCustomTable.key(), luaCustomTable.value()};
+        } else if (type instanceof ValueType.Union union) {
+            Object[] components = listComponents(union.options(), 1);
+            components[components.length - 1] = union.fullFormat();
+            return components;
+        } else if (type instanceof ValueType.Function function) {
+            return listComponents(function.parameters(), 0);
+        } else if (type instanceof ValueType.Tuple tuple) {
+            return listComponents(tuple.parameters() == null ? null : tuple.parameters().stream()
+                    .flatMap(parameter -> Arrays.stream(new Object[]{parameter.name(), parameter.order(), parameter.description(), parameter.type(), parameter.optional()}))
+                    .toList(), 0);
+        } else if (type instanceof ValueType.Struct struct) {
+            return listComponents(struct.attributes() == null ? null : struct.attributes().stream()
+                    .flatMap(attribute -> Arrays.stream(new Object[]{attribute.name(), attribute.order(), attribute.description(), attribute.type(), attribute.optional(), attribute.read(), attribute.write()}))
+                    .toList(), 0);
+        }
+
+        throw new IllegalArgumentException("Type is not internable: " + type.getNativeName());
+    }
+
+    private static Object[] listComponents(@Nullable List<?> list, int extra) {
+        if (list == null) {
+            return new Object[1 + extra];
+        }
+
+        Object[] components = new Object[1 + list.size() + extra];
+        components[0] = list.size();
+        for (int i = 0; i < list.size(); i++) {
+            components[i + 1] = list.get(i);
+        }
+        return components;
+    }
+}
@@ -0,0 +1,303 @@
+package moe.knox.factorio.core.parser.api.data.desirealizer;
+
+import com.google.gson.*;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import moe.knox.factorio.core.parser.api.data.Parameter;
+import moe.knox.factorio.core.parser.api.data.ParameterGroup;
+import moe.knox.factorio.core.parser.api.data.ValueType;
+import moe.knox.factorio.core.parser.api.data.ValueTypeInterner;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Streaming adapter for {@link ValueType}.
+ * <p>
+ * Reads every complex type in one pass directly from the {@link JsonReader}, so no intermediate json tree and no
+ * additional {@link Gson} instance is created per type.
+ * The nested adapters are resolved once, when the factory is asked for the {@link ValueType} adapter.
+ * Every read type is canonicalized by the {@link ValueTypeInterner} of the parse on the current thread, see
+ * {@link ValueTypeInterner#open()}. Outside of a parse the types are not interned.
+ */
+public class ValueTypeTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+        if (typeToken.getRawType() != ValueType.class) {
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        TypeAdapter<T> adapter = (TypeAdapter<T>) new ValueTypeAdapter(gson);
+
+        return adapter;
+    }
+
+    private static final class ValueTypeAdapter extends TypeAdapter<ValueType> {
+        private final TypeAdapter<JsonElement> jsonElementAdapter;
+        private final TypeAdapter<List<ValueType>> valueTypesAdapter;
+        private final TypeAdapter<List<Parameter>> parametersAdapter;
+        private final TypeAdapter<List<ParameterGroup>> parameterGroupsAdapter;
+        private final TypeAdapter<List<ValueType.Tuple.TypeTupleParameter>> tupleParametersAdapter;
+        private final TypeAdapter<List<ValueType.Struct.StructAttribute>> structAttributesAdapter;
+
+        private ValueTypeAdapter(Gson gson) {
+            jsonElementAdapter = gson.getAdapter(JsonElement.class);
+            valueTypesAdapter = gson.getAdapter(new TypeToken<List<ValueType>>() {});
+            parametersAdapter = gson.getAdapter(new TypeToken<List<Parameter>>() {});
+            parameterGroupsAdapter = gson.getAdapter(new TypeToken<List<ParameterGroup>>() {});
+            tupleParametersAdapter = gson.getAdapter(new TypeToken<List<ValueType.Tuple.TypeTupleParameter>>() {});
+            structAttributesAdapter = gson.getAdapter(new TypeToken<List<ValueType.Struct.StructAttribute>>() {});
+        }
+
+        @Override
+        public void write(JsonWriter out, ValueType value) {
+            throw new UnsupportedOperationException("ValueType can only be deserialized");
+        }
+
+        @Override
+        public ValueType read(JsonReader in) throws IOException {
+            JsonToken token = in.peek();
+
+            if (token == JsonToken.STRING) {
+                return intern(new ValueType.Simple(in.nextString()));
+            }
+
+            if (token != JsonToken.BEGIN_OBJECT) {
+                in.skipValue();
+                return null;
+            }
+
+            in.beginObject();
+
+            ValueType result = null;
+            if (in.hasNext()) {
+                String firstName = in.nextName();
+
+                if (firstName.equals("complex_type")) {
+                    result = readComplexType(in, in.nextString());
+                } else {
+                    result = readReordered(in, firstName);
+                }
+            }
+
+            in.endObject();
+
+            return intern(result);
+        }
+
+        private static ValueType intern(ValueType type) {
+            ValueTypeInterner interner = ValueTypeInterner.current();
+            return interner != null ? interner.intern(type) : type;
+        }
+
+        /**
+         * Slow path for objects, where `complex_type` is not the first member.
+         * The object is buffered once and read again with `complex_type` in front.
+         */
+        private ValueType readReordered(JsonReader in, String firstName) throws IOException {
+            JsonObject buffered = new JsonObject();
+            buffered.add(firstName, jsonElementAdapter.read(in));
+            while (in.hasNext()) {
+                buffered.add(in.nextName(), jsonElementAdapter.read(in));
+            }
+
+            JsonElement complexType = buffered.remove("complex_type");
+            if (complexType == null) {
+                return null;
+            }
+
+            JsonObject reordered = new JsonObject();
+            reordered.add("complex_type", complexType);
+            buffered.entrySet().forEach(entry -> reordered.add(entry.getKey(), entry.getValue()));
+
+            return fromJsonTree(reordered);
+        }
+
+        /**
+         * Reads all remaining members of the current object as the given complex type.
+         */
+        private ValueType readComplexType(JsonReader in, @NotNull String complexTypeNativeName) throws IOException {
+            return switch (complexTypeNativeName) {
+                case "simple" -> readSimple(in);
+                case "array" -> new ValueType.Array(readValue(in));
+                case "literal" -> readLiteral(in);
+                case "type" -> readType(in);
+                case "function" -> new ValueType.Function(readList(in, "parameters", valueTypesAdapter));
+                case "tuple" -> new ValueType.Tuple(readList(in, "parameters", tupleParametersAdapter));
+                case "struct" -> readStruct(in);
+                case "union" -> readUnion(in);
+                case "dictionary" -> readDictionary(in);
+                case "LuaCustomTable" -> readLuaCustomTable(in);
+                case "table" -> readTable(in);
+                case "LuaLazyLoadedValue" -> new ValueType.LuaLazyLoadedValue(readValue(in));
+                default -> throw new JsonParseException("Unknown complex type: " + complexTypeNativeName);
+            };
+        }
+
+        private ValueType.Simple readSimple(JsonReader in) throws IOException {
+            String value = null;
+            while (in.hasNext()) {
+                if (in.nextName().equals("value")) {
+                    value = nextString(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+
+            return new ValueType.Simple(value);
+        }
+
+        private ValueType readValue(JsonReader in) throws IOException {
+            ValueType value = null;
+            while (in.hasNext()) {
+                if (in.nextName().equals("value")) {
+                    value = read(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+
+            return value;
+        }
+
+        private ValueType.Literal readLiteral(JsonReader in) throws IOException {
+            String value = null;
+            String description = null;
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "value" -> value = nextString(in);
+                    case "description" -> description = nextString(in);
+                    default -> in.skipValue();
+                }
+            }
+
+            return new ValueType.Literal(value, description);
+        }
+
+        /**
+         * A named type with a description. A description around a complex type is dropped and the complex type
+         * is used itself, it has no name to present.
+         */
+        private ValueType readType(JsonReader in) throws IOException {
+            ValueType value = null;
+            String description = null;
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "value" -> value = read(in);
+                    case "description" -> description = nextString(in);
+                    default -> in.skipValue();
+                }
+            }
+
+            // the type is presented by its name, nested complex types are not named
+            if (value != null && !(value instanceof ValueType.Simple)) {
+                return value;
+            }
+
+            String name = value instanceof ValueType.Simple simple ? simple.value() : null;
+
+            return new ValueType.Type(name, description);
+        }
+
+        /**
+         * The attributes are arranged right away, interned types must not change afterwards.
+         */
+        private ValueType.Struct readStruct(JsonReader in) throws IOException {
+            List<ValueType.Struct.StructAttribute> attributes = readList(in, "attributes", structAttributesAdapter);
+            if (attributes != null) {
+                attributes.sort(Comparator.comparingInt(ValueType.Struct.StructAttribute::order));
+            }
+
+            return new ValueType.Struct(attributes);
+        }
+
+        private ValueType.Union readUnion(JsonReader in) throws IOException {
+            List<ValueType> options = null;
+            boolean fullFormat = false;
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "options" -> options = valueTypesAdapter.read(in);
+                    case "full_format" -> fullFormat = in.nextBoolean();
+                    default -> in.skipValue();
+                }
+            }
+
+            return new ValueType.Union(options, fullFormat);
+        }
+
+        private ValueType.Dictionary readDictionary(JsonReader in) throws IOException {
+            ValueType[] keyValue = readKeyValue(in);
+
+            return new ValueType.Dictionary(keyValue[0], keyValue[1]);
+        }
+
+        private ValueType.LuaCustomTable readLuaCustomTable(JsonReader in) throws IOException {
+            ValueType[] keyValue = readKeyValue(in);
+
+            return new ValueType.LuaCustomTable(keyValue[0], keyValue[1]);
+        }
+
+        private ValueType[] readKeyValue(JsonReader in) throws IOException {
+            ValueType[] keyValue = new ValueType[2];
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "key" -> keyValue[0] = read(in);
+                    case "value" -> keyValue[1] = read(in);
+                    default -> in.skipValue();
+                }
+            }
+
+            return keyValue;
+        }
+
+        private ValueType.Table readTable(JsonReader in) throws IOException {
+            List<Parameter> parameters = null;
+            List<ParameterGroup> variantParameterGroups = null;
+            String variantParameterDescription = null;
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "parameters" -> parameters = parametersAdapter.read(in);
+                    case "variant_parameter_groups" -> variantParameterGroups = parameterGroupsAdapter.read(in);
+                    case "variant_parameter_description" -> variantParameterDescription = nextString(in);
+                    default -> in.skipValue();
+                }
+            }
+
+            return new ValueType.Table(parameters, variantParameterGroups, variantParameterDescription);
+        }
+
+        private <E> List<E> readList(JsonReader in, String memberName, TypeAdapter<List<E>> listAdapter) throws IOException {
+            List<E> list = null;
+            while (in.hasNext()) {
+                if (in.nextName().equals(memberName)) {
+                    list = listAdapter.read(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+
+            return list;
+        }
+
+        /**
+         * Literal values can also be numbers or booleans, they are kept as their textual representation.
+         */
+        private static String nextString(JsonReader in) throws IOException {
+            return switch (in.peek()) {
+                case NULL -> {
+                    in.nextNull();
+                    yield null;
+                }
+                case BOOLEAN -> Boolean.toString(in.nextBoolean());
+                default -> in.nextString();
+            };
+        }
+    }
+}
@@ -0,0 +1,651 @@
+package moe.knox.factorio.core.parser.api.snapshot;
+
+import moe.knox.factorio.core.parser.api.data.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact binary snapshot of a parsed {@link RuntimeApi}.
+ * <p>
+ * Layout (all numbers are unsigned varints):
+ * <pre>
+ * magic, format version, application_version, api_version
+ * string table:     count, (length, utf-8 bytes)*
+ * value type table: count, (tag, members)*   every structurally equal ValueType is stored once
+ * body:             the RuntimeApi graph, strings and value types are referenced by their table index
+ * </pre>
+ * Nullable references and lists are stored with an offset of one, so 0 means null.
+ * The snapshot is written after {@link RuntimeApi#arrangeElements()}, the loaded model is already arranged.
+ */
+public final class RuntimeApiSnapshot {
+    static final int MAGIC = 0x46414354; // "FACT"
+    // 2: keyword parameters are renamed deterministically
+    // 3: type wrappers around complex types are replaced by the complex type
+    static final int FORMAT_VERSION = 3;
+
+    private static final int TAG_SIMPLE = 0;
+    private static final int TAG_ARRAY = 1;
+    private static final int TAG_LITERAL = 2;
+    private static final int TAG_TYPE = 3;
+    private static final int TAG_FUNCTION = 4;
+    private static final int TAG_TUPLE = 5;
+    private static final int TAG_STRUCT = 6;
+    private static final int TAG_UNION = 7;
+    private static final int TAG_DICTIONARY = 8;
+    private static final int TAG_LUA_CUSTOM_TABLE = 9;
+    private static final int TAG_TABLE = 10;
+    private static final int TAG_LUA_LAZY_LOADED_VALUE = 11;
+
+    private RuntimeApiSnapshot() {
+    }
+
+    /**
+     * Header of a snapshot, which is readable without decoding the whole model.
+     */
+    public record Key(String applicationVersion, String apiVersion) {
+        @NotNull
+        public static Key of(@NotNull RuntimeApi runtimeApi) {
+            return new Key(runtimeApi.application_version, runtimeApi.api_version);
+        }
+    }
+
+    public static void write(@NotNull RuntimeApi runtimeApi, @NotNull OutputStream outputStream) throws IOException {
+        SnapshotWriter writer = new SnapshotWriter();
+        writer.writeRuntimeApi(runtimeApi);
+
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, 1 << 16);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzipOutputStream, 1 << 16));
+        out.writeInt(MAGIC);
+        writeVarInt(out, FORMAT_VERSION);
+        writeNullableString(out, runtimeApi.application_version);
+        writeNullableString(out, runtimeApi.api_version);
+
+        writeVarInt(out, writer.strings.size());
+        for (String string : writer.strings.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+
+        writeVarInt(out, writer.valueTypes.size());
+        writer.valueTypeTable.writeTo(out);
+        writer.body.writeTo(out);
+        out.flush();
+        gzipOutputStream.finish();
+    }
+
+    @NotNull
+    public static RuntimeApi read(@NotNull InputStream inputStream) throws IOException {
+        DataInputStream in = openAndCheck(inputStream);
+        Key key = new Key(readNullableString(in), readNullableString(in));
+
+        SnapshotReader reader = new SnapshotReader(in);
+        int stringCount = readVarInt(in);
+        reader.strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[readVarInt(in)];
+            in.readFully(bytes);
+            reader.strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int valueTypeCount = readVarInt(in);
+        reader.valueTypes = new ValueType[valueTypeCount];
+        ValueTypeInterner interner = new ValueTypeInterner();
+        for (int i = 0; i < valueTypeCount; i++) {
+            reader.valueTypes[i] = interner.intern(reader.readValueTypeNode());
+        }
+
+        RuntimeApi runtimeApi = reader.readRuntimeApi();
+        runtimeApi.application_version = key.applicationVersion();
+        runtimeApi.api_version = key.apiVersion();
+
+        return runtimeApi;
+    }
+
+    /**
+     * Reads only the header of the snapshot.
+     */
+    @NotNull
+    public static Key readKey(@NotNull InputStream inputStream) throws IOException {
+        DataInputStream in = openAndCheck(inputStream);
+
+        return new Key(readNullableString(in), readNullableString(in));
+    }
+
+    private static DataInputStream openAndCheck(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(inputStream, 1 << 16)));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a runtime api snapshot");
+        }
+
+        int formatVersion = readVarInt(in);
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format version: " + formatVersion);
+        }
+
+        return in;
+    }
+
+    private static void writeNullableString(DataOutput out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Orders are whole numbers in practice, they are stored as varint with a marker bit.
+     * Other values fall back to the full double.
+     */
+    static void writeOrder(DataOutput out, double order) throws IOException {
+        int whole = (int) order;
+        if (whole == order && whole >= 0 && whole < (1 << 30)) {
+            writeVarInt(out, whole << 1);
+        } else {
+            writeVarInt(out, 1);
+            out.writeDouble(order);
+        }
+    }
+
+    static double readOrder(DataInput in) throws IOException {
+        int value = readVarInt(in);
+        if ((value & 1) == 0) {
+            return value >>> 1;
+        }
+
+        return in.readDouble();
+    }
+
+    private static final class SnapshotWriter {
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private final Map<ValueType, Integer> valueTypes = new HashMap<>();
+        private final ByteArrayOutputStream valueTypeTable = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final DataOutputStream valueTypeOut = new DataOutputStream(valueTypeTable);
+        private final DataOutputStream bodyOut = new DataOutputStream(body);
+
+        private int string(@Nullable String value) {
+            if (value == null) {
+                return 0;
+            }
+
+            return strings.computeIfAbsent(value, v -> strings.size()) + 1;
+        }
+
+        /**
+         * Registers the value type and all value types it references.
+         * Children are always registered before their parent, so the reader can resolve them in one pass.
+         */
+        private int valueType(@Nullable ValueType type) throws IOException {
+            if (type == null) {
+                return 0;
+            }
+
+            Integer id = valueTypes.get(type);
+            if (id != null) {
+                return id + 1;
+            }
+
+            ByteArrayOutputStream node = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(node);
+
+            if (type instanceof ValueType.Simple simple) {
+                out.writeByte(TAG_SIMPLE);
+                writeVarInt(out, string(simple.value()));
+            } else if (type instanceof ValueType.Array array) {
+                out.writeByte(TAG_ARRAY);
+                writeVarInt(out, valueType(array.value()));
+            } else if (type instanceof ValueType.Literal literal) {
+                out.writeByte(TAG_LITERAL);
+                writeVarInt(out, string(literal.value()));
+                writeVarInt(out, string(literal.description()));
+            } else if (type instanceof ValueType.Type typeWithDescription) {
+                out.writeByte(TAG_TYPE);
+                writeVarInt(out, string(typeWithDescription.value()));
+                writeVarInt(out, string(typeWithDescription.description()));
+            } else if (type instanceof ValueType.Function function) {
+                out.writeByte(TAG_FUNCTION);
+                writeValueTypes(out, function.parameters());
+            } else if (type instanceof ValueType.Tuple tuple) {
+                out.writeByte(TAG_TUPLE);
+                writeList(out, tuple.parameters(), (o, parameter) -> {
+                    writeVarInt(o, string(parameter.name()));
+                    writeVarInt(o, parameter.order());
+                    writeVarInt(o, string(parameter.description()));
+                    writeVarInt(o, valueType(parameter.type()));
+                    o.writeBoolean(parameter.optional());
+                });
+            } else if (type instanceof ValueType.Struct struct) {
+                out.writeByte(TAG_STRUCT);
+                writeList(out, struct.attributes(), (o, attribute) -> {
+                    writeVarInt(o, string(attribute.name()));
+                    writeVarInt(o, attribute.order());
+                    writeVarInt(o, string(attribute.description()));
+                    writeVarInt(o, valueType(attribute.type()));
+                    o.writeBoolean(attribute.optional());
+                    o.writeBoolean(attribute.read());
+                    o.writeBoolean(attribute.write());
+                });
+            } else if (type instanceof ValueType.Union union) {
+                out.writeByte(TAG_UNION);
+                writeValueTypes(out, union.options());
+                out.writeBoolean(union.fullFormat());
+            } else if (type instanceof ValueType.Dictionary dictionary) {
+                out.writeByte(TAG_DICTIONARY);
+                writeVarInt(out, valueType(dictionary.key()));
+                writeVarInt(out, valueType(dictionary.value()));
+            } else if (type instanceof ValueType.LuaCustomTable luaCustomTable) {
+                out.writeByte(TAG_LUA_CUSTOM_TABLE);
+                writeVarInt(out, valueType(luaCustomTable.key()));
+                writeVarInt(out, valueType(luaCustomTable.value()));
+            } else if (type instanceof ValueType.Table table) {
+                out.writeByte(TAG_TABLE);
+                writeList(out, table.parameters(), this::writeParameter);
+                writeList(out, table.variantParameterGroups(), this::writeParameterGroup);
+                writeVarInt(out, string(table.variantParameterDescription()));
+            } else if (type instanceof ValueType.LuaLazyLoadedValue lazyLoadedValue) {
+                out.writeByte(TAG_LUA_LAZY_LOADED_VALUE);
+                writeVarInt(out, valueType(lazyLoadedValue.value()));
+            } else {
+                throw new IOException("Unexpected value type: " + type.getNativeName());
+            }
+
+            id = valueTypes.size();
+            valueTypes.put(type, id);
+            node.writeTo(valueTypeOut);
+
+            return id + 1;
+        }
+
+        private void writeValueTypes(DataOutputStream out, @Nullable List<ValueType> types) throws IOException {
+            writeList(out, types, (o, type) -> writeVarInt(o, valueType(type)));
+        }
+
+        private <T> void writeList(DataOutputStream out, @Nullable List<T> list, ElementWriter<T> elementWriter) throws IOException {
+            if (list == null) {
+                writeVarInt(out, 0);
+                return;
+            }
+
+            writeVarInt(out, list.size() + 1);
+            for (T element : list) {
+                elementWriter.write(out, element);
+            }
+        }
+
+        private void writeStrings(DataOutputStream out, @Nullable List<String> list) throws IOException {
+            writeList(out, list, (o, value) -> writeVarInt(o, string(value)));
+        }
+
+        private void writeRuntimeApi(RuntimeApi runtimeApi) throws IOException {
+            DataOutputStream out = bodyOut;
+            writeVarInt(out, string(runtimeApi.application));
+            writeVarInt(out, string(runtimeApi.stage));
+            writeList(out, runtimeApi.classes, this::writeClass);
+            writeList(out, runtimeApi.events, this::writeEvent);
+            writeList(out, runtimeApi.defines, this::writeDefine);
+            writeList(out, runtimeApi.builtinTypes, (o, builtinType) -> {
+                writeVarInt(o, string(builtinType.name));
+                writeOrder(o, builtinType.order);
+                writeVarInt(o, string(builtinType.description));
+            });
+            writeList(out, runtimeApi.concepts, this::writeConcept);
+            writeList(out, runtimeApi.globalObjects, (o, globalObject) -> {
+                writeVarInt(o, string(globalObject.name));
+                writeOrder(o, globalObject.order);
+                writeVarInt(o, string(globalObject.description));
+                writeVarInt(o, string(globalObject.type));
+            });
+        }
+
+        private void writeClass(DataOutputStream out, FactorioClass factorioClass) throws IOException {
+            writeVarInt(out, string(factorioClass.name));
+            writeOrder(out, factorioClass.order);
+            writeVarInt(out, string(factorioClass.description));
+            writeStrings(out, factorioClass.notes);
+            writeStrings(out, factorioClass.examples);
+            writeStrings(out, factorioClass.seeAlso);
+            writeList(out, factorioClass.methods, this::writeMethod);
+            writeList(out, factorioClass.attributes, this::writeAttribute);
+            writeList(out, factorioClass.operators, (o, operator) -> {
+                writeVarInt(o, string(operator.name));
+                o.writeBoolean(operator.method != null);
+                if (operator.method != null) {
+                    writeMethod(o, operator.method);
+                }
+                o.writeBoolean(operator.attribute != null);
+                if (operator.attribute != null) {
+                    writeAttribute(o, operator.attribute);
+                }
+            });
+            writeStrings(out, factorioClass.baseClasses);
+        }
+
+        private void writeMethod(DataOutputStream out, Method method) throws IOException {
+            writeVarInt(out, string(method.name));
+            writeOrder(out, method.order);
+            writeVarInt(out, string(method.description));
+            writeStrings(out, method.notes);
+            writeStrings(out, method.examples);
+            writeStrings(out, method.seeAlso);
+            writeStrings(out, method.subclasses);
+            writeList(out, method.parameters, this::writeParameter);
+            writeList(out, method.variantParameterGroups, this::writeParameterGroup);
+            writeVarInt(out, string(method.variantParameterDescription));
+            writeVarInt(out, valueType(method.variadicType));
+            writeVarInt(out, string(method.variadicDescription));
+            out.writeBoolean(method.takesTable);
+            out.writeBoolean(method.tableIsOptional);
+            writeVarInt(out, valueType(method.returnType));
+            writeVarInt(out, string(method.returnDescription));
+        }
+
+        private void writeAttribute(DataOutputStream out, Attribute attribute) throws IOException {
+            writeVarInt(out, string(attribute.name));
+            writeOrder(out, attribute.order);
+            writeVarInt(out, string(attribute.description));
+            writeStrings(out, attribute.notes);
+            writeStrings(out, attribute.examples);
+            writeStrings(out, attribute.seeAlso);
+            writeStrings(out, attribute.subclasses);
+            writeVarInt(out, valueType(attribute.type));
+            out.writeBoolean(attribute.read);
+            out.writeBoolean(attribute.write);
+        }
+
+        private void writeParameter(DataOutputStream out, Parameter parameter) throws IOException {
+            writeVarInt(out, string(parameter.name));
+            writeOrder(out, parameter.order);
+            writeVarInt(out, string(parameter.description));
+            writeVarInt(out, valueType(parameter.type));
+            out.writeBoolean(parameter.optional);
+        }
+
+        private void writeParameterGroup(DataOutputStream out, ParameterGroup parameterGroup) throws IOException {
+            writeVarInt(out, string(parameterGroup.name));
+            writeOrder(out, parameterGroup.order);
+            writeVarInt(out, string(parameterGroup.description));
+            writeList(out, parameterGroup.parameters, this::writeParameter);
+        }
+
+        private void writeEvent(DataOutputStream out, Event event) throws IOException {
+            writeVarInt(out, string(event.name));
+            writeOrder(out, event.order);
+            writeVarInt(out, string(event.description));
+            writeStrings(out, event.notes);
+            writeStrings(out, event.examples);
+            writeStrings(out, event.seeAlso);
+            writeList(out, event.data, this::writeParameter);
+        }
+
+        private void writeDefine(DataOutputStream out, Define define) throws IOException {
+            writeVarInt(out, string(define.name));
+            writeOrder(out, define.order);
+            writeVarInt(out, string(define.description));
+            writeList(out, define.values, (o, value) -> {
+                writeVarInt(o, string(value.name));
+                writeOrder(o, value.order);
+                writeVarInt(o, string(value.description));
+            });
+            writeList(out, define.subkeys, this::writeDefine);
+        }
+
+        private void writeConcept(DataOutputStream out, Concept concept) throws IOException {
+            writeVarInt(out, string(concept.name()));
+            writeOrder(out, concept.order());
+            writeVarInt(out, string(concept.description()));
+            writeStrings(out, concept.notes());
+            writeStrings(out, concept.examples());
+            writeStrings(out, concept.seeAlso());
+            writeVarInt(out, valueType(concept.type()));
+        }
+    }
+
+    private static final class SnapshotReader {
+        private final DataInputStream in;
+        private String[] strings;
+        private ValueType[] valueTypes;
+
+        private SnapshotReader(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Nullable
+        private String string() throws IOException {
+            int index = readVarInt(in);
+
+            return index == 0 ? null : strings[index - 1];
+        }
+
+        @Nullable
+        private ValueType valueType() throws IOException {
+            int index = readVarInt(in);
+
+            return index == 0 ? null : valueTypes[index - 1];
+        }
+
+        @Nullable
+        private <T> List<T> readList(ElementReader<T> elementReader) throws IOException {
+            int size = readVarInt(in);
+            if (size == 0) {
+                return null;
+            }
+
+            List<T> list = new ArrayList<>(size - 1);
+            for (int i = 1; i < size; i++) {
+                list.add(elementReader.read());
+            }
+
+            return list;
+        }
+
+        private List<String> readStrings() throws IOException {
+            return readList(this::string);
+        }
+
+        private ValueType readValueTypeNode() throws IOException {
+            int tag = in.readUnsignedByte();
+
+            return switch (tag) {
+                case TAG_SIMPLE -> new ValueType.Simple(string());
+                case TAG_ARRAY -> new ValueType.Array(valueType());
+                case TAG_LITERAL -> new ValueType.Literal(string(), string());
+                case TAG_TYPE -> new ValueType.Type(string(), string());
+                case TAG_FUNCTION -> new ValueType.Function(readList(this::valueType));
+                case TAG_TUPLE -> new ValueType.Tuple(readList(() -> new ValueType.Tuple.TypeTupleParameter(
+                        string(), readVarInt(in), string(), valueType(), in.readBoolean()
+                )));
+                case TAG_STRUCT -> new ValueType.Struct(readList(() -> new ValueType.Struct.StructAttribute(
+                        string(), readVarInt(in), string(), valueType(), in.readBoolean(), in.readBoolean(), in.readBoolean()
+                )));
+                case TAG_UNION -> new ValueType.Union(readList(this::valueType), in.readBoolean());
+                case TAG_DICTIONARY -> new ValueType.Dictionary(valueType(), valueType());
+                case TAG_LUA_CUSTOM_TABLE -> new ValueType.LuaCustomTable(valueType(), valueType());
+                case TAG_TABLE -> new ValueType.Table(readList(this::readParameter), readList(this::readParameterGroup), string());
+                case TAG_LUA_LAZY_LOADED_VALUE -> new ValueType.LuaLazyLoadedValue(valueType());
+                default -> throw new IOException("Unknown value type tag: " + tag);
+            };
+        }
+
+        private RuntimeApi readRuntimeApi() throws IOException {
+            RuntimeApi runtimeApi = new RuntimeApi();
+            runtimeApi.application = string();
+            runtimeApi.stage = string();
+            runtimeApi.classes = readList(this::readClass);
+            runtimeApi.events = readList(this::readEvent);
+            runtimeApi.defines = readList(this::readDefine);
+            runtimeApi.builtinTypes = readList(() -> {
+                BuiltinType builtinType = new BuiltinType();
+                builtinType.name = string();
+                builtinType.order = readOrder(in);
+                builtinType.description = string();
+                return builtinType;
+            });
+            runtimeApi.concepts = readList(() -> new Concept(
+                    string(), readOrder(in), string(), readStrings(), readStrings(), readStrings(), valueType()
+            ));
+            runtimeApi.globalObjects = readList(() -> {
+                GlobalObject globalObject = new GlobalObject();
+                globalObject.name = string();
+                globalObject.order = readOrder(in);
+                globalObject.description = string();
+                globalObject.type = string();
+                return globalObject;
+            });
+
+            return runtimeApi;
+        }
+
+        private FactorioClass readClass() throws IOException {
+            FactorioClass factorioClass = new FactorioClass();
+            factorioClass.name = string();
+            factorioClass.order = readOrder(in);
+            factorioClass.description = string();
+            factorioClass.notes = readStrings();
+            factorioClass.examples = readStrings();
+            factorioClass.seeAlso = readStrings();
+            factorioClass.methods = readList(this::readMethod);
+            factorioClass.attributes = readList(this::readAttribute);
+            factorioClass.operators = readList(() -> {
+                String name = string();
+                Method method = in.readBoolean() ? readMethod() : null;
+                Attribute attribute = in.readBoolean() ? readAttribute() : null;
+                return new Operator(name, method, attribute);
+            });
+            factorioClass.baseClasses = readStrings();
+
+            return factorioClass;
+        }
+
+        private Method readMethod() throws IOException {
+            Method method = new Method();
+            method.name = string();
+            method.order = readOrder(in);
+            method.description = string();
+            method.notes = readStrings();
+            method.examples = readStrings();
+            method.seeAlso = readStrings();
+            method.subclasses = readStrings();
+            method.parameters = readList(this::readParameter);
+            method.variantParameterGroups = readList(this::readParameterGroup);
+            method.variantParameterDescription = string();
+            method.variadicType = valueType();
+            method.variadicDescription = string();
+            method.takesTable = in.readBoolean();
+            method.tableIsOptional = in.readBoolean();
+            method.returnType = valueType();
+            method.returnDescription = string();
+
+            return method;
+        }
+
+        private Attribute readAttribute() throws IOException {
+            Attribute attribute = new Attribute();
+            attribute.name = string();
+            attribute.order = readOrder(in);
+            attribute.description = string();
+            attribute.notes = readStrings();
+            attribute.examples = readStrings();
+            attribute.seeAlso = readStrings();
+            attribute.subclasses = readStrings();
+            attribute.type = valueType();
+            attribute.read = in.readBoolean();
+            attribute.write = in.readBoolean();
+
+            return attribute;
+        }
+
+        private Parameter readParameter() throws IOException {
+            Parameter parameter = new Parameter();
+            parameter.name = string();
+            parameter.order = readOrder(in);
+            parameter.description = string();
+            parameter.type = valueType();
+            parameter.optional = in.readBoolean();
+
+            return parameter;
+        }
+
+        private ParameterGroup readParameterGroup() throws IOException {
+            ParameterGroup parameterGroup = new ParameterGroup();
+            parameterGroup.name = string();
+            parameterGroup.order = readOrder(in);
+            parameterGroup.description = string();
+            parameterGroup.parameters = readList(this::readParameter);
+
+            return parameterGroup;
+        }
+
+        private Event readEvent() throws IOException {
+            Event event = new Event();
+            event.name = string();
+            event.order = readOrder(in);
+            event.description = string();
+            event.notes = readStrings();
+            event.examples = readStrings();
+            event.seeAlso = readStrings();
+            event.data = readList(this::readParameter);
+
+            return event;
+        }
+
+        private Define readDefine() throws IOException {
+            Define define = new Define();
+            define.name = string();
+            define.order = readOrder(in);
+            define.description = string();
+            define.values = readList(() -> {
+                BasicMember value = new BasicMember();
+                value.name = string();
+                value.order = readOrder(in);
+                value.description = string();
+                return value;
+            });
+            define.subkeys = readList(this::readDefine);
+
+            return define;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ElementWriter<T> {
+        void write(DataOutputStream out, T element) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ElementReader<T> {
+        T read() throws IOException;
+    }
+}
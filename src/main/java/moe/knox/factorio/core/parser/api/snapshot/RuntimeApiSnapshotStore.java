@@ -0,0 +1,97 @@
+package moe.knox.factorio.core.parser.api.snapshot;
+
+import moe.knox.factorio.core.parser.api.data.RuntimeApi;
+import moe.knox.factorio.core.version.FactorioApiVersion;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Directory of {@link RuntimeApiSnapshot}s, one file per factorio version.
+ * The snapshots live beside the version directories, so clearing a version does not drop its parsed model.
+ * A snapshot is only used for the {@link RuntimeApiSnapshot.Key} it was written for, a snapshot of another
+ * api_version of the same factorio version is a miss and replaced with the next save.
+ */
+public final class RuntimeApiSnapshotStore {
+    private static final String FILE_EXTENSION = ".snapshot";
+
+    private final Path directory;
+
+    public RuntimeApiSnapshotStore(@NotNull Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param expected the application_version and api_version of the current runtime api
+     * @return the stored model or null, if there is no usable snapshot for this key
+     */
+    @Nullable
+    public RuntimeApi load(@NotNull RuntimeApiSnapshot.Key expected) {
+        Path snapshotFile = getSnapshotFile(expected.applicationVersion());
+        if (!Files.isRegularFile(snapshotFile)) {
+            return null;
+        }
+
+        try {
+            // the header is checked first, so an outdated snapshot is not decoded
+            try (InputStream inputStream = Files.newInputStream(snapshotFile)) {
+                if (!expected.equals(RuntimeApiSnapshot.readKey(inputStream))) {
+                    return null;
+                }
+            }
+
+            try (InputStream inputStream = Files.newInputStream(snapshotFile)) {
+                return RuntimeApiSnapshot.read(inputStream);
+            }
+        } catch (IOException e) {
+            // broken or outdated snapshot, it will be replaced with the next save
+            return null;
+        } catch (RuntimeException e) {
+            // a truncated or corrupt snapshot can fail inside the decoder, it is removed and the api downloaded again
+            e.printStackTrace();
+            try {
+                Files.deleteIfExists(snapshotFile);
+            } catch (IOException deleteException) {
+                deleteException.printStackTrace();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Save the model as snapshot of its key. The file is replaced atomically.
+     */
+    public void save(@NotNull RuntimeApi runtimeApi) throws IOException {
+        RuntimeApiSnapshot.Key key = RuntimeApiSnapshot.Key.of(runtimeApi);
+        if (key.applicationVersion() == null) {
+            throw new IOException("The runtime api has no application_version");
+        }
+
+        Files.createDirectories(directory);
+
+        Path snapshotFile = getSnapshotFile(key.applicationVersion());
+        Path tempFile = Files.createTempFile(directory, key.applicationVersion(), FILE_EXTENSION + ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+                RuntimeApiSnapshot.write(runtimeApi, outputStream);
+            }
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    public void remove(@NotNull FactorioApiVersion version) throws IOException {
+        Files.deleteIfExists(getSnapshotFile(version.version()));
+    }
+
+    private Path getSnapshotFile(String applicationVersion) {
+        return directory.resolve(applicationVersion + FILE_EXTENSION);
+    }
+}
@@ -4,13 +4,40 @@ import moe.knox.factorio.core.parser.api.data.Parameter;
 import moe.knox.factorio.core.parser.api.data.ValueType;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Renders {@link ValueType}s as EmmyLua annotation types.
+ * <p>
+ * Every rendered type is cached by its node. Parsed types are interned, so each distinct type is rendered only once
+ * per resolver, no matter how often it is referenced. The resolver is thread-safe, the writers of all files of an api
+ * share one. Two threads may render the same type at the same time, both get the same string.
+ */
 final class AnnotationTypeResolver
 {
+    private final ConcurrentMap<Node, String> cache = new ConcurrentHashMap<>();
+    private final Renderer renderer = new Renderer();
+
+    /**
+     * Key by identity, interned nodes are compared without walking their trees.
+     */
+    private record Node(ValueType type) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Node node && node.type == type;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(type);
+        }
+    }
+
     /**
      * @return String in format {@code "{["huhu"]:number, ["baum"]:string}"}
      */
-    static String presentTableParams(List<Parameter> parameters) {
+    String presentTableParams(List<Parameter> parameters) {
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append('{');
         boolean first = true;
@@ -29,56 +56,62 @@ final class AnnotationTypeResolver
         return stringBuilder.toString();
     }
 
-    static String getType(ValueType type) {
-        String result;
-        if (type instanceof ValueType.Simple simple) {
-            return simple.value();
-        } else if (type instanceof ValueType.Union union) {
-            result = presentUnion(union);
-        } else if (type instanceof ValueType.Array array) {
-            result = presentArray(array);
-        } else if (type instanceof ValueType.LuaCustomTable luaCustomTable) {
-            result = luaCustomTableType(luaCustomTable);
-        } else if (type instanceof ValueType.Dictionary dictionary) {
-            result = presentDictionary(dictionary);
-        } else if (type instanceof ValueType.Function function) {
-            result = presentFunction(function);
-        } else if (type instanceof ValueType.Table table) {
-            result = presentTable(table);
-        } else if (type instanceof ValueType.LuaLazyLoadedValue) {
-            // TODO override `LuaLazyLoadedValue` class with generic
-            result = type.getNativeName();
-        } else if (type instanceof ValueType.Tuple tuple) {
-            result = presentTuple(tuple);
-        } else if (type instanceof ValueType.Type type1) {
-            result = presentType(type1);
-        } else if (type instanceof ValueType.Literal literal) {
-            result = presentLiteral(literal);
-        } else {
-            throw new IllegalStateException("Unexpected value: " + type.getNativeName());
+    /**
+     * @return String in format {@code "param1:A,param2:B"}
+     */
+    String presentSignature(List<Parameter> parameters) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (Parameter parameter : parameters) {
+            appendSignatureParameter(stringBuilder, parameter.name, getType(parameter.type));
+        }
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Append a single parameter to a signature in format {@code "param1:A,param2:B"}
+     */
+    static void appendSignatureParameter(StringBuilder signature, String name, String type) {
+        if (!signature.isEmpty()) {
+            signature.append(',');
+        }
+        signature.append(name).append(':').append(type);
+    }
+
+    String getType(ValueType type) {
+        Node node = new Node(type);
+        String result = cache.get(node);
+        if (result == null) {
+            // not computeIfAbsent, the rendering of a type resolves its nested types through the cache
+            result = renderType(type);
+            cache.putIfAbsent(node, result);
         }
 
         return result;
     }
 
+    private String renderType(ValueType type) {
+        return type.accept(renderer);
+    }
+
     /**
      * @return String in format {@code "table<A, B>"}
      */
-    private static String luaCustomTableType(ValueType.LuaCustomTable type) {
+    private String luaCustomTableType(ValueType.LuaCustomTable type) {
         return "table<" + getType(type.key()) + ", " + getType(type.value()) + ">";
     }
 
     /**
      * @return String in format {@code "table<A, B>"}
      */
-    private static String presentDictionary(ValueType.Dictionary type) {
+    private String presentDictionary(ValueType.Dictionary type) {
         return "table<" + getType(type.key()) + ", " + getType(type.value()) + ">";
     }
 
     /**
      * @return String in format {@code "fun(param:A, param2:B):RETURN_TYPE"}
      */
-    private static String presentFunction(ValueType.Function type) {
+    private String presentFunction(ValueType.Function type) {
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append("fun(");
         int i = 0;
@@ -97,7 +130,7 @@ final class AnnotationTypeResolver
     /**
      * @return String in format {@code "TYPE1|TYPE2"}
      */
-    private static String presentUnion(ValueType.Union type) {
+    private String presentUnion(ValueType.Union type) {
         StringBuilder stringBuilder = new StringBuilder();
         boolean first = true;
         for (ValueType option : type.options()) {
@@ -114,7 +147,7 @@ final class AnnotationTypeResolver
     /**
      * @return String in format {@code "TYPE[]"}
      */
-    private static String presentArray(ValueType.Array type) {
+    private String presentArray(ValueType.Array type) {
         StringBuilder stringBuilder = new StringBuilder();
         // A[]
         try {
@@ -129,11 +162,33 @@ final class AnnotationTypeResolver
     /**
      * @return String in format {@code "{["huhu"]:number, ["baum"]:string}"}
      */
-    private static String presentTable(ValueType.Table type) {
+    private String presentTable(ValueType.Table type) {
         return presentTableParams(type.parameters());
     }
 
-    private static String presentTuple(ValueType.Tuple type) {
+    /**
+     * @return String in format {@code "{["huhu"]:number, ["baum"]:string}"}
+     */
+    private String presentStruct(ValueType.Struct type) {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append('{');
+        boolean first = true;
+        for (ValueType.Struct.StructAttribute attribute : type.attributes()) {
+            if (first) {
+                first = false;
+            } else {
+                stringBuilder.append(",");
+            }
+            stringBuilder.append("[\"").append(attribute.name()).append("\"]:").append(getType(attribute.type()));
+            if (attribute.optional()) {
+                stringBuilder.append("|nil");
+            }
+        }
+        stringBuilder.append('}');
+        return stringBuilder.toString();
+    }
+
+    private String presentTuple(ValueType.Tuple type) {
         // TODO how present tuple ??
         StringBuilder stringBuilder = new StringBuilder();
         boolean first = true;
@@ -152,13 +207,79 @@ final class AnnotationTypeResolver
         return stringBuilder.toString();
     }
 
-    private static String presentType(ValueType.Type typeWithDescription) {
+    private String presentType(ValueType.Type typeWithDescription) {
         // TODO how present type ??
         return typeWithDescription.value();
     }
 
-    private static String presentLiteral(ValueType.Literal type) {
+    private String presentLiteral(ValueType.Literal type) {
         // TODO how present literal ??
         return "\"" + type.value() + "\"";
     }
+
+    /**
+     * Renders a single node, nested types are resolved through the cache again.
+     */
+    private final class Renderer implements ValueType.Visitor<String, RuntimeException> {
+        @Override
+        public String visitSimple(ValueType.Simple type) {
+            return type.value();
+        }
+
+        @Override
+        public String visitArray(ValueType.Array type) {
+            return presentArray(type);
+        }
+
+        @Override
+        public String visitLiteral(ValueType.Literal type) {
+            return presentLiteral(type);
+        }
+
+        @Override
+        public String visitType(ValueType.Type type) {
+            return presentType(type);
+        }
+
+        @Override
+        public String visitFunction(ValueType.Function type) {
+            return presentFunction(type);
+        }
+
+        @Override
+        public String visitTuple(ValueType.Tuple type) {
+            return presentTuple(type);
+        }
+
+        @Override
+        public String visitStruct(ValueType.Struct type) {
+            return presentStruct(type);
+        }
+
+        @Override
+        public String visitUnion(ValueType.Union type) {
+            return presentUnion(type);
+        }
+
+        @Override
+        public String visitDictionary(ValueType.Dictionary type) {
+            return presentDictionary(type);
+        }
+
+        @Override
+        public String visitLuaCustomTable(ValueType.LuaCustomTable type) {
+            return luaCustomTableType(type);
+        }
+
+        @Override
+        public String visitTable(ValueType.Table type) {
+            return presentTable(type);
+        }
+
+        @Override
+        public String visitLuaLazyLoadedValue(ValueType.LuaLazyLoadedValue type) {
+            // TODO override `LuaLazyLoadedValue` class with generic
+            return type.getNativeName();
+        }
+    }
 }
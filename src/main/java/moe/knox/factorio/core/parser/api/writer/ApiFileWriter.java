@@ -4,7 +4,6 @@ import moe.knox.factorio.core.parser.api.data.*;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
@@ -12,11 +11,26 @@ import java.util.List;
 public final class ApiFileWriter
 {
     private final static String NEW_LINE = System.lineSeparator();
-    private final Writer output;
+    private final StubOutput output;
+    private final AnnotationTypeResolver typeResolver;
 
     public ApiFileWriter(Writer output)
+    {
+        this(new WriterStubOutput(output));
+    }
+
+    public ApiFileWriter(StubOutput output)
+    {
+        this(output, new AnnotationTypeResolver());
+    }
+
+    /**
+     * @param typeResolver shared with the writers of the other files of the same api
+     */
+    ApiFileWriter(StubOutput output, AnnotationTypeResolver typeResolver)
     {
         this.output = output;
+        this.typeResolver = typeResolver;
     }
 
     public static ApiFileWriter fromIoWriter(Writer outputStreamWriter) {
@@ -35,31 +49,15 @@ public final class ApiFileWriter
         writeConcepts(runtimeApi.concepts);
     }
 
-    private void writeConcepts(List<Concept> concepts) throws IOException {
+    void writeConcepts(List<Concept> concepts) throws IOException {
         writeHeaderBlock("Concepts");
 
         for (Concept concept : concepts) {
-            if (concept.type() instanceof ValueType.Table) {
-                writeConceptAsTable(concept);
-            } else if (concept.type() instanceof ValueType.Union) {
-                writeConceptAsUnion(concept);
-            } else if (concept.type() instanceof ValueType.Simple) {
-                writeConceptAsSimple(concept);
-            } else if (concept.type() instanceof ValueType.Dictionary) {
-                writeConceptAsDictionary(concept);
-            } else if (
-                concept.type() instanceof ValueType.Struct ||
-                concept.type() instanceof ValueType.Tuple ||
-                concept.type() instanceof ValueType.Array
-            ) {
-                // todo add realization
-            } else {
-                throw new IllegalArgumentException("Unknown concept type: " + concept.type().getNativeName());
-            }
+            concept.type().accept(new ConceptWriter(concept));
         }
     }
 
-    private void writeGlobalsObjects(List<GlobalObject> globalObjects) throws IOException {
+    void writeGlobalsObjects(List<GlobalObject> globalObjects) throws IOException {
         writeHeaderBlock("Global objects");
 
         // global objects
@@ -72,7 +70,7 @@ public final class ApiFileWriter
         output.append(NEW_LINE);
     }
 
-    private void writeDefines(List<Define> defines) throws IOException {
+    void writeDefines(List<Define> defines) throws IOException {
         writeHeaderBlock("Defines");
 
         output.append("---@class defines").append(NEW_LINE);
@@ -86,17 +84,16 @@ public final class ApiFileWriter
         for (Define define : defines) {
             writeDescLine(output, define.description);
 
-            StringWriter subDefine = new StringWriter();
-            subDefine.append(parents).append('.').append(define.name);
-            writeClass(output, subDefine.toString());
-            writeObjDef(output, subDefine.toString());
+            String subDefine = parents + '.' + define.name;
+            writeClass(output, subDefine);
+            writeObjDef(output, subDefine);
             output.append(NEW_LINE);
 
             if (define.subkeys != null && !define.subkeys.isEmpty()) {
-                writeDefines(define.subkeys, subDefine.toString());
+                writeDefines(define.subkeys, subDefine);
             }
             if (define.values != null && !define.values.isEmpty()) {
-                writeDefineValues(output, define.values, subDefine.toString());
+                writeDefineValues(output, define.values, subDefine);
             }
         }
         output.append(NEW_LINE);
@@ -106,29 +103,33 @@ public final class ApiFileWriter
         writeHeaderBlock("Classes");
 
         for (FactorioClass factorioClass : classes) {
-            writeDescLine(output, factorioClass.description);
-            writeDescLine(output, factorioClass.notes);
-            writeDescLine(output, factorioClass.examples);
-            writeSee(output, factorioClass.seeAlso);
+            writeFactorioClass(factorioClass);
+        }
+    }
 
-            writeOperators(factorioClass);
+    void writeFactorioClass(FactorioClass factorioClass) throws IOException {
+        writeDescLine(output, factorioClass.description);
+        writeDescLine(output, factorioClass.notes);
+        writeDescLine(output, factorioClass.examples);
+        writeSee(output, factorioClass.seeAlso);
 
-            writeClass(output, factorioClass.name, factorioClass.baseClasses);
-            writeObjDef(output, factorioClass.name, true);
-            output.append(NEW_LINE);
+        writeOperators(factorioClass);
 
-            writeAttributes(factorioClass.attributes, factorioClass.name);
-            writeMethods(output, factorioClass.methods, factorioClass.name);
+        writeClass(output, factorioClass.name, factorioClass.baseClasses);
+        writeObjDef(output, factorioClass.name, true);
+        output.append(NEW_LINE);
 
-            output.append(NEW_LINE);
-        }
+        writeAttributes(factorioClass.attributes, factorioClass.name);
+        writeMethods(output, factorioClass.methods, factorioClass.name);
+
+        output.append(NEW_LINE);
     }
 
-    private void writeObjDef(Writer output, String className) throws IOException {
+    private void writeObjDef(StubOutput output, String className) throws IOException {
         writeObjDef(output, className, false);
     }
 
-    private void writeObjDef(Writer output, String className, boolean local) throws IOException {
+    private void writeObjDef(StubOutput output, String className, boolean local) throws IOException {
         if (local) {
             output.append("local ");
         }
@@ -136,11 +137,11 @@ public final class ApiFileWriter
         output.append(className).append(" = {}").append(NEW_LINE);
     }
 
-    private void writeValDef(Writer output, String name, String parent) throws IOException {
+    private void writeValDef(StubOutput output, String name, String parent) throws IOException {
         writeValDef(output, name, parent, false);
     }
 
-    private void writeValDef(Writer output, String name, String parent, boolean local) throws IOException {
+    private void writeValDef(StubOutput output, String name, String parent, boolean local) throws IOException {
         if (local) {
             output.append("local ");
         }
@@ -158,7 +159,7 @@ public final class ApiFileWriter
         output.append(" = nil").append(NEW_LINE);
     }
 
-    private void writeFunctionDef(Writer output, String className, String functionName, String... params) throws IOException {
+    private void writeFunctionDef(StubOutput output, String className, String functionName, String... params) throws IOException {
         output.append("function ").append(className).append('.').append(functionName).append('(');
         boolean first = true;
         for (String param : params) {
@@ -172,7 +173,7 @@ public final class ApiFileWriter
         output.append(") end").append(NEW_LINE);
     }
 
-    private void writeDefineValues(Writer output, List<BasicMember> defines, String parents) throws IOException {
+    private void writeDefineValues(StubOutput output, List<BasicMember> defines, String parents) throws IOException {
         for (BasicMember define : defines) {
             writeDescLine(output, define.description);
             writeType(output, "nil");
@@ -198,7 +199,7 @@ public final class ApiFileWriter
         output.append(NEW_LINE);
     }
 
-    private void writeMethods(Writer output, List<Method> methods, String className) throws IOException {
+    private void writeMethods(StubOutput output, List<Method> methods, String className) throws IOException {
         for (Method method : methods) {
             writeDescLine(output, method.description);
             writeDescLine(output, method.notes);
@@ -207,7 +208,7 @@ public final class ApiFileWriter
 
             if (method.takesTable) {
                 // This is a table function (use anonymous function as only param)
-                String paramType = AnnotationTypeResolver.presentTableParams(method.parameters);
+                String paramType = typeResolver.presentTableParams(method.parameters);
 
                 writeParam(output, "param", paramType);
 
@@ -218,19 +219,24 @@ public final class ApiFileWriter
                 writeFunctionDef(output, className, method.name, "param");
             } else {
                 List<String> strList = new ArrayList<>();
+                String returnType = method.returnType != null ? getType(method.returnType) : null;
 
+                // every parameter type is rendered once, the overloads reuse the growing signature
+                StringBuilder signature = new StringBuilder();
                 for (Parameter parameter : method.parameters) {
-                    writeParam(output, parameter.name, parameter.type, parameter.description);
+                    String parameterType = getType(parameter.type);
+                    writeParam(output, parameter.name, parameterType, parameter.description);
 
                     if (parameter.optional) {
-                        writeOverload(output, method.parameters, method.returnType, parameter.name);
+                        writeOverload(output, signature, returnType);
                     }
 
+                    AnnotationTypeResolver.appendSignatureParameter(signature, parameter.name, parameterType);
                     strList.add(parameter.name);
                 }
 
                 if (method.returnType != null) {
-                    writeReturn(output, method.returnType, method.returnDescription);
+                    writeReturn(output, returnType, method.returnDescription);
                 }
 
                 writeFunctionDef(output, className, method.name, strList.toArray(new String[0]));
@@ -239,7 +245,7 @@ public final class ApiFileWriter
         }
     }
 
-    private void writeDescLine(Writer output, List<String> lines) throws IOException {
+    private void writeDescLine(StubOutput output, List<String> lines) throws IOException {
         if (lines != null && !lines.isEmpty()) {
             for (String line : lines) {
                 writeEmptyLine(output);
@@ -248,18 +254,17 @@ public final class ApiFileWriter
         }
     }
 
-    private void writeEmptyLine(Writer output) throws IOException {
+    private void writeEmptyLine(StubOutput output) throws IOException {
         output.append("---").append(NEW_LINE);
     }
 
-    private void writeDescLine(Writer output, String line) throws IOException {
+    private void writeDescLine(StubOutput output, String line) throws IOException {
         if (!line.isEmpty()) {
-            line = line.replace('\n', ' ');
-            output.append("--- ").append(line).append(NEW_LINE);
+            output.append("--- ").appendSingleLine(line).append(NEW_LINE);
         }
     }
 
-    private void writeReadWrite(Writer output, boolean read, boolean write) throws IOException {
+    private void writeReadWrite(StubOutput output, boolean read, boolean write) throws IOException {
         if (read && write) {
             output.append("--- ").append("Read-Write").append(NEW_LINE);
         } else if (read) {
@@ -269,7 +274,7 @@ public final class ApiFileWriter
         }
     }
 
-    private void writeSee(Writer output, List<String> seeAlso) throws IOException {
+    private void writeSee(StubOutput output, List<String> seeAlso) throws IOException {
         if (seeAlso != null && !seeAlso.isEmpty()) {
             for (String see : seeAlso) {
                 see = see.replace("::", "#");
@@ -278,11 +283,11 @@ public final class ApiFileWriter
         }
     }
 
-    private void writeClass(Writer output, String className) throws IOException {
+    private void writeClass(StubOutput output, String className) throws IOException {
         writeClass(output, className, "");
     }
 
-    private void writeClass(Writer output, String className, String parentClass) throws IOException {
+    private void writeClass(StubOutput output, String className, String parentClass) throws IOException {
         output.append("---@class ").append(className);
         if (!parentClass.isEmpty()) {
             output.append(" : ").append(parentClass);
@@ -290,7 +295,7 @@ public final class ApiFileWriter
         output.append(NEW_LINE);
     }
 
-    private void writeClass(Writer output, String className, List<String> parentClasses) throws IOException {
+    private void writeClass(StubOutput output, String className, List<String> parentClasses) throws IOException {
         if (parentClasses != null && !parentClasses.isEmpty()) {
             writeClass(output, className, parentClasses.get(0));
         } else {
@@ -298,19 +303,19 @@ public final class ApiFileWriter
         }
     }
 
-    private void writeType(Writer output, String type) throws IOException {
+    private void writeType(StubOutput output, String type) throws IOException {
         writeType(output, type, false);
     }
 
-    private void writeType(Writer output, ValueType type) throws IOException {
+    private void writeType(StubOutput output, ValueType type) throws IOException {
         writeType(output, getType(type), false);
     }
 
-    private void writeType(Writer output, ValueType type, boolean optional) throws IOException {
+    private void writeType(StubOutput output, ValueType type, boolean optional) throws IOException {
         writeType(output, getType(type), optional);
     }
 
-    private void writeType(Writer output, String type, boolean optional) throws IOException {
+    private void writeType(StubOutput output, String type, boolean optional) throws IOException {
         output.append("---@type ").append(type);
         if (optional) {
             output.append("|nil");
@@ -318,62 +323,47 @@ public final class ApiFileWriter
         output.append(NEW_LINE);
     }
 
-    private void writeParam(Writer output, String name, ValueType type, String description) throws IOException {
+    private void writeParam(StubOutput output, String name, ValueType type, String description) throws IOException {
         writeParam(output, name, getType(type), description);
     }
 
-    private void writeParam(Writer output, String name, String type) throws IOException {
+    private void writeParam(StubOutput output, String name, String type) throws IOException {
         writeParam(output, name, type, "");
     }
 
-    private void writeParam(Writer output, String name, String type, String description) throws IOException {
-        description = description.replace('\n', ' ');
-        output.append("---@param ").append(name).append(' ').append(type).append(' ').append(description).append(NEW_LINE);
+    private void writeParam(StubOutput output, String name, String type, String description) throws IOException {
+        output.append("---@param ").append(name).append(' ').append(type).append(' ').appendSingleLine(description).append(NEW_LINE);
+    }
+
+    private void writeReturn(StubOutput output, ValueType type, String desc) throws IOException {
+        writeReturn(output, getType(type), desc);
     }
 
-    private void writeReturn(Writer output, ValueType type, String desc) throws IOException {
-        output.append("---@return ").append(getType(type)).append(' ');
+    private void writeReturn(StubOutput output, String type, String desc) throws IOException {
+        output.append("---@return ").append(type).append(' ');
         if (!desc.isEmpty()) {
-            desc = desc.replace('\n', ' ');
-            output.append(desc);
+            output.appendSingleLine(desc);
         }
         output.append(NEW_LINE);
     }
 
-    private void writeOverload(Writer output, List<Parameter> parameters, ValueType returnType) throws IOException {
-        writeOverload(output, parameters, returnType, null);
+    private void writeOverload(StubOutput output, List<Parameter> parameters, ValueType returnType) throws IOException {
+        writeOverload(output, typeResolver.presentSignature(parameters), returnType != null ? getType(returnType) : null);
     }
 
-    private void writeOverload(Writer output, List<Parameter> parameters, ValueType returnType, String stopAt) throws IOException {
+    private void writeOverload(StubOutput output, CharSequence signature, String returnType) throws IOException {
         // ---@overload fun(param1:A,param2:B):R
 
-        output.append("---@overload fun(");
-
-        boolean first = true;
-        for (Parameter parameter : parameters) {
-            if (stopAt != null && stopAt.equals(parameter.name)) {
-                break;
-            }
-
-            if (first) {
-                first = false;
-            } else {
-                output.append(',');
-            }
-
-            output.append(parameter.name).append(':').append(getType(parameter.type));
-        }
-
-        output.append(')');
+        output.append("---@overload fun(").append(signature).append(')');
 
         if (returnType != null) {
-            output.append(':').append(getType(returnType));
+            output.append(':').append(returnType);
         }
 
         output.append(NEW_LINE);
     }
 
-    private void writeAlias(Writer output, String name, List<ValueType> types) throws IOException {
+    private void writeAlias(StubOutput output, String name, List<ValueType> types) throws IOException {
         StringBuilder stringBuilder = new StringBuilder();
         boolean first = true;
         for (ValueType type : types) {
@@ -387,22 +377,24 @@ public final class ApiFileWriter
         writeAlias(output, name, stringBuilder.toString());
     }
 
-    private void writeAlias(Writer output, String name, String type) throws IOException {
+    private void writeAlias(StubOutput output, String name, String type) throws IOException {
         output.append("---@alias ").append(name).append(' ').append(type).append(NEW_LINE);
     }
 
     private String getType(ValueType type)
     {
-        return AnnotationTypeResolver.getType(type);
+        return typeResolver.getType(type);
     }
 
-    private void writeConceptAsTable(Concept concept) throws IOException {
-        var conceptType = (ValueType.Table) concept.type();
-
+    private void writeConceptHeader(Concept concept) throws IOException {
         writeDescLine(output, concept.description());
         writeDescLine(output, concept.notes());
         writeDescLine(output, concept.examples());
         writeSee(output, concept.seeAlso());
+    }
+
+    private void writeConceptAsTable(Concept concept, ValueType.Table conceptType) throws IOException {
+        writeConceptHeader(concept);
         writeClass(output, concept.name());
         writeObjDef(output, concept.name(), true);
         output.append(NEW_LINE);
@@ -417,44 +409,58 @@ public final class ApiFileWriter
         output.append(NEW_LINE);
     }
 
-    private void writeConceptAsUnion(Concept concept) throws IOException {
-        var conceptType = (ValueType.Union) concept.type();
-
-        writeDescLine(output, concept.description());
-        writeDescLine(output, concept.notes());
-        writeDescLine(output, concept.examples());
-        writeSee(output, concept.seeAlso());
+    private void writeConceptAsStruct(Concept concept, ValueType.Struct conceptType) throws IOException {
+        writeConceptHeader(concept);
+        writeClass(output, concept.name());
+        writeObjDef(output, concept.name(), true);
+        output.append(NEW_LINE);
 
-        var types = new ArrayList<ValueType>();
-        for (ValueType optionType : conceptType.options()) {
-            types.add(optionType);
-            writeDescLine(output, getType(optionType) + ": " + optionType.getDescription());
+        for (ValueType.Struct.StructAttribute attribute : conceptType.attributes()) {
+            writeDescLine(output, attribute.description());
+            writeReadWrite(output, attribute.read(), attribute.write());
+            writeType(output, attribute.type(), attribute.optional());
+            writeValDef(output, attribute.name(), concept.name());
+            output.append(NEW_LINE);
         }
-        writeAlias(output, concept.name(), types);
 
         output.append(NEW_LINE);
     }
 
-    private void writeConceptAsSimple(Concept concept) throws IOException {
-        var conceptType = (ValueType.Simple) concept.type();
+    private void writeConceptAsTuple(Concept concept, ValueType.Tuple conceptType) throws IOException {
+        writeConceptHeader(concept);
+        writeClass(output, concept.name());
+        writeObjDef(output, concept.name(), true);
+        output.append(NEW_LINE);
 
-        writeDescLine(output, concept.description());
-        writeDescLine(output, concept.notes());
-        writeDescLine(output, concept.examples());
-        writeSee(output, concept.seeAlso());
-        writeAlias(output, concept.name(), conceptType.value());
+        for (ValueType.Tuple.TypeTupleParameter parameter : conceptType.parameters()) {
+            writeDescLine(output, parameter.description());
+            writeType(output, parameter.type(), parameter.optional());
+            writeValDef(output, parameter.name(), concept.name());
+            output.append(NEW_LINE);
+        }
 
         output.append(NEW_LINE);
     }
 
-    private void writeConceptAsDictionary(Concept concept) throws IOException {
-        var conceptType = (ValueType.Dictionary) concept.type();
+    private void writeConceptAsUnion(Concept concept, ValueType.Union conceptType) throws IOException {
+        writeConceptHeader(concept);
 
-        writeDescLine(output, concept.description());
-        writeDescLine(output, concept.notes());
-        writeDescLine(output, concept.examples());
-        writeSee(output, concept.seeAlso());
-        writeAlias(output, concept.name(), getType(conceptType));
+        var types = new ArrayList<ValueType>();
+        for (ValueType optionType : conceptType.options()) {
+            types.add(optionType);
+            writeDescLine(output, getType(optionType) + ": " + optionType.getDescription());
+        }
+        writeAlias(output, concept.name(), types);
+
+        output.append(NEW_LINE);
+    }
+
+    /**
+     * Every other type is written as alias of its annotation type
+     */
+    private void writeConceptAsAlias(Concept concept) throws IOException {
+        writeConceptHeader(concept);
+        writeAlias(output, concept.name(), getType(concept.type()));
 
         output.append(NEW_LINE);
     }
@@ -462,7 +468,7 @@ public final class ApiFileWriter
     private void writeHeaderBlock(@NotNull String blockName) throws IOException {
         output.append(NEW_LINE)
                 .append("----------------------------------------------").append(NEW_LINE)
-                .append("-".repeat(10)).append(" ").append(blockName).append(NEW_LINE)
+                .appendRepeated('-', 10).append(" ").append(blockName).append(NEW_LINE)
                 .append("----------------------------------------------").append(NEW_LINE)
                 .append(NEW_LINE).append(NEW_LINE).append(NEW_LINE)
         ;
@@ -476,4 +482,87 @@ public final class ApiFileWriter
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes a single concept depending on its type
+     */
+    private final class ConceptWriter implements ValueType.Visitor<Void, IOException> {
+        private final Concept concept;
+
+        private ConceptWriter(Concept concept) {
+            this.concept = concept;
+        }
+
+        @Override
+        public Void visitSimple(ValueType.Simple type) throws IOException {
+            writeConceptAsAlias(concept);
+            return null;
+        }
+
+        @Override
+        public Void visitArray(ValueType.Array type) throws IOException {
+            writeConceptAsAlias(concept);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteral(ValueType.Literal type) throws IOException {
+            writeConceptAsAlias(concept);
+            return null;
+        }
+
+        @Override
+        public Void visitType(ValueType.Type type) throws IOException {
+            writeConceptAsAlias(concept);
+            return null;
+        }
+
+        @Override
+        public Void visitFunction(ValueType.Function type) throws IOException {
+            writeConceptAsAlias(concept);
+            return null;
+        }
+
+        @Override
+        public Void visitTuple(ValueType.Tuple type) throws IOException {
+            writeConceptAsTuple(concept, type);
+            return null;
+        }
+
+        @Override
+        public Void visitStruct(ValueType.Struct type) throws IOException {
+            writeConceptAsStruct(concept, type);
+            return null;
+        }
+
+        @Override
+        public Void visitUnion(ValueType.Union type) throws IOException {
+            writeConceptAsUnion(concept, type);
+            return null;
+        }
+
+        @Override
+        public Void visitDictionary(ValueType.Dictionary type) throws IOException {
+            writeConceptAsAlias(concept);
+            return null;
+        }
+
+        @Override
+        public Void visitLuaCustomTable(ValueType.LuaCustomTable type) throws IOException {
+            writeConceptAsAlias(concept);
+            return null;
+        }
+
+        @Override
+        public Void visitTable(ValueType.Table type) throws IOException {
+            writeConceptAsTable(concept, type);
+            return null;
+        }
+
+        @Override
+        public Void visitLuaLazyLoadedValue(ValueType.LuaLazyLoadedValue type) throws IOException {
+            writeConceptAsAlias(concept);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package moe.knox.factorio.core.parser.api.writer;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import moe.knox.factorio.core.CoreException;
+import moe.knox.factorio.core.parser.GeneratedFiles;
+import moe.knox.factorio.core.parser.api.data.FactorioClass;
+import moe.knox.factorio.core.parser.api.data.RuntimeApi;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Writes the runtime api as many small files instead of one big `factorio.lua`.
+ * Every class gets its own file, the concepts are split into groups.
+ * The files are rendered in parallel, each into its own buffer, and listed with their hashes in a manifest.
+ * With a {@link Session} the sections of the api are written while the next ones are parsed.
+ * Files whose content did not change are not written again, so the IDE does not need to index them again.
+ */
+public final class ShardedApiFileWriter
+{
+    public final static String MANIFEST_FILE_NAME = "manifest.json";
+    final static int CONCEPTS_PER_FILE = 64;
+    /**
+     * the single file of the api, before it was split, directories without a manifest may still have it
+     */
+    final static String LEGACY_FILE_NAME = "factorio.lua";
+    private final static int BUFFER_SIZE = 16 * 1024;
+    private final static List<RuntimeApi.Section> manifestOrder = List.of(
+            RuntimeApi.Section.GLOBAL_OBJECTS, RuntimeApi.Section.DEFINES, RuntimeApi.Section.CLASSES, RuntimeApi.Section.CONCEPTS
+    );
+
+    private final Path outputDir;
+    private final int parallelism;
+
+    public ShardedApiFileWriter(@NotNull Path outputDir)
+    {
+        this(outputDir, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ShardedApiFileWriter(@NotNull Path outputDir, int parallelism)
+    {
+        this.outputDir = outputDir;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Write all changed files of the api, remove the files of the previous run, that are not part of the api anymore,
+     * and update the manifest.
+     */
+    public Result writeRuntimeApi(RuntimeApi runtimeApi) throws IOException {
+        try (Session session = begin()) {
+            for (RuntimeApi.Section section : manifestOrder) {
+                session.submit(section, runtimeApi);
+            }
+            return session.finish(runtimeApi);
+        }
+    }
+
+    /**
+     * Start writing an api section by section, so the sections can be written while the others are still parsed.
+     */
+    public Session begin() throws IOException {
+        Files.createDirectories(outputDir);
+
+        return new Session(readManifestFileNames());
+    }
+
+    /**
+     * Writing of a single api. Every submitted section is rendered and written in the background.
+     */
+    public final class Session implements AutoCloseable {
+        private final List<String> previousFileNames;
+        private final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        private final Map<RuntimeApi.Section, List<ForkJoinTask<WrittenShard>>> tasks = new EnumMap<>(RuntimeApi.Section.class);
+        // every distinct type is rendered once for all files, not once per file
+        private final AnnotationTypeResolver typeResolver = new AnnotationTypeResolver();
+
+        private Session(List<String> previousFileNames) {
+            this.previousFileNames = previousFileNames;
+        }
+
+        /**
+         * Start writing the files of the section, sections without files are ignored.
+         * The elements of the section must not be changed afterwards.
+         */
+        public void submit(RuntimeApi.Section section, RuntimeApi runtimeApi) {
+            List<ForkJoinTask<WrittenShard>> sectionTasks = new ArrayList<>();
+            for (Shard shard : createShards(section, runtimeApi)) {
+                sectionTasks.add(pool.submit(() -> writeShard(shard, typeResolver)));
+            }
+            tasks.put(section, sectionTasks);
+        }
+
+        /**
+         * Wait for all submitted sections, remove the files of the previous run, that are not part of the api
+         * anymore, and update the manifest.
+         */
+        public Result finish(RuntimeApi runtimeApi) throws IOException {
+            List<WrittenShard> writtenShards = new ArrayList<>();
+            try {
+                // the manifest has the same order, no matter in which order the sections were written
+                for (RuntimeApi.Section section : manifestOrder) {
+                    for (ForkJoinTask<WrittenShard> task : tasks.getOrDefault(section, List.of())) {
+                        writtenShards.add(task.get());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Writing of the api files was interrupted");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException ioException) {
+                    throw ioException;
+                }
+                throw new CoreException("Writing of the api files failed", e.getCause());
+            }
+
+            List<String> fileNames = new ArrayList<>(writtenShards.size());
+            List<String> changedFileNames = new ArrayList<>();
+            for (WrittenShard writtenShard : writtenShards) {
+                fileNames.add(writtenShard.fileName());
+                if (writtenShard.changed()) {
+                    changedFileNames.add(writtenShard.fileName());
+                }
+            }
+
+            for (String previousFileName : previousFileNames) {
+                if (!fileNames.contains(previousFileName) && Files.deleteIfExists(outputDir.resolve(previousFileName))) {
+                    changedFileNames.add(previousFileName);
+                }
+            }
+
+            writeManifest(runtimeApi, writtenShards);
+
+            return new Result(fileNames, changedFileNames);
+        }
+
+        @Override
+        public void close() {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<Shard> createShards(RuntimeApi.Section section, RuntimeApi runtimeApi) {
+        List<Shard> shards = new ArrayList<>();
+
+        switch (section) {
+            case GLOBAL_OBJECTS -> shards.add(new Shard("global_objects.lua", writer -> writer.writeGlobalsObjects(runtimeApi.globalObjects)));
+            case DEFINES -> shards.add(new Shard("defines.lua", writer -> writer.writeDefines(runtimeApi.defines)));
+            case CLASSES -> {
+                for (FactorioClass factorioClass : runtimeApi.classes) {
+                    shards.add(new Shard("class_" + factorioClass.name + ".lua", writer -> writer.writeFactorioClass(factorioClass)));
+                }
+            }
+            case CONCEPTS -> {
+                for (int from = 0, group = 0; from < runtimeApi.concepts.size(); from += CONCEPTS_PER_FILE, group++) {
+                    var concepts = runtimeApi.concepts.subList(from, Math.min(from + CONCEPTS_PER_FILE, runtimeApi.concepts.size()));
+                    shards.add(new Shard("concepts_" + group + ".lua", writer -> writer.writeConcepts(concepts)));
+                }
+            }
+            default -> {
+                // events and builtin types have no stubs
+            }
+        }
+
+        return shards;
+    }
+
+    private WrittenShard writeShard(Shard shard, AnnotationTypeResolver typeResolver) throws IOException {
+        // every shard has its own writer and buffer, only the type cache is shared between the threads
+        var content = new ByteArrayOutputStream();
+        try (var output = new Utf8ChannelStubOutput(Channels.newChannel(content), BUFFER_SIZE)) {
+            shard.content().write(new ApiFileWriter(output, typeResolver));
+        }
+
+        byte[] bytes = content.toByteArray();
+        String hash = GeneratedFiles.hash(bytes);
+        boolean changed = GeneratedFiles.writeIfChanged(outputDir.resolve(shard.fileName()), bytes, hash);
+
+        return new WrittenShard(shard.fileName(), hash, changed);
+    }
+
+    private void writeManifest(RuntimeApi runtimeApi, List<WrittenShard> writtenShards) throws IOException {
+        var manifest = new StringWriter();
+        try (JsonWriter jsonWriter = new JsonWriter(manifest)) {
+            jsonWriter.setIndent("  ");
+            jsonWriter.beginObject();
+            jsonWriter.name("application_version").value(runtimeApi.application_version);
+            jsonWriter.name("api_version").value(runtimeApi.api_version);
+            jsonWriter.name("files").beginArray();
+            for (WrittenShard writtenShard : writtenShards) {
+                jsonWriter.beginObject();
+                jsonWriter.name("name").value(writtenShard.fileName());
+                jsonWriter.name("sha256").value(writtenShard.hash());
+                jsonWriter.endObject();
+            }
+            jsonWriter.endArray();
+            jsonWriter.endObject();
+        }
+
+        GeneratedFiles.writeIfChanged(outputDir.resolve(MANIFEST_FILE_NAME), manifest.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the files of the previous run, the single file of the old layout if there is no readable manifest
+     */
+    private List<String> readManifestFileNames() {
+        Path manifestFile = outputDir.resolve(MANIFEST_FILE_NAME);
+        if (!Files.isRegularFile(manifestFile)) {
+            return List.of(LEGACY_FILE_NAME);
+        }
+
+        List<String> fileNames = new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+            for (JsonElement file : JsonParser.parseReader(reader).getAsJsonObject().getAsJsonArray("files")) {
+                fileNames.add(file.getAsJsonObject().get("name").getAsString());
+            }
+        } catch (IOException | RuntimeException e) {
+            // without a manifest, the other old files are only overwritten and not removed
+            return List.of(LEGACY_FILE_NAME);
+        }
+
+        return fileNames;
+    }
+
+    /**
+     * @param files        the names of all files of the api, relative to the output directory
+     * @param changedFiles the files, which were written or removed
+     */
+    public record Result(List<String> files, List<String> changedFiles) {
+        public boolean hasChanges() {
+            return !changedFiles.isEmpty();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ShardContent {
+        void write(ApiFileWriter writer) throws IOException;
+    }
+
+    private record Shard(String fileName, ShardContent content) {
+    }
+
+    private record WrittenShard(String fileName, String hash, boolean changed) {
+    }
+}
@@ -0,0 +1,22 @@
+package moe.knox.factorio.core.parser.api.writer;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Target of the {@link ApiFileWriter}. The generated stubs only consist of appended text,
+ * so a backend can encode the text directly without building strings first.
+ */
+public interface StubOutput extends Flushable, Closeable {
+    StubOutput append(CharSequence text) throws IOException;
+
+    StubOutput append(char c) throws IOException;
+
+    /**
+     * Append the text with every line feed replaced by a space, so it stays in a single comment line
+     */
+    StubOutput appendSingleLine(CharSequence text) throws IOException;
+
+    StubOutput appendRepeated(char c, int count) throws IOException;
+}
@@ -0,0 +1,158 @@
+package moe.knox.factorio.core.parser.api.writer;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link StubOutput} that encodes the text as UTF-8 straight into one reused buffer,
+ * which is written to the channel whenever it is full.
+ * Unpaired surrogates are replaced by '?', like the JDK encoder does.
+ */
+public final class Utf8ChannelStubOutput implements StubOutput {
+    public final static int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+    private int position = 0;
+    private char pendingHighSurrogate = 0;
+
+    public Utf8ChannelStubOutput(@NotNull WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.bytes = new byte[bufferSize];
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Create or truncate the file and write into it
+     */
+    public static Utf8ChannelStubOutput open(@NotNull Path file) throws IOException {
+        var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new Utf8ChannelStubOutput(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public StubOutput append(CharSequence text) throws IOException {
+        encode(text, false);
+        return this;
+    }
+
+    @Override
+    public StubOutput append(char c) throws IOException {
+        encode(c);
+        return this;
+    }
+
+    @Override
+    public StubOutput appendSingleLine(CharSequence text) throws IOException {
+        encode(text, true);
+        return this;
+    }
+
+    @Override
+    public StubOutput appendRepeated(char c, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            encode(c);
+        }
+        return this;
+    }
+
+    private void encode(CharSequence text, boolean singleLine) throws IOException {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            if (pendingHighSurrogate == 0) {
+                // nearly all generated text is ascii, it is copied without further checks as long as it fits
+                int limit = Math.min(length, i + bytes.length - position);
+                while (i < limit) {
+                    char c = text.charAt(i);
+                    if (c >= 0x80) {
+                        break;
+                    }
+                    bytes[position++] = (byte) (singleLine && c == '\n' ? ' ' : c);
+                    i++;
+                }
+                if (i == length) {
+                    break;
+                }
+            }
+
+            char c = text.charAt(i++);
+            encode(singleLine && c == '\n' ? ' ' : c);
+        }
+    }
+
+    private void encode(char c) throws IOException {
+        // a code point has at most 4 bytes
+        if (bytes.length - position < 4) {
+            drain();
+        }
+
+        if (pendingHighSurrogate != 0) {
+            char highSurrogate = pendingHighSurrogate;
+            pendingHighSurrogate = 0;
+
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(highSurrogate, c);
+                bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                return;
+            }
+
+            bytes[position++] = '?';
+            if (bytes.length - position < 3) {
+                drain();
+            }
+        }
+
+        if (c < 0x80) {
+            bytes[position++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[position++] = (byte) (0xC0 | (c >> 6));
+            bytes[position++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            pendingHighSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            bytes[position++] = '?';
+        } else {
+            bytes[position++] = (byte) (0xE0 | (c >> 12));
+            bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            bytes[position++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.limit(position).position(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        position = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (pendingHighSurrogate != 0) {
+                pendingHighSurrogate = 0;
+                encode('?');
+            }
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package moe.knox.factorio.core.parser.api.writer;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * {@link StubOutput} on top of a {@link Writer}, the charset is handled by the writer.
+ */
+public final class WriterStubOutput implements StubOutput {
+    private final Writer writer;
+
+    public WriterStubOutput(@NotNull Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public StubOutput append(CharSequence text) throws IOException {
+        writer.append(text);
+        return this;
+    }
+
+    @Override
+    public StubOutput append(char c) throws IOException {
+        writer.append(c);
+        return this;
+    }
+
+    @Override
+    public StubOutput appendSingleLine(CharSequence text) throws IOException {
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                writer.append(text, start, i).append(' ');
+                start = i + 1;
+            }
+        }
+        writer.append(text, start, text.length());
+        return this;
+    }
+
+    @Override
+    public StubOutput appendRepeated(char c, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            writer.write(c);
+        }
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,55 @@
+package moe.knox.factorio.core.parser.prototype;
+
+import moe.knox.factorio.core.parser.GeneratedFiles;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes every stub to its own file in the output directory.
+ */
+public final class FileStubSink implements StubSink {
+    private final Path dir;
+    private boolean changed = false;
+
+    public FileStubSink(@NotNull Path dir) {
+        this.dir = dir;
+    }
+
+    @NotNull
+    @Override
+    public String write(@NotNull String fileName, @NotNull String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        String hash = GeneratedFiles.hash(bytes);
+        if (GeneratedFiles.writeIfChanged(dir.resolve(fileName), bytes, hash)) {
+            changed = true;
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean contains(@NotNull String fileName, @NotNull String sha256) {
+        Path file = dir.resolve(fileName);
+        try {
+            return Files.isRegularFile(file) && sha256.equals(GeneratedFiles.hash(Files.readAllBytes(file)));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Removes the packs of a previous {@link PackedStubSink} in the same directory.
+     */
+    @Override
+    public boolean finish() throws IOException {
+        for (Path pack : PackedStubSink.listPacks(dir)) {
+            Files.delete(pack);
+            changed = true;
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,347 @@
+package moe.knox.factorio.core.parser.prototype;
+
+import moe.knox.factorio.core.parser.GeneratedFiles;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Stream;
+
+/**
+ * Writes all stubs into a few packs `prototype_stubs_<n>.lua` instead of one file per stub, so the IDE has only a few
+ * files to index. Every stub is added to the smallest pack, so the packs have about the same size.
+ * <p>
+ * The stubs are written by a background thread from a bounded queue into temporary files, which are synced once
+ * and replace the packs in {@link #finish()}. A pack with the same content is not replaced.
+ * Every stub in a pack starts with a comment `-- stub <fileName> <length> <sha256>` and an empty line, which keeps it
+ * apart from the doc comments of the stub. A resumed run takes the stubs it does not write again from the packs of
+ * the previous run.
+ */
+public final class PackedStubSink implements StubSink {
+    private static final String packPrefix = "prototype_stubs_";
+    private static final String packSuffix = ".lua";
+    private static final String stubHeader = "-- stub ";
+    private static final int queueCapacity = 64;
+
+    private static final Stub end = new Stub("", "", new byte[0]);
+
+    private final Path dir;
+    private final Pack[] packs;
+
+    /**
+     * stubs in the packs of the previous run by file name
+     */
+    private final Map<String, Stub> previousStubs;
+    private final Set<String> retainedStubs = new LinkedHashSet<>();
+    private final Set<String> writtenStubs = new HashSet<>();
+
+    private final BlockingQueue<Stub> queue = new ArrayBlockingQueue<>(queueCapacity);
+    private final Thread writer;
+    private volatile IOException writeError;
+    private boolean finished = false;
+
+    /**
+     * @param dir       the output directory, other stubs in it are removed by {@link #finish()}
+     * @param packCount the number of packs the stubs are split into
+     */
+    public PackedStubSink(@NotNull Path dir, int packCount) throws IOException {
+        this.dir = dir;
+        this.previousStubs = readPacks(dir);
+
+        packs = new Pack[packCount];
+        for (int i = 0; i < packCount; i++) {
+            packs[i] = new Pack(dir.resolve(packPrefix + (i + 1) + packSuffix));
+        }
+
+        writer = new Thread(this::writeQueued, "Prototype stub writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @NotNull
+    @Override
+    public String write(@NotNull String fileName, @NotNull String content) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("stubs are already finished");
+        }
+        throwWriteError();
+
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        String hash = GeneratedFiles.hash(bytes);
+        writtenStubs.add(fileName);
+        enqueue(new Stub(fileName, hash, bytes));
+
+        return hash;
+    }
+
+    @Override
+    public boolean contains(@NotNull String fileName, @NotNull String sha256) {
+        Stub stub = previousStubs.get(fileName);
+        if (stub == null || !stub.sha256.equals(sha256)) {
+            return false;
+        }
+
+        retainedStubs.add(fileName);
+        return true;
+    }
+
+    /**
+     * Waits for the queued stubs, syncs the packs and moves them in place.
+     * A run without any stub keeps the previous packs.
+     */
+    @Override
+    public boolean finish() throws IOException {
+        if (finished) {
+            throw new IllegalStateException("stubs are already finished");
+        }
+        finished = true;
+
+        // stubs of the previous run, which are still valid and were not scraped again
+        for (String fileName : retainedStubs) {
+            if (!writtenStubs.contains(fileName)) {
+                enqueue(previousStubs.get(fileName));
+            }
+        }
+        enqueue(end);
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.interrupt();
+            discardPacks();
+            throw new InterruptedIOException("interrupted while writing the stubs");
+        }
+
+        if (writeError != null) {
+            discardPacks();
+            throw writeError;
+        }
+
+        if (writtenStubs.isEmpty() && retainedStubs.isEmpty()) {
+            discardPacks();
+            return false;
+        }
+
+        for (Pack pack : packs) {
+            pack.sync();
+        }
+
+        boolean changed = false;
+        Set<Path> packFiles = new HashSet<>();
+        for (Pack pack : packs) {
+            packFiles.add(pack.file);
+            changed |= pack.replace();
+        }
+
+        // stubs of an output with one file per stub or with more packs
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(PackedStubSink::isStub).toList()) {
+                if (!packFiles.contains(file)) {
+                    Files.delete(file);
+                    changed = true;
+                }
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return the packs in the directory
+     */
+    static List<Path> listPacks(@NotNull Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(packPrefix) && name.endsWith(packSuffix);
+            }).sorted().toList();
+        }
+    }
+
+    private static boolean isStub(Path file) {
+        return Files.isRegularFile(file) && file.getFileName().toString().endsWith(".lua");
+    }
+
+    /**
+     * A pack which can not be read is left out, its stubs are written again.
+     */
+    private static Map<String, Stub> readPacks(Path dir) throws IOException {
+        Map<String, Stub> stubs = new HashMap<>();
+        for (Path pack : listPacks(dir)) {
+            byte[] bytes = Files.readAllBytes(pack);
+            int position = 0;
+            while (position < bytes.length) {
+                int lineEnd = position;
+                while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+
+                String[] header = new String(bytes, position, lineEnd - position, StandardCharsets.UTF_8).split(" ");
+                if (header.length != 5 || !(header[0] + " " + header[1] + " ").equals(stubHeader)) {
+                    break;
+                }
+
+                int length;
+                try {
+                    length = Integer.parseInt(header[3]);
+                } catch (NumberFormatException e) {
+                    break;
+                }
+                int contentStart = lineEnd + 2;
+                if (length < 0 || contentStart + length > bytes.length || bytes[lineEnd + 1] != '\n') {
+                    break;
+                }
+
+                byte[] content = Arrays.copyOfRange(bytes, contentStart, contentStart + length);
+                if (GeneratedFiles.hash(content).equals(header[4])) {
+                    stubs.put(header[2], new Stub(header[2], header[4], content));
+                }
+                position = contentStart + length;
+            }
+        }
+
+        return stubs;
+    }
+
+    private void enqueue(Stub stub) throws IOException {
+        try {
+            queue.put(stub);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while queueing the stub " + stub.fileName);
+        }
+    }
+
+    private void throwWriteError() throws IOException {
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    /**
+     * Runs on the writer thread until the end of the stubs. After an error the queue is still emptied,
+     * so the producer is not blocked.
+     */
+    private void writeQueued() {
+        try {
+            while (true) {
+                Stub stub = queue.take();
+                if (stub == end) {
+                    return;
+                }
+                if (writeError != null) {
+                    continue;
+                }
+
+                Pack smallest = packs[0];
+                for (Pack pack : packs) {
+                    if (pack.size < smallest.size) {
+                        smallest = pack;
+                    }
+                }
+
+                try {
+                    smallest.append(stub);
+                } catch (IOException e) {
+                    writeError = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            writeError = new InterruptedIOException("interrupted while writing the stubs");
+        }
+    }
+
+    private void discardPacks() {
+        for (Pack pack : packs) {
+            pack.discard();
+        }
+    }
+
+    private record Stub(String fileName, String sha256, byte[] content) {
+    }
+
+    private static final class Pack {
+        final Path file;
+        final Path tempFile;
+        FileChannel channel;
+        long size = 0;
+
+        Pack(Path file) {
+            this.file = file;
+            this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        }
+
+        void append(Stub stub) throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+
+            byte[] header = (stubHeader + stub.fileName + " " + stub.content.length + " " + stub.sha256 + "\n\n").getBytes(StandardCharsets.UTF_8);
+            writeFully(ByteBuffer.wrap(header));
+            writeFully(ByteBuffer.wrap(stub.content));
+            size += header.length + stub.content.length;
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        void sync() throws IOException {
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+            }
+        }
+
+        /**
+         * @return true if the pack was changed
+         */
+        boolean replace() throws IOException {
+            if (channel == null) {
+                // less stubs than packs
+                return Files.deleteIfExists(file);
+            }
+
+            if (Files.isRegularFile(file) && Files.mismatch(file, tempFile) == -1) {
+                Files.delete(tempFile);
+                return false;
+            }
+
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        }
+
+        void discard() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package moe.knox.factorio.core.parser.prototype;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts the first paragraph of a property on a wiki page, like
+ * `<b>Type</b>: table of <a href="/Types/FileName">Types/FileName</a><br>Description<br>Default: ...`.
+ * <p>
+ * The paragraph is walked once: the `<br>` elements split it into segments, the first segment is the type, the
+ * others are the description. The text of every segment is the same as jsoup's {@link Element#text()} of it,
+ * without serialising the segments to html and parsing them again.
+ */
+public final class PropertyBlockExtractor {
+    private static final String TYPE_LABEL = "Type";
+    private static final String ARRAY_PREFIX = "table of ";
+
+    private PropertyBlockExtractor() {
+    }
+
+    /**
+     * @param typeName the text of the last link in the type, null if the type has no link
+     * @param typeLink the href of that link
+     * @param array    if the type is a "table of" the linked type
+     */
+    public record PropertyBlock(@Nullable String typeName, @Nullable String typeLink, boolean array, @NotNull List<String> descriptions) {
+    }
+
+    /**
+     * @return null if the paragraph does not start with the type of the property
+     */
+    @Nullable
+    public static PropertyBlock extract(@NotNull Element paragraph) {
+        SegmentVisitor visitor = new SegmentVisitor();
+        NodeTraversor.traverse(visitor, paragraph);
+        return visitor.finish();
+    }
+
+    private static final class SegmentVisitor implements NodeVisitor {
+        private final StringBuilder text = new StringBuilder();
+        private final List<String> descriptions = new ArrayList<>();
+
+        private boolean firstSegment = true;
+        /**
+         * not a property type, everything else is ignored
+         */
+        private boolean rejected = false;
+        private boolean segmentHasNodes = false;
+        /**
+         * the paragraph is trimmed when serialised, a last segment of only whitespace is empty
+         */
+        private boolean segmentHasContent = false;
+        /**
+         * empty descriptions are only kept when something follows them
+         */
+        private int emptyDescriptions = 0;
+
+        // state of the type segment
+        private int colons = 0;
+        private Element lastLink;
+        private boolean array = false;
+
+        @Override
+        public void head(@NotNull Node node, int depth) {
+            if (depth == 0 || rejected) {
+                return;
+            }
+
+            if (node instanceof Element element && element.normalName().equals("br")) {
+                endSegment();
+                return;
+            }
+
+            segmentHasNodes = true;
+
+            if (node instanceof TextNode textNode) {
+                segmentHasContent |= !textNode.isBlank();
+                appendText(textNode.getWholeText());
+                return;
+            }
+
+            segmentHasContent = true;
+
+            if (node instanceof Element element && firstSegment && colons == 1 && element.normalName().equals("a")) {
+                lastLink = element;
+            }
+        }
+
+        @Override
+        public void tail(@NotNull Node node, int depth) {
+        }
+
+        private void appendText(String wholeText) {
+            if (!firstSegment) {
+                StringUtil.appendNormalisedWhitespace(text, wholeText, lastCharIsWhitespace());
+                return;
+            }
+
+            // the label and the type are separated by the first colon, the type ends at the next one
+            int start = 0;
+            while (colons < 2) {
+                int colon = wholeText.indexOf(':', start);
+                if (colon < 0) {
+                    break;
+                }
+
+                StringUtil.appendNormalisedWhitespace(text, wholeText.substring(start, colon), lastCharIsWhitespace());
+                colonReached();
+                if (rejected) {
+                    return;
+                }
+                start = colon + 1;
+            }
+
+            if (colons < 2) {
+                StringUtil.appendNormalisedWhitespace(text, start == 0 ? wholeText : wholeText.substring(start), lastCharIsWhitespace());
+            }
+        }
+
+        private void colonReached() {
+            colons++;
+            if (colons == 1) {
+                if (!text.toString().strip().equals(TYPE_LABEL)) {
+                    rejected = true;
+                    return;
+                }
+                text.setLength(0);
+            } else {
+                finishType();
+            }
+        }
+
+        private void finishType() {
+            array = text.toString().strip().startsWith(ARRAY_PREFIX);
+            text.setLength(0);
+        }
+
+        private void endSegment() {
+            if (firstSegment) {
+                if (colons == 0) {
+                    // the label is not followed by a type
+                    rejected = true;
+                    return;
+                }
+                if (colons == 1) {
+                    finishType();
+                }
+                firstSegment = false;
+            } else if (segmentHasNodes) {
+                addDescription();
+            } else {
+                emptyDescriptions++;
+            }
+
+            text.setLength(0);
+            segmentHasNodes = false;
+            segmentHasContent = false;
+        }
+
+        private void addDescription() {
+            for (; emptyDescriptions > 0; emptyDescriptions--) {
+                descriptions.add("");
+            }
+            descriptions.add(cleanDescription(text));
+        }
+
+        @Nullable
+        PropertyBlock finish() {
+            if (rejected) {
+                return null;
+            }
+
+            if (firstSegment) {
+                endSegment();
+                if (rejected) {
+                    return null;
+                }
+            } else if (segmentHasContent) {
+                // trailing <br> elements do not add empty descriptions
+                addDescription();
+            }
+
+            String typeName = lastLink != null ? lastLink.text() : null;
+            String typeLink = lastLink != null ? lastLink.attr("href") : null;
+            return new PropertyBlock(typeName, typeLink, array, descriptions);
+        }
+
+        private boolean lastCharIsWhitespace() {
+            return text.length() == 0 || text.charAt(text.length() - 1) == ' ';
+        }
+
+        /**
+         * Removes "::" and the colons around the description, like {@link moe.knox.factorio.core.parser.Parser#removeNewLines}
+         * and the regex did before. The normalised text has no line breaks.
+         */
+        private static String cleanDescription(StringBuilder description) {
+            int length = description.length();
+            StringBuilder cleaned = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                char c = description.charAt(i);
+                if (c == ':' && i + 1 < length && description.charAt(i + 1) == ':') {
+                    i++;
+                    continue;
+                }
+                cleaned.append(c);
+            }
+
+            int start = 0;
+            int end = cleaned.length();
+            while (start < end && Character.isWhitespace(cleaned.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(cleaned.charAt(end - 1))) {
+                end--;
+            }
+            while (start < end && cleaned.charAt(start) == ':') {
+                start++;
+            }
+            while (end > start && cleaned.charAt(end - 1) == ':') {
+                end--;
+            }
+            while (start < end && Character.isWhitespace(cleaned.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(cleaned.charAt(end - 1))) {
+                end--;
+            }
+
+            return cleaned.substring(start, end);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package moe.knox.factorio.core.parser.prototype;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import moe.knox.factorio.core.CoreException;
+import moe.knox.factorio.core.http.HttpCache;
+import moe.knox.factorio.core.http.HttpResponseException;
+import moe.knox.factorio.core.parser.api.ParsingHelper;
+import moe.knox.factorio.core.parser.prototype.data.PrototypeApi;
+import moe.knox.factorio.core.version.FactorioApiVersion;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parser of the machine-readable prototype-api.json. It is only published for newer versions of the game,
+ * the prototypes of older versions are scraped from the wiki.
+ */
+public final class PrototypeApiParser {
+    private final String factorioApiBaseLink;
+
+    /**
+     * null to use the cache in the plugin directory, it is only looked up when something is downloaded
+     */
+    private final HttpCache httpCache;
+
+    public PrototypeApiParser() {
+        this(null);
+    }
+
+    public PrototypeApiParser(HttpCache httpCache) {
+        this(httpCache, "https://lua-api.factorio.com");
+    }
+
+    PrototypeApiParser(HttpCache httpCache, String factorioApiBaseLink) {
+        this.httpCache = httpCache;
+        this.factorioApiBaseLink = factorioApiBaseLink;
+    }
+
+    /**
+     * @return null if there is no prototype-api for the version
+     * @throws CoreException if the prototype-api could not be downloaded or parsed
+     */
+    @Nullable
+    public PrototypeApi parse(FactorioApiVersion version) throws CoreException
+    {
+        try (Reader reader = new InputStreamReader(createVersionStream(version), StandardCharsets.UTF_8)) {
+            return parse(reader);
+        } catch (HttpResponseException e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw new CoreException("Parsing error", e);
+        } catch (IOException e) {
+            throw new CoreException("Parsing error", e);
+        }
+    }
+
+    /**
+     * Parse a prototype-api.json in a single streaming pass.
+     *
+     * @param reader The json source, it is not closed by this method
+     */
+    public PrototypeApi parse(Reader reader) throws CoreException
+    {
+        try {
+            JsonReader jsonReader = new JsonReader(reader);
+            PrototypeApi prototypeApi = ParsingHelper.getGson().getAdapter(PrototypeApi.class).read(jsonReader);
+            if (prototypeApi == null || prototypeApi.prototypes == null) {
+                throw new CoreException("Parsing error: no prototypes");
+            }
+            prototypeApi.arrangeElements();
+
+            return prototypeApi;
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            throw new CoreException("Parsing error", e);
+        }
+    }
+
+    private InputStream createVersionStream(FactorioApiVersion version) throws IOException {
+        String url = factorioApiBaseLink + "/" + version.version() + "/prototype-api.json";
+
+        return (httpCache != null ? httpCache : HttpCache.getInstance()).openStream(url);
+    }
+}
@@ -1,45 +1,71 @@
 package moe.knox.factorio.core.parser.prototype;
 
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.NlsContexts;
 import com.intellij.openapi.util.io.FileUtil;
-import com.tang.intellij.lua.search.SearchContext;
+import moe.knox.factorio.core.CoreException;
+import moe.knox.factorio.core.DownloadCoordinator;
 import moe.knox.factorio.core.NotificationService;
+import moe.knox.factorio.core.http.HttpCache;
+import moe.knox.factorio.core.http.RequestScheduler;
 import moe.knox.factorio.core.parser.Parser;
+import moe.knox.factorio.core.parser.prototype.data.PrototypeApi;
 import moe.knox.factorio.intellij.FactorioState;
 import moe.knox.factorio.core.FactorioPrototypeState;
 import moe.knox.factorio.intellij.FactorioLibraryProvider;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.safety.Safelist;
 import org.jsoup.select.Elements;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Set;
 
 public class PrototypeParser extends Parser {
+    private static final Logger LOG = Logger.getInstance(PrototypeParser.class);
+
     public static final String prototypeRootPath = PathManager.getPluginsPath() + "/factorio_autocompletion/factorio_prototypes/";
-    private static final String prototypeLibPath = prototypeRootPath + "library/";
+    /**
+     * the stubs and the journal of their download are stored per version, in `<version>/library/` and
+     * `<version>/scrape_journal.jsonl`
+     */
+    private static final String libraryDirName = "library";
+    private static final String journalFileName = "scrape_journal.jsonl";
     public static final String prototypesBaseLink = "https://wiki.factorio.com";
 
-    private static AtomicBoolean downloadInProgress = new AtomicBoolean(false);
+    /**
+     * number of wiki pages downloaded at the same time
+     */
+    private static final int defaultFetchParallelism = 6;
+
+    /**
+     * number of files the stubs are packed into, 0 for one file per stub.
+     * The packs have to stay below the file size limit of the IDE, larger files are not indexed.
+     */
+    private static final int defaultStubPacks = 8;
 
     private FactorioState config;
     private ProgressIndicator indicator;
     private String saveDir;
+    private final int fetchParallelism;
+    private final int stubPacks;
+    private StubSink stubSink;
 
     private static List<String> rootTypes = new ArrayList<>() {{
         add("float");
@@ -68,94 +94,236 @@ public class PrototypeParser extends Parser {
     /**
      * map of all propertyTypes `typeName` > `link`
      */
-    private Map<String, String> propertyTypes = new HashMap<>();
+    private Map<String, String> propertyTypes = new LinkedHashMap<>();
+
+    /**
+     * if any prototype file was written, unchanged files are skipped
+     */
+    private boolean filesChanged = false;
 
 
     public PrototypeParser(@Nullable Project project, @NlsContexts.ProgressTitle @NotNull String title, @NotNull String saveDir) {
+        this(project, title, saveDir, defaultFetchParallelism, defaultStubPacks);
+    }
+
+    public PrototypeParser(@Nullable Project project, @NlsContexts.ProgressTitle @NotNull String title, @NotNull String saveDir, int fetchParallelism, int stubPacks) {
         super(project, title, false);
         this.saveDir = saveDir;
+        this.fetchParallelism = fetchParallelism;
+        this.stubPacks = stubPacks;
     }
 
+    /**
+     * The prototypes of an unfinished download stay in use while the download continues.
+     *
+     * @return the path to the prototypes or null if there are none yet
+     */
+    @Nullable
     public static String getCurrentPrototypeLink(Project project) {
-        // return null if download is in progress
-        if (downloadInProgress.get()) {
-            return null;
+        DownloadCoordinator.Key key = downloadKey(project);
+        DownloadCoordinator coordinator = DownloadCoordinator.getInstance();
+        Path versionDir = getPrototypeDir(project);
+        Path prototypePath = versionDir.resolve(libraryDirName);
+
+        if (coordinator.isRunning(key)) {
+            Path previous = coordinator.getPrevious(key);
+            return previous != null ? previous.toString() : null;
         }
 
-        // check if prototypes are downloaded
-        File protoPathFile = new File(prototypeLibPath);
-        if (protoPathFile.exists()) {
-            return prototypeLibPath;
-        } else {
-            if (downloadInProgress.compareAndSet(false, true)) {
-                ProgressManager.getInstance().run(new PrototypeParser(project, "Download and Parse Factorio Prototypes", prototypeLibPath));
-            }
-            return null;
+        // check if prototypes are downloaded, an interrupted download is continued
+        if (Files.isDirectory(prototypePath) && !ScrapeJournal.isIncomplete(versionDir.resolve(journalFileName))) {
+            return prototypePath.toString();
         }
+
+        coordinator.start(key, prototypePath, download -> {
+            PrototypeParser prototypeParser = new PrototypeParser(project, "Download and Parse Factorio Prototypes", prototypePath.toString());
+            prototypeParser.download = download;
+            ProgressManager.getInstance().run(prototypeParser);
+        });
+
+        Path previous = coordinator.getPrevious(key);
+        return previous != null ? previous.toString() : null;
+    }
+
+    private static DownloadCoordinator.Key downloadKey(Project project) {
+        return new DownloadCoordinator.Key(DownloadCoordinator.Artifact.PROTOTYPES, FactorioState.getInstance(project).selectedFactorioVersion.version());
+    }
+
+    /**
+     * The prototype api differs between the versions, so the prototypes are stored per version.
+     */
+    private static Path getPrototypeDir(Project project) {
+        return Paths.get(prototypeRootPath, FactorioState.getInstance(project).selectedFactorioVersion.version());
     }
 
     public static void removeCurrentPrototypes() {
-        if (!downloadInProgress.get()) {
+        if (!DownloadCoordinator.getInstance().isRunning(DownloadCoordinator.Artifact.PROTOTYPES)) {
             String apiPath = prototypeRootPath;
             FileUtil.delete(new File(apiPath));
             FactorioLibraryProvider.reload();
         }
     }
 
+    /**
+     * After the downloads of the version are finished, the Library-Provider is reloaded by the coordinator.
+     */
     @Override
     public void run(@NotNull ProgressIndicator progressIndicator) {
         this.indicator = progressIndicator;
         this.config = FactorioState.getInstance(myProject);
 
-        // start the whole thing
-        assureDir();
-
-        downloadInProgress.set(false);
+        boolean complete;
+        try {
+            // start the whole thing
+            complete = assureDir();
+        } catch (RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        }
 
-        // whole thing finished, reload the Library-Provider
-        ApplicationManager.getApplication().invokeLater(() -> FactorioLibraryProvider.reload());
+        if (complete) {
+            download.complete(new DownloadCoordinator.Result(Paths.get(saveDir), filesChanged));
+        } else {
+            // the next start continues the download
+            download.completeExceptionally(new DownloadCoordinator.Failure("The prototypes are incomplete", filesChanged));
+        }
     }
 
     /**
      * Entry-point with creating the used directory
      * It will assure, that the directory is there and will start the downloading and parsing.
+     *
+     * @return false if the prototypes are incomplete
      */
-    private void assureDir() {
+    private boolean assureDir() {
         File dirFile = new File(saveDir);
-        if (!dirFile.exists()) {
-            // file does not exist ... create it
-            if (dirFile.mkdirs()) {
-                // download and parse API
-                downloadAndParsePrototypes();
-            } else {
-                NotificationService.getInstance(myProject).notifyErrorCreatingPrototypeDirs();
+        if (!dirFile.exists() && !dirFile.mkdirs()) {
+            NotificationService.getInstance(myProject).notifyErrorCreatingPrototypeDirs();
+            return false;
+        }
+
+        // the prototypes of all versions were stored in one directory before
+        FileUtil.delete(new File(prototypeRootPath, libraryDirName));
+        FileUtil.delete(new File(prototypeRootPath, journalFileName));
+
+        // the directory is new or the last download did not finish, the journal is next to it
+        ScrapeJournal journal;
+        try {
+            journal = ScrapeJournal.open(dirFile.toPath().resolveSibling(journalFileName));
+        } catch (IOException e) {
+            e.printStackTrace();
+            showDownloadingError(false);
+            return false;
+        }
+
+        try {
+            stubSink = stubPacks > 0 ? new PackedStubSink(dirFile.toPath(), stubPacks) : new FileStubSink(dirFile.toPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+            showDownloadingError(false);
+            return false;
+        }
+
+        // the prototype api is only published for newer versions, the wiki is scraped for the older ones
+        PrototypeApi prototypeApi;
+        try {
+            prototypeApi = new PrototypeApiParser().parse(config.selectedFactorioVersion);
+        } catch (CoreException e) {
+            e.printStackTrace();
+            showDownloadingError(false);
+            return false;
+        }
+
+        boolean complete;
+        if (prototypeApi != null) {
+            complete = writePrototypeApi(prototypeApi);
+        } else {
+            LOG.info("No prototype api for " + config.selectedFactorioVersion + ", the wiki is scraped");
+            complete = downloadAndParsePrototypes(journal);
+        }
+
+        // the stubs of an unfinished scrape are kept as well, the journal refers to them
+        try {
+            if (stubSink.finish()) {
+                filesChanged = true;
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+            showDownloadingError(false);
+            return false;
+        }
+
+        if (complete) {
+            try {
+                journal.markComplete();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Create the prototype stubs from the prototype-api.json of the selected version
+     *
+     * @return false if a stub could not be written
+     */
+    private boolean writePrototypeApi(PrototypeApi prototypeApi) {
+        Map<String, String> stubs = new PrototypeStubWriter().writeStubs(prototypeApi);
+        indicator.setIndeterminate(false);
+        maxTodo = stubs.size();
+        boolean complete = true;
+        for (Map.Entry<String, String> stub : stubs.entrySet()) {
+            try {
+                stubSink.write(stub.getKey(), stub.getValue());
+            } catch (IOException e) {
+                e.printStackTrace();
+                complete = false;
+            }
+            updateIndicator();
+        }
+
+        if (!complete) {
+            showDownloadingError(true);
         }
+
+        FactorioPrototypeState.getInstance().setPrototypeTypes(PrototypeStubWriter.prototypeIds(prototypeApi));
+
+        return complete;
     }
     private double curTodo = 0;
     private double maxTodo = 0;
 
 
-    private void updateIndicator() {
+    /**
+     * Called from the fetching threads, once per completed page
+     */
+    private synchronized void updateIndicator() {
         indicator.setFraction(curTodo / maxTodo);
         curTodo++;
     }
 
     /**
      * Entry-point for parsing
-     * Download the main Prototype-Page and parse all prototypes
+     * Download the main Prototype-Page and parse all prototypes.
+     * Pages which are finished in the journal are not downloaded again, failed pages are left out of it.
+     *
+     * @return true if all pages are finished
      */
-    private void downloadAndParsePrototypes() {
+    private boolean downloadAndParsePrototypes(ScrapeJournal journal) {
         indicator.setIndeterminate(false);
 
         String prototypesOverviewLink = prototypesBaseLink + "/Prototype_definitions";
+        HttpCache httpCache = HttpCache.getInstance();
+        RequestScheduler requestScheduler = RequestScheduler.getInstance();
         Document protoOverview;
         try {
-            protoOverview = Jsoup.connect(prototypesOverviewLink).get();
+            byte[] overviewPage = requestScheduler.execute(prototypesOverviewLink, () -> httpCache.getBytes(prototypesOverviewLink));
+            protoOverview = Jsoup.parse(new ByteArrayInputStream(overviewPage), null, prototypesOverviewLink);
         } catch (IOException e) {
-            System.out.println("error downloading the main Prototype page");
+            LOG.warn("error downloading the main Prototype page: " + prototypesOverviewLink, e);
             showDownloadingError(false);
-            return;
+            return false;
         }
 
         // get links to prototypes
@@ -163,37 +331,171 @@ public class PrototypeParser extends Parser {
         maxTodo = prototypeElements.size();
         updateIndicator();
 
+        WikiPageFetcher fetcher = new WikiPageFetcher(httpCache, requestScheduler, prototypesBaseLink, fetchParallelism);
+        List<String> prototypeLinks = prototypeElements.stream().map(element -> element.attr("href")).toList();
+
+        // the links after a page without a prototype, which was found by an earlier run, are not needed
+        List<String> missingPrototypeLinks = new ArrayList<>();
+        for (String link : prototypeLinks) {
+            ScrapeJournal.Entry entry = journal.finished(prototypeKey(link), stubSink);
+            if (entry == null) {
+                missingPrototypeLinks.add(link);
+            } else if (entry.status == ScrapeJournal.Status.UNPARSEABLE) {
+                break;
+            } else {
+                updateIndicator();
+            }
+        }
+
+        // the fetching stops at the first page without a prototype, it ends the list
+        Map<String, WikiPageFetcher.Page<String, Prototype>> prototypePages = new LinkedHashMap<>();
+        try {
+            fetcher.fetchAll(missingPrototypeLinks.stream().distinct().toList(), link -> link, (link, document) -> {
+                Prototype prototype = new Prototype(true);
+                return prototype.parseDocument(document) ? prototype : null;
+            }, page -> page.error() == null && page.result() == null, this::updateIndicator).forEach(page -> prototypePages.put(page.link(), page));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
         List<String> prototypeIds = new ArrayList<>();
+        Set<String> scrapedPrototypeLinks = new HashSet<>();
+        boolean failed = false;
+
+        // merge in the order of the overview page, the first page without a prototype ends the list
+        for (String link : prototypeLinks) {
+            ScrapeJournal.Entry entry = journal.finished(prototypeKey(link), stubSink);
+            if (entry == null) {
+                WikiPageFetcher.Page<String, Prototype> page = prototypePages.get(link);
+                if (page == null) {
+                    // after the end of the list
+                    break;
+                }
 
-        for (Element prototypeElement : prototypeElements) {
-            Prototype prototype = new Prototype(true);
-            if (!prototype.parsePrototype(prototypeElement.attr("href"))) {
+                entry = finishPage(journal, prototypeKey(link), page);
+                if (entry == null) {
+                    failed = true;
+                    continue;
+                }
+            }
+
+            if (entry.status == ScrapeJournal.Status.UNPARSEABLE) {
                 break;
             }
-            if (prototype.id != null && !prototype.id.equals("abstract")) {
-                prototypeIds.add(prototype.id);
+            if (entry.types != null) {
+                propertyTypes.putAll(entry.types);
+            }
+            if (entry.id != null && !entry.id.equals("abstract")) {
+                prototypeIds.add(entry.id);
+            }
+            if (entry.id != null) {
+                scrapedPrototypeLinks.add(WikiPageFetcher.normaliseLink(link));
             }
-            updateIndicator();
         }
 
         FactorioPrototypeState.getInstance().setPrototypeTypes(prototypeIds);
 
-        // update indicator max value
-        maxTodo += propertyTypes.size();
+        // parse additional types, like normal Prototypes
+        // a type linking to a prototype page is named by the page, its file was already saved with the prototype
+        List<Map.Entry<String, String>> additionalTypes = new ArrayList<>();
+        int typesOfPrototypes = 0;
+        for (Map.Entry<String, String> propertyType : propertyTypes.entrySet()) {
+            if (rootTypes.contains(propertyType.getKey())) {
+                continue;
+            }
+            if (scrapedPrototypeLinks.contains(WikiPageFetcher.normaliseLink(propertyType.getValue()))) {
+                typesOfPrototypes++;
+                continue;
+            }
+            if (journal.finished(typeKey(propertyType.getKey()), stubSink) == null) {
+                additionalTypes.add(propertyType);
+            }
+        }
 
-        SearchContext searchContext = SearchContext.Companion.get(getProject());
+        // update indicator max value
+        maxTodo += additionalTypes.size();
 
-        propertyTypes.forEach((typeName, typeLink) -> {
-            if (!rootTypes.contains(typeName)) {
-                // parse additional types, like normal Prototypes
+        List<WikiPageFetcher.Page<Map.Entry<String, String>, Prototype>> typePages;
+        try {
+            typePages = fetcher.fetchAll(additionalTypes, Map.Entry::getValue, (propertyType, document) -> {
                 Prototype prototype = new Prototype();
-                prototype.name = typeName;
+                prototype.name = propertyType.getKey();
+                return prototype.parseDocument(document) ? prototype : null;
+            }, this::updateIndicator);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
 
-                // All unsuccessful types are hardcoded in the lua library
-                prototype.parsePrototype(typeLink);
+        // All unsuccessful types are hardcoded in the lua library
+        for (WikiPageFetcher.Page<Map.Entry<String, String>, Prototype> page : typePages) {
+            if (finishPage(journal, typeKey(page.item().getKey()), page) == null) {
+                failed = true;
             }
-            updateIndicator();
-        });
+        }
+
+        LOG.info(String.format("Prototype pages: %d downloaded, %d shared while in flight, %d types already scraped as prototypes",
+                fetcher.getFetches(), fetcher.getSharedFetches(), typesOfPrototypes));
+        for (RequestScheduler.HostMetrics metrics : requestScheduler.getMetrics()) {
+            LOG.info(String.format("Requests to %s: %d sent, %d retried, %d throttled (429), %d server errors, %d failed, %.0f ms average latency, concurrency limit %d",
+                    metrics.host(), metrics.requests(), metrics.retries(), metrics.tooManyRequests(), metrics.serverErrors(),
+                    metrics.failures(), metrics.averageLatencyMillis(), metrics.concurrencyLimit()));
+        }
+
+        if (failed) {
+            // the next start of the IDE continues with the failed pages
+            showDownloadingError(false);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Save the prototype of the page and record it in the journal.
+     *
+     * @return the journal entry, null if the page failed
+     */
+    @Nullable
+    private ScrapeJournal.Entry finishPage(ScrapeJournal journal, String key, WikiPageFetcher.Page<?, Prototype> page) {
+        ScrapeJournal.Entry entry;
+        if (page.isNotFound()) {
+            entry = ScrapeJournal.Entry.of(key, ScrapeJournal.Status.NOT_FOUND);
+        } else if (page.error() != null) {
+            LOG.warn("error downloading the single prototype page: " + page.link(), page.error());
+            return null;
+        } else if (page.result() == null) {
+            entry = ScrapeJournal.Entry.of(key, ScrapeJournal.Status.UNPARSEABLE);
+        } else {
+            Prototype prototype = page.result();
+            String hash = prototype.saveToFile();
+            if (hash == null) {
+                return null;
+            }
+
+            entry = ScrapeJournal.Entry.of(key, ScrapeJournal.Status.DONE);
+            entry.file = prototype.name + ".lua";
+            entry.sha256 = hash;
+            entry.id = prototype.id;
+            entry.types = prototype.referencedTypes;
+        }
+
+        try {
+            journal.record(entry);
+        } catch (IOException e) {
+            // the page is done, only the next run downloads it again
+            e.printStackTrace();
+        }
+        return entry;
+    }
+
+    private static String prototypeKey(String link) {
+        return "prototype:" + link;
+    }
+
+    private static String typeKey(String typeName) {
+        return "type:" + typeName;
     }
 
     private class Prototype {
@@ -201,6 +503,10 @@ public class PrototypeParser extends Parser {
         String id;
         String parentType;
         boolean catchTypes = false;
+        /**
+         * types referenced by the properties `typeName` > `link`, only collected with catchTypes
+         */
+        Map<String, String> referencedTypes = new LinkedHashMap<>();
         List<String> description = new ArrayList<>();
         List<Property> properties = new ArrayList<>();
 
@@ -213,25 +519,12 @@ public class PrototypeParser extends Parser {
         }
 
         /**
-         * Parse the html page of a single prototype
+         * Parse the html page of a single prototype. Runs on the fetching threads, so nothing shared is touched here.
          *
-         * @param link Link to the prototype page
+         * @param prototypeDoc the downloaded prototype page
          * @return true if the parsing was successful
          */
-        private boolean parsePrototype(String link) {
-            String prototypeLink = prototypesBaseLink + link;
-            Document prototypeDoc;
-            try {
-                prototypeDoc = Jsoup.connect(prototypeLink).get();
-            } catch (IOException e) {
-                if (e instanceof HttpStatusException && ((HttpStatusException) e).getStatusCode() == 404) {
-                    return true;
-                }
-                System.out.printf("error downloading the single prototype page: %s", link);
-                showDownloadingError(false);
-                return false;
-            }
-
+        private boolean parseDocument(Document prototypeDoc) {
             Element prototypeNameElement = prototypeDoc.selectFirst("td.caption");
             if (prototypeNameElement != null) {
                 name = prototypeNameElement.text().split("—")[0].strip().replace("/", "_");
@@ -284,51 +577,29 @@ public class PrototypeParser extends Parser {
                 } else if (element.is("p") && atProperties && propertyFirst) {
                     // Parse the properties description and more
                     propertyFirst = false;
-                    boolean firstLink = true;
-                    boolean isArray = false;
-
-                    String elementHtml = element.html();
-                    String[] splittedElementHtml = elementHtml.split("<br>");
-                    for (int i = 0; i < splittedElementHtml.length; i++) {
-                        if (i == 0) {
-                            // First Element is always the type
-                            // check if first element is really the type!!
-                            String[] splittedType = splittedElementHtml[i].split(":");
-                            if (!Jsoup.clean(splittedType[0], Safelist.none()).equals("Type")) {
-                                break;
-                            }
-                            String elementType = splittedType[1];
-                            Document typeDocument = Jsoup.parseBodyFragment(elementType);
 
-                            if (typeDocument.text().startsWith("table of ")) {
-                                isArray = true;
-                            }
-
-                            // The last link is used to determine which Type it is
-                            Elements links = typeDocument.select("a");
-                            if (links.size() == 0) {
-                                continue;
-                            }
-                            Element lastLink = links.last();
-                            property.type = lastLink.text();
-                            property.type = property.type.replace("/Types/", "").replace("Types/", "");
+                    // First line is always the type, if it is not there this is no property
+                    PropertyBlockExtractor.PropertyBlock propertyBlock = PropertyBlockExtractor.extract(element);
+                    if (propertyBlock != null) {
+                        // The last link is used to determine which Type it is
+                        if (propertyBlock.typeName() != null) {
+                            property.type = propertyBlock.typeName().replace("/Types/", "").replace("Types/", "");
 
                             // When type is table, the type is defined inline
                             if (property.type.equals("table") || property.type.equals("tables")) {
                                 isInlineType = true;
                                 property.type = "Type_" + this.name + "_" + property.name;
                             } else if (catchTypes) {
-                                propertyTypes.put(property.type, lastLink.attr("href"));
+                                referencedTypes.put(property.type, propertyBlock.typeLink());
                             }
-                        } else {
-                            // The rest
-                            Document document = Jsoup.parseBodyFragment(splittedElementHtml[i]);
-                            Element body = document.body();
-                            property.description.add(removeNewLines(document.text().strip()).strip().replaceAll("^[:]+|[:]+$", "").strip());
                         }
-                    }
-                    if (isArray) {
-                        property.type += "[]";
+
+                        // The rest
+                        property.description.addAll(propertyBlock.descriptions());
+
+                        if (propertyBlock.array()) {
+                            property.type += "[]";
+                        }
                     }
                 } else if (element.is("p") && atProperties && !propertyFirst && property != null) {
                     // parse general property description
@@ -348,8 +619,6 @@ public class PrototypeParser extends Parser {
                 }
             }
 
-            saveToFile();
-
             return true;
         }
 
@@ -405,16 +674,24 @@ public class PrototypeParser extends Parser {
 
         /**
          * Save this prototype-class to a file, so it is accessible
+         *
+         * @return the hash of the file content, null if it could not be saved
          */
-        public void saveToFile() {
+        @Nullable
+        public String saveToFile() {
             // create new file content
             StringBuilder typeFileContent = new StringBuilder();
 
             saveTable(typeFileContent, this.description, this.name, this.parentType, this.properties);
 
             // create file
-            String typeDir = saveDir + this.name + ".lua";
-            saveStringToFile(typeDir, typeFileContent.toString());
+            try {
+                return stubSink.write(this.name + ".lua", typeFileContent.toString());
+            } catch (IOException e) {
+                e.printStackTrace();
+                showDownloadingError(true);
+                return null;
+            }
         }
 
         private void saveTable(StringBuilder fileContent, List<String> description, String name, @Nullable String parentType, List<Property> properties) {
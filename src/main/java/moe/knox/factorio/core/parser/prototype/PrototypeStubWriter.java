@@ -0,0 +1,299 @@
+package moe.knox.factorio.core.parser.prototype;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import moe.knox.factorio.core.parser.prototype.data.PrototypeApi;
+import moe.knox.factorio.core.parser.prototype.data.PrototypeDefinition;
+import moe.knox.factorio.core.parser.prototype.data.PrototypeProperty;
+import moe.knox.factorio.core.parser.prototype.data.TypeDefinition;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Creates the prototype stubs from the {@link PrototypeApi}, in the same format as the stubs scraped from the wiki:
+ * one file per prototype class `Prototype_*` and one per type.
+ */
+public final class PrototypeStubWriter {
+    private final static String NEW_LINE = System.lineSeparator();
+    private final static String PROTOTYPE_SUFFIX = "Prototype";
+
+    private final Set<String> prototypeNames = new HashSet<>();
+
+    /**
+     * @return the content of every stub file by its file name, in the order of the api
+     */
+    public Map<String, String> writeStubs(@NotNull PrototypeApi prototypeApi) {
+        prototypeNames.clear();
+        prototypeApi.prototypes.forEach(prototype -> prototypeNames.add(prototype.name));
+
+        Map<String, String> files = new LinkedHashMap<>();
+
+        for (PrototypeDefinition prototype : prototypeApi.prototypes) {
+            String className = prototypeClassName(prototype.name);
+            String parent = prototype.parent != null ? prototypeClassName(prototype.parent) : null;
+
+            StringBuilder content = new StringBuilder();
+            writeClass(content, prototype.description, className, parent, prototype.properties);
+            files.put(className + ".lua", content.toString());
+        }
+
+        if (prototypeApi.types != null) {
+            for (TypeDefinition type : prototypeApi.types) {
+                if (isBuiltin(type.type)) {
+                    // builtin types are part of the lua library
+                    continue;
+                }
+
+                StringBuilder content = new StringBuilder();
+                if ((type.properties != null && !type.properties.isEmpty()) || isStruct(type.type)) {
+                    writeClass(content, type.description, type.name, type.parent, type.properties);
+                } else {
+                    writeAlias(content, type.description, type.name, getType(type.type));
+                }
+                files.put(type.name + ".lua", content.toString());
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * @return the type names of all prototypes, which can be created
+     */
+    public static List<String> prototypeIds(@NotNull PrototypeApi prototypeApi) {
+        List<String> prototypeIds = new ArrayList<>();
+        for (PrototypeDefinition prototype : prototypeApi.prototypes) {
+            if (!prototype.isAbstract && prototype.typename != null) {
+                prototypeIds.add(prototype.typename);
+            }
+        }
+
+        return prototypeIds;
+    }
+
+    /**
+     * The class name as on the wiki, "AssemblingMachinePrototype" is "Prototype_AssemblingMachine"
+     */
+    public static String prototypeClassName(@NotNull String prototypeName) {
+        String name = prototypeName;
+        if (name.endsWith(PROTOTYPE_SUFFIX) && name.length() > PROTOTYPE_SUFFIX.length()) {
+            name = name.substring(0, name.length() - PROTOTYPE_SUFFIX.length());
+        }
+
+        return "Prototype_" + name;
+    }
+
+    private void writeClass(StringBuilder fileContent, @Nullable String description, String name, @Nullable String parent, @Nullable List<PrototypeProperty> properties) {
+        for (String s : descriptionLines(description)) {
+            fileContent.append("---").append(s).append(NEW_LINE);
+        }
+
+        fileContent.append("---@class ").append(name);
+        if (parent != null && !parent.isEmpty()) {
+            fileContent.append(" : ").append(parent);
+        }
+        fileContent.append(NEW_LINE);
+        fileContent.append("local ").append(name).append(" = {}").append(NEW_LINE).append(NEW_LINE);
+
+        if (properties == null) {
+            return;
+        }
+
+        for (PrototypeProperty property : properties) {
+            for (String s : propertyDescription(property)) {
+                fileContent.append("--- ").append(s).append(NEW_LINE);
+            }
+
+            fileContent.append("---@type ").append(getType(property.type)).append(NEW_LINE);
+            fileContent.append(name).append(".").append(property.name).append(" = nil").append(NEW_LINE).append(NEW_LINE);
+        }
+    }
+
+    private void writeAlias(StringBuilder fileContent, @Nullable String description, String name, String type) {
+        for (String s : descriptionLines(description)) {
+            fileContent.append("---").append(s).append(NEW_LINE);
+        }
+
+        fileContent.append("---@alias ").append(name).append(" ").append(type).append(NEW_LINE);
+    }
+
+    private List<String> propertyDescription(PrototypeProperty property) {
+        List<String> lines = descriptionLines(property.description);
+        if (!property.optional) {
+            return lines;
+        }
+
+        // like the hardcoded lua library: "[optional, default 0] red value"
+        String defaultValue = getDefaultValue(property.defaultValue);
+        String marker = defaultValue != null ? "[optional, default " + defaultValue + "]" : "[optional]";
+        if (lines.isEmpty()) {
+            lines.add(marker);
+        } else {
+            lines.set(0, marker + " " + lines.get(0));
+        }
+
+        return lines;
+    }
+
+    private static List<String> descriptionLines(@Nullable String description) {
+        List<String> lines = new ArrayList<>();
+        if (description == null) {
+            return lines;
+        }
+
+        for (String line : description.split("\\R")) {
+            if (!line.isBlank()) {
+                lines.add(line.strip());
+            }
+        }
+
+        return lines;
+    }
+
+    @Nullable
+    private static String getDefaultValue(@Nullable JsonElement defaultValue) {
+        if (defaultValue == null || defaultValue.isJsonNull()) {
+            return null;
+        }
+        if (defaultValue.isJsonObject()) {
+            JsonElement value = defaultValue.getAsJsonObject().get("value");
+            return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+        }
+        if (defaultValue.isJsonPrimitive()) {
+            String value = defaultValue.getAsString().strip();
+            return value.contains("\n") ? null : value;
+        }
+
+        return null;
+    }
+
+    private static boolean isBuiltin(@Nullable JsonElement type) {
+        return type != null && type.isJsonPrimitive() && type.getAsString().equals("builtin");
+    }
+
+    private static boolean isStruct(@Nullable JsonElement type) {
+        return complexType(type).equals("struct");
+    }
+
+    private static String complexType(@Nullable JsonElement type) {
+        if (type == null || !type.isJsonObject()) {
+            return "";
+        }
+
+        JsonElement complexType = type.getAsJsonObject().get("complex_type");
+        return complexType != null ? complexType.getAsString() : "";
+    }
+
+    /**
+     * @return the type as used in the annotations
+     */
+    String getType(@Nullable JsonElement type) {
+        if (type == null || type.isJsonNull()) {
+            return "any";
+        }
+
+        if (type.isJsonPrimitive()) {
+            String name = type.getAsString();
+            return prototypeNames.contains(name) ? prototypeClassName(name) : name;
+        }
+
+        if (!type.isJsonObject()) {
+            return "any";
+        }
+
+        JsonObject complexType = type.getAsJsonObject();
+        return switch (complexType(type)) {
+            case "array" -> arrayType(getType(complexType.get("value")));
+            case "dictionary" -> "table<" + getType(complexType.get("key")) + ", " + getType(complexType.get("value")) + ">";
+            case "union" -> unionType(complexType.getAsJsonArray("options"));
+            case "literal" -> {
+                String literal = literalType(complexType.getAsJsonPrimitive("value"));
+                yield literal.startsWith("'") ? "string|" + literal : literal;
+            }
+            case "type" -> getType(complexType.get("value"));
+            case "tuple" -> tupleType(complexType.getAsJsonArray("values"));
+            default -> "table";
+        };
+    }
+
+    private String unionType(@Nullable JsonArray options) {
+        if (options == null) {
+            return "any";
+        }
+
+        List<String> types = new ArrayList<>();
+        boolean stringLiterals = false;
+        for (JsonElement option : options) {
+            String optionType;
+            if (complexType(option).equals("literal")) {
+                optionType = literalType(option.getAsJsonObject().getAsJsonPrimitive("value"));
+                stringLiterals |= optionType.startsWith("'");
+            } else {
+                optionType = getType(option);
+            }
+
+            if (!types.contains(optionType)) {
+                types.add(optionType);
+            }
+        }
+
+        // like the hardcoded lua library: string|'"all"'|'"enemy"'
+        if (stringLiterals && !types.contains("string")) {
+            types.add(0, "string");
+        }
+
+        return String.join("|", types);
+    }
+
+    /**
+     * Lua annotations have no tuples, a tuple of a single type is presented as array
+     */
+    private String tupleType(@Nullable JsonArray values) {
+        if (values == null || values.isEmpty()) {
+            return "table";
+        }
+
+        Set<String> types = new LinkedHashSet<>();
+        values.forEach(value -> types.add(getType(value)));
+
+        return types.size() == 1 ? arrayType(types.iterator().next()) : "table";
+    }
+
+    private static String arrayType(String valueType) {
+        return isUnion(valueType) ? "(" + valueType + ")[]" : valueType + "[]";
+    }
+
+    /**
+     * @return true if the type has a "|" outside of generic parameters
+     */
+    private static boolean isUnion(String type) {
+        int depth = 0;
+        for (int i = 0; i < type.length(); i++) {
+            switch (type.charAt(i)) {
+                case '<', '(' -> depth++;
+                case '>', ')' -> depth--;
+                case '|' -> {
+                    if (depth == 0) {
+                        return true;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static String literalType(@Nullable JsonPrimitive value) {
+        if (value == null) {
+            return "nil";
+        }
+
+        return value.isString() ? "'\"" + value.getAsString() + "\"'" : value.getAsString();
+    }
+}
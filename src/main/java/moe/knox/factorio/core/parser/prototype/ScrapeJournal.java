@@ -0,0 +1,164 @@
+package moe.knox.factorio.core.parser.prototype;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Journal of a prototype scrape, one json line per finished page.
+ * A scrape which failed or was interrupted is resumed with it: pages with an entry and an unchanged output file are
+ * not downloaded again. The journal is complete, when the last line is the completion marker.
+ */
+public final class ScrapeJournal {
+    private static final String completeLine = "{\"status\":\"COMPLETE\"}";
+
+    private final Path file;
+    private final Gson gson = new Gson();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean complete = false;
+
+    private ScrapeJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Open the journal to continue the scrape it describes. A complete journal is started again.
+     */
+    @NotNull
+    public static ScrapeJournal open(@NotNull Path file) throws IOException {
+        ScrapeJournal journal = new ScrapeJournal(file);
+
+        if (Files.isRegularFile(file)) {
+            journal.load();
+        }
+
+        if (journal.complete) {
+            journal.entries.clear();
+            journal.complete = false;
+            Files.delete(file);
+        }
+
+        return journal;
+    }
+
+    /**
+     * @return true if there is a journal of a scrape which was not finished
+     */
+    public static boolean isIncomplete(@NotNull Path file) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            return lines.isEmpty() || !lines.get(lines.size() - 1).equals(completeLine);
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private void load() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.equals(completeLine)) {
+                    complete = true;
+                    continue;
+                }
+
+                Entry entry;
+                try {
+                    entry = gson.fromJson(line, Entry.class);
+                } catch (JsonParseException e) {
+                    // the last line of an interrupted scrape can be cut off
+                    continue;
+                }
+                if (entry != null && entry.key != null) {
+                    entries.put(entry.key, entry);
+                    complete = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param outputDir the directory the output file of the entry is in
+     * @return the entry of the finished page, null if the page has to be scraped (again)
+     */
+    @Nullable
+    public Entry finished(@NotNull String key, @NotNull Path outputDir) {
+        return finished(key, new FileStubSink(outputDir));
+    }
+
+    /**
+     * @param output the output the stub of the entry was written to
+     * @return the entry of the finished page, null if the page has to be scraped (again)
+     */
+    @Nullable
+    public synchronized Entry finished(@NotNull String key, @NotNull StubSink output) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.file == null) {
+            return entry;
+        }
+
+        // the output file was changed or removed since
+        return output.contains(entry.file, entry.sha256) ? entry : null;
+    }
+
+    public synchronized void record(@NotNull Entry entry) throws IOException {
+        entries.put(entry.key, entry);
+        appendLine(gson.toJson(entry));
+    }
+
+    /**
+     * Mark the scrape as finished, the next scrape starts from the beginning.
+     */
+    public synchronized void markComplete() throws IOException {
+        complete = true;
+        appendLine(completeLine);
+    }
+
+    private void appendLine(String line) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, line + "\n", StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public enum Status {
+        /**
+         * page parsed and saved to the file
+         */
+        DONE,
+        NOT_FOUND,
+        /**
+         * page without a prototype definition
+         */
+        UNPARSEABLE,
+    }
+
+    public static class Entry {
+        public String key;
+        public Status status;
+        public String file; // output file relative to the output dir, null if nothing was saved
+        public String sha256; // hash of the output file
+        public String id; // prototype id
+        public Map<String, String> types; // referenced types `typeName` > `link`
+
+        public static Entry of(@NotNull String key, @NotNull Status status) {
+            Entry entry = new Entry();
+            entry.key = key;
+            entry.status = status;
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package moe.knox.factorio.core.parser.prototype;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Output of the generated prototype stubs. The stubs are written by a single thread, the output is only complete
+ * after {@link #finish()}.
+ */
+public interface StubSink {
+    /**
+     * @param fileName the name of the stub, like "Prototype_Car.lua"
+     * @return {@link moe.knox.factorio.core.parser.GeneratedFiles#hash} of the content
+     */
+    @NotNull
+    String write(@NotNull String fileName, @NotNull String content) throws IOException;
+
+    /**
+     * Check the output of a previous run. A stub which is there with this hash is kept in the output, even if it is
+     * not written again.
+     *
+     * @return true if the output has the stub with this hash
+     */
+    boolean contains(@NotNull String fileName, @NotNull String sha256);
+
+    /**
+     * Complete the output, nothing can be written afterwards.
+     *
+     * @return true if any file of the output was changed
+     */
+    boolean finish() throws IOException;
+}
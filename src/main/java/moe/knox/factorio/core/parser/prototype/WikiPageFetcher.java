@@ -0,0 +1,228 @@
+package moe.knox.factorio.core.parser.prototype;
+
+import moe.knox.factorio.core.CoreException;
+import moe.knox.factorio.core.http.HttpCache;
+import moe.knox.factorio.core.http.HttpResponseException;
+import moe.knox.factorio.core.http.RequestScheduler;
+import moe.knox.factorio.core.util.SingleFlight;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Fetches wiki pages with a bounded number of concurrent requests.
+ * Every page is handled on the thread which fetched it, the results are returned in the order of the items,
+ * so the caller can merge them like they were fetched one after another.
+ * The pages are fetched through the {@link HttpCache}. Items linking to the same page while it is fetched share the
+ * download and the html parsing of it. The {@link RequestScheduler} decides how many of the parallel requests are sent
+ * at the same time and retries the temporary errors.
+ */
+public final class WikiPageFetcher {
+    private final HttpCache httpCache;
+    private final RequestScheduler requestScheduler;
+    private final String baseLink;
+    private final int parallelism;
+    private final SingleFlight<String, FetchedPage> fetches = new SingleFlight<>();
+
+    /**
+     * @param baseLink    prepended to every link
+     * @param parallelism maximum number of requests at the same time
+     */
+    public WikiPageFetcher(@NotNull HttpCache httpCache, @NotNull String baseLink, int parallelism) {
+        this(httpCache, RequestScheduler.getInstance(), baseLink, parallelism);
+    }
+
+    /**
+     * @param baseLink    prepended to every link
+     * @param parallelism maximum number of requests at the same time
+     */
+    public WikiPageFetcher(@NotNull HttpCache httpCache, @NotNull RequestScheduler requestScheduler, @NotNull String baseLink, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+
+        this.httpCache = httpCache;
+        this.requestScheduler = requestScheduler;
+        this.baseLink = baseLink;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Fetch and handle the page of every item.
+     *
+     * @param linkOf      the link of the page of an item, relative to the base link
+     * @param onCompleted called after every fetched and handled page, from the fetching thread
+     * @return a page for every item, in the order of the items
+     */
+    public <T, R> List<Page<T, R>> fetchAll(
+            @NotNull List<T> items,
+            @NotNull Function<T, String> linkOf,
+            @NotNull PageHandler<T, R> handler,
+            @NotNull Runnable onCompleted
+    ) throws InterruptedException {
+        return fetchAll(items, linkOf, handler, page -> false, onCompleted);
+    }
+
+    /**
+     * Fetch and handle the pages of the items up to the first page which ends the list.
+     * The items are started in their order, items after the end are not fetched, unless they were already started
+     * when the end was found. Their pages are not returned.
+     *
+     * @param linkOf      the link of the page of an item, relative to the base link
+     * @param isEnd       if the page is the last one of the list
+     * @param onCompleted called after every fetched and handled page, from the fetching thread
+     * @return a page for every item up to and including the end, in the order of the items
+     */
+    public <T, R> List<Page<T, R>> fetchAll(
+            @NotNull List<T> items,
+            @NotNull Function<T, String> linkOf,
+            @NotNull PageHandler<T, R> handler,
+            @NotNull Predicate<Page<T, R>> isEnd,
+            @NotNull Runnable onCompleted
+    ) throws InterruptedException {
+        if (items.isEmpty()) {
+            return List.of();
+        }
+
+        // index of the first page which ends the list, the threads take the items in order from the queue
+        AtomicInteger end = new AtomicInteger(items.size());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, items.size()), new FetcherThreadFactory());
+        try {
+            List<Future<Page<T, R>>> futures = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                int index = i;
+                T item = items.get(index);
+                futures.add(executor.submit(() -> {
+                    if (index > end.get()) {
+                        return null;
+                    }
+
+                    try {
+                        Page<T, R> page = fetch(item, linkOf.apply(item), handler);
+                        if (isEnd.test(page)) {
+                            end.accumulateAndGet(index, Math::min);
+                        }
+                        return page;
+                    } finally {
+                        onCompleted.run();
+                    }
+                }));
+            }
+
+            List<Page<T, R>> pages = new ArrayList<>(items.size());
+            for (Future<Page<T, R>> future : futures) {
+                Page<T, R> page = future.get();
+                if (page == null) {
+                    break;
+                }
+
+                pages.add(page);
+                if (pages.size() > end.get()) {
+                    break;
+                }
+            }
+
+            return pages;
+        } catch (ExecutionException e) {
+            throw new CoreException("Handling of a wiki page failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return number of fetches which were shared with another item
+     */
+    public long getSharedFetches() {
+        return fetches.getHits();
+    }
+
+    /**
+     * @return number of pages which were downloaded
+     */
+    public long getFetches() {
+        return fetches.getMisses();
+    }
+
+    /**
+     * Normalise a wiki link, links which differ only in the fragment, the escaping or spaces lead to the same page.
+     */
+    @NotNull
+    public static String normaliseLink(@NotNull String link) {
+        int fragmentStart = link.indexOf('#');
+        String page = fragmentStart >= 0 ? link.substring(0, fragmentStart) : link;
+
+        try {
+            page = URLDecoder.decode(page, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            // not escaped
+        }
+
+        return page.replace(' ', '_');
+    }
+
+    private <T, R> Page<T, R> fetch(T item, String link, PageHandler<T, R> handler) {
+        FetchedPage fetchedPage = fetches.run(normaliseLink(link), () -> download(link));
+        if (fetchedPage.error() != null) {
+            return new Page<>(item, link, null, fetchedPage.error());
+        }
+
+        // a shared document is only read by the handlers
+        return new Page<>(item, link, handler.handle(item, fetchedPage.document()), null);
+    }
+
+    private FetchedPage download(String link) {
+        try {
+            String url = baseLink + link;
+            byte[] page = requestScheduler.execute(url, () -> httpCache.getBytes(url));
+            Document document = Jsoup.parse(new ByteArrayInputStream(page), null, url);
+            return new FetchedPage(document, null);
+        } catch (IOException e) {
+            return new FetchedPage(null, e);
+        }
+    }
+
+    private record FetchedPage(@Nullable Document document, @Nullable IOException error) {
+    }
+
+    /**
+     * @param result the result of the handler, null if the page could not be fetched
+     * @param error  the error of fetching the page
+     */
+    public record Page<T, R>(T item, String link, @Nullable R result, @Nullable IOException error) {
+        public boolean isNotFound() {
+            return error instanceof HttpResponseException responseException && responseException.getStatusCode() == 404;
+        }
+    }
+
+    @FunctionalInterface
+    public interface PageHandler<T, R> {
+        R handle(T item, Document document);
+    }
+
+    private static class FetcherThreadFactory implements java.util.concurrent.ThreadFactory {
+        private static final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "Factorio wiki fetcher " + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
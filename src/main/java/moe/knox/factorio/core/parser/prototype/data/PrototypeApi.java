@@ -0,0 +1,56 @@
+package moe.knox.factorio.core.parser.prototype.data;
+
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The representation of the json prototype-api, published next to the runtime-api
+ */
+public class PrototypeApi {
+    /**
+     * The application this documentation is for.
+     * Will always be "factorio".
+     */
+    public String application;
+
+    /**
+     * Indicates the stage this documentation is for.
+     * Will always be "prototype".
+     */
+    public String stage;
+
+    /**
+     * The version of the game that this documentation is for.
+     */
+    public String application_version;
+
+    /**
+     * The version of the machine-readable format itself.
+     */
+    public String api_version;
+
+    /**
+     * The list of prototypes that can be created.
+     * Equivalent to the `prototypes` page.
+     */
+    public List<PrototypeDefinition> prototypes;
+
+    /**
+     * The list of types (concepts) that the format uses.
+     * Equivalent to the `types` page.
+     */
+    public List<TypeDefinition> types;
+
+    public void arrangeElements() {
+        if (prototypes != null) {
+            prototypes.sort(Comparator.comparingDouble(prototype -> prototype.order));
+            prototypes.forEach(PrototypeDefinition::arrangeElements);
+        }
+
+        if (types != null) {
+            types.sort(Comparator.comparingDouble(type -> type.order));
+            types.forEach(TypeDefinition::arrangeElements);
+        }
+    }
+}
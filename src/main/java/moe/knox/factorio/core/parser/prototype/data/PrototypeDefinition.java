@@ -0,0 +1,24 @@
+package moe.knox.factorio.core.parser.prototype.data;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.Comparator;
+import java.util.List;
+
+public class PrototypeDefinition {
+    public String name; // The name of the prototype.
+    public double order; // The order of the prototype as shown in the html.
+    public String description; // The text description of the prototype.
+    public String parent; // (optional): The name of the prototype's parent, if any.
+    @SerializedName("abstract")
+    public boolean isAbstract; // Whether the prototype is abstract, and thus can't be created directly.
+    public String typename; // (optional): The type name of the prototype, like "boiler". null for abstract prototypes.
+    public boolean deprecated; // Whether the prototype is deprecated and shouldn't be used anymore.
+    public List<PrototypeProperty> properties; // The list of properties that the prototype has.
+
+    public void arrangeElements() {
+        if (properties != null) {
+            properties.sort(Comparator.comparingDouble(property -> property.order));
+        }
+    }
+}
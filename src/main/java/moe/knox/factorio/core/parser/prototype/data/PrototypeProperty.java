@@ -0,0 +1,15 @@
+package moe.knox.factorio.core.parser.prototype.data;
+
+import com.google.gson.JsonElement;
+import com.google.gson.annotations.SerializedName;
+
+public class PrototypeProperty {
+    public String name; // The name of the property.
+    public double order; // The order of the property as shown in the html.
+    public String description; // The text description of the property.
+    public boolean override; // Whether the property overrides a property of the same name in one of its parents.
+    public JsonElement type; // The type of the property, a type name or a complex type.
+    public boolean optional; // Whether the property is optional and has a default value.
+    @SerializedName("default")
+    public JsonElement defaultValue; // (optional): The default value of the property, a literal or a description of it.
+}
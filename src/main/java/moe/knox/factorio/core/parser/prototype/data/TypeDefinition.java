@@ -0,0 +1,25 @@
+package moe.knox.factorio.core.parser.prototype.data;
+
+import com.google.gson.JsonElement;
+import com.google.gson.annotations.SerializedName;
+
+import java.util.Comparator;
+import java.util.List;
+
+public class TypeDefinition {
+    public String name; // The name of the type.
+    public double order; // The order of the type as shown in the html.
+    public String description; // The text description of the type.
+    public String parent; // (optional): The name of the type's parent, if any.
+    @SerializedName("abstract")
+    public boolean isAbstract; // Whether the type is abstract, and thus can't be created directly.
+    public boolean inline; // Whether the type is inlined on the website.
+    public JsonElement type; // The type of the type, "builtin" for the types built into the game, a struct for types with properties.
+    public List<PrototypeProperty> properties; // (optional): The list of properties that the type has, if its type includes a struct.
+
+    public void arrangeElements() {
+        if (properties != null) {
+            properties.sort(Comparator.comparingDouble(property -> property.order));
+        }
+    }
+}
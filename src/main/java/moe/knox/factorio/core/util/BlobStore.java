@@ -0,0 +1,329 @@
+package moe.knox.factorio.core.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.intellij.openapi.application.PathManager;
+import moe.knox.factorio.core.parser.GeneratedFiles;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Stores the files of the version directories by their SHA-256, so a file which is the same in several versions is on
+ * disk only once.
+ * <p>
+ * A stored directory stays where it is, but its files are replaced by hard links of the blobs. The manifest of the
+ * directory lists the blob of every file, with it the directory can be restored from the blobs after it was deleted,
+ * without downloading it again. Blobs which are in no manifest are removed by {@link #collectGarbage()}.
+ * On a file system without hard links the blobs are copies, the directories can still be restored.
+ * <p>
+ * The files of a stored directory must not be written in place, they are replaced instead.
+ */
+public final class BlobStore {
+    /**
+     * stores which are not the shared instance, like in tests, use the same lock
+     */
+    private static final Object lock = new Object();
+    private static final int format = 1;
+    private static final String tempExtension = ".tmp";
+
+    private static BlobStore instance;
+
+    private final Gson gson = new Gson();
+    private final Path blobsDir;
+    private final Path manifestsDir;
+
+    /**
+     * @param files       number of files of the directory
+     * @param sharedFiles files which were already in the store
+     * @param sharedBytes size of these files
+     */
+    public record StoreResult(int files, int sharedFiles, long sharedBytes) {
+    }
+
+    /**
+     * @param blobs    removed blobs
+     * @param bytes    size of these blobs
+     */
+    public record GarbageResult(int blobs, long bytes) {
+    }
+
+    private static class Manifest {
+        int format;
+        Map<String, FileEntry> files;
+    }
+
+    private static class FileEntry {
+        String sha256;
+        long size;
+    }
+
+    public BlobStore(@NotNull Path directory) {
+        this.blobsDir = directory.resolve("blobs");
+        this.manifestsDir = directory.resolve("manifests");
+    }
+
+    /**
+     * The store of the version directories of the plugin
+     */
+    public static synchronized BlobStore getInstance() {
+        if (instance == null) {
+            instance = new BlobStore(Path.of(PathManager.getPluginsPath(), "factorio_autocompletion", "blob_store"));
+        }
+        return instance;
+    }
+
+    /**
+     * Add the files of the directory to the store and link them to their blobs.
+     *
+     * @param key name of the directory in the store, like `lualib/1.1.70`
+     */
+    public StoreResult store(@NotNull String key, @NotNull Path dir) throws IOException {
+        synchronized (lock) {
+            Map<String, FileEntry> files = new TreeMap<>();
+            int sharedFiles = 0;
+            long sharedBytes = 0;
+
+            List<Path> paths;
+            try (Stream<Path> walk = Files.walk(dir)) {
+                paths = walk.filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)).toList();
+            }
+
+            for (Path file : paths) {
+                FileEntry entry = new FileEntry();
+                entry.sha256 = GeneratedFiles.hash(file);
+                entry.size = Files.size(file);
+                files.put(dir.relativize(file).toString().replace('\\', '/'), entry);
+
+                Path blob = blobPath(entry.sha256);
+                if (Files.isRegularFile(blob)) {
+                    sharedFiles++;
+                    sharedBytes += entry.size;
+                    if (!Files.isSameFile(blob, file)) {
+                        replaceWithLink(file, blob);
+                    }
+                } else {
+                    addBlob(file, blob);
+                }
+            }
+
+            Manifest manifest = new Manifest();
+            manifest.format = format;
+            manifest.files = files;
+            writeManifest(key, manifest);
+
+            return new StoreResult(files.size(), sharedFiles, sharedBytes);
+        }
+    }
+
+    /**
+     * Create the directory again from its blobs. The directory must not exist, it is created with all its files or
+     * not at all.
+     *
+     * @return false if the directory is not in the store or some of its blobs are missing
+     */
+    public boolean restore(@NotNull String key, @NotNull Path dir) throws IOException {
+        synchronized (lock) {
+            Manifest manifest = readManifest(manifestPath(key));
+            if (manifest == null) {
+                return false;
+            }
+
+            for (FileEntry entry : manifest.files.values()) {
+                Path blob = blobPath(entry.sha256);
+                if (!Files.isRegularFile(blob) || Files.size(blob) != entry.size) {
+                    return false;
+                }
+            }
+
+            Path tempDir = dir.toAbsolutePath().normalize();
+            tempDir = tempDir.resolveSibling(tempDir.getFileName() + tempExtension);
+            deleteRecursively(tempDir);
+            try {
+                Files.createDirectories(tempDir);
+                for (Map.Entry<String, FileEntry> file : manifest.files.entrySet()) {
+                    Path target = tempDir.resolve(file.getKey()).normalize();
+                    if (!target.startsWith(tempDir)) {
+                        throw new IOException("File " + file.getKey() + " of " + key + " is outside of its directory");
+                    }
+                    Files.createDirectories(target.getParent());
+                    link(target, blobPath(file.getValue().sha256));
+                }
+
+                try {
+                    Files.move(tempDir, dir, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempDir, dir);
+                }
+            } finally {
+                deleteRecursively(tempDir);
+            }
+
+            return true;
+        }
+    }
+
+    public boolean contains(@NotNull String key) {
+        return Files.isRegularFile(manifestPath(key));
+    }
+
+    /**
+     * Remove the directory from the store, its blobs are removed by the next garbage collection.
+     *
+     * @param key the key of the directory, or a part of the keys, like `lualib`, which removes all directories below it
+     */
+    public void forget(@NotNull String key) throws IOException {
+        synchronized (lock) {
+            Files.deleteIfExists(manifestPath(key));
+
+            Path manifests = manifestsDir.resolve(key).normalize();
+            if (manifests.startsWith(manifestsDir) && !manifests.equals(manifestsDir)) {
+                deleteRecursively(manifests);
+            }
+        }
+    }
+
+    /**
+     * Remove the blobs which are in no manifest and the leftovers of interrupted writes.
+     * A broken manifest is removed, its directory is downloaded again when it is needed.
+     */
+    public GarbageResult collectGarbage() throws IOException {
+        synchronized (lock) {
+            Set<String> referenced = new HashSet<>();
+            if (Files.isDirectory(manifestsDir)) {
+                List<Path> manifestFiles;
+                try (Stream<Path> walk = Files.walk(manifestsDir)) {
+                    manifestFiles = walk.filter(Files::isRegularFile).toList();
+                }
+
+                for (Path manifestFile : manifestFiles) {
+                    Manifest manifest = manifestFile.toString().endsWith(tempExtension) ? null : readManifest(manifestFile);
+                    if (manifest == null) {
+                        Files.delete(manifestFile);
+                        continue;
+                    }
+                    manifest.files.values().forEach(entry -> referenced.add(entry.sha256));
+                }
+            }
+
+            int blobs = 0;
+            long bytes = 0;
+            if (Files.isDirectory(blobsDir)) {
+                List<Path> blobFiles;
+                try (Stream<Path> walk = Files.walk(blobsDir)) {
+                    blobFiles = walk.filter(Files::isRegularFile).toList();
+                }
+
+                for (Path blob : blobFiles) {
+                    if (!referenced.contains(blob.getFileName().toString())) {
+                        bytes += Files.size(blob);
+                        Files.delete(blob);
+                        blobs++;
+                    }
+                }
+            }
+
+            return new GarbageResult(blobs, bytes);
+        }
+    }
+
+    private Path blobPath(String sha256) {
+        return blobsDir.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    private Path manifestPath(String key) {
+        // the key is a relative path, like the version directories
+        Path manifest = manifestsDir.resolve(key + ".json").normalize();
+        if (!manifest.startsWith(manifestsDir)) {
+            throw new IllegalArgumentException("invalid blob store key " + key);
+        }
+        return manifest;
+    }
+
+    /**
+     * The file becomes the blob, it is linked into the store, or copied when there are no hard links.
+     */
+    private void addBlob(Path file, Path blob) throws IOException {
+        Files.createDirectories(blob.getParent());
+        Path tempBlob = blob.resolveSibling(blob.getFileName() + tempExtension);
+        Files.deleteIfExists(tempBlob);
+        try {
+            link(tempBlob, file);
+            Files.move(tempBlob, blob, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempBlob);
+        }
+    }
+
+    /**
+     * Without hard links the file stays a copy of the blob.
+     */
+    private static void replaceWithLink(Path file, Path blob) throws IOException {
+        Path tempLink = file.resolveSibling(file.getFileName() + tempExtension);
+        Files.deleteIfExists(tempLink);
+        try {
+            Files.createLink(tempLink, blob);
+            Files.move(tempLink, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // no hard links on this file system or across these directories
+        } finally {
+            Files.deleteIfExists(tempLink);
+        }
+    }
+
+    private static void link(Path link, Path existing) throws IOException {
+        try {
+            Files.createLink(link, existing);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(existing, link);
+        }
+    }
+
+    private Manifest readManifest(Path manifestFile) {
+        if (!Files.isRegularFile(manifestFile)) {
+            return null;
+        }
+
+        try (Reader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+            Manifest manifest = gson.fromJson(reader, Manifest.class);
+            if (manifest == null || manifest.format != format || manifest.files == null) {
+                return null;
+            }
+            return manifest;
+        } catch (IOException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    private void writeManifest(String key, Manifest manifest) throws IOException {
+        Path manifestFile = manifestPath(key);
+        Files.createDirectories(manifestFile.getParent());
+        Path tempFile = manifestFile.resolveSibling(manifestFile.getFileName() + tempExtension);
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                gson.toJson(manifest, writer);
+            }
+            Files.move(tempFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
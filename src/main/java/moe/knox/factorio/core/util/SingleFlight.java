@@ -0,0 +1,69 @@
+package moe.knox.factorio.core.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs the work of a key only once at a time: callers which request a key while its work is in flight wait for it and
+ * share its result. Finished work is forgotten, a later call runs it again.
+ *
+ * @param <K> key of the work
+ * @param <V> result of the work
+ */
+public final class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Run the work, or wait for the work of the same key which is already running.
+     * Exceptions of the work are rethrown to every caller sharing it.
+     */
+    public V run(@NotNull K key, @NotNull Supplier<V> work) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            hits.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw e;
+            }
+        }
+
+        misses.increment();
+        try {
+            V result = work.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return number of calls which shared the work of another call
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of calls which ran the work
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,99 @@
+package moe.knox.factorio.core.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A file which is written in the background some time after it was changed. All changes until then are written
+ * together, the content is taken from the supplier when the file is written.
+ * The file is replaced atomically, it is never seen half written. Pending files are written when the JVM shuts down.
+ */
+public final class WriteBehindFile {
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Factorio write behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Set<WriteBehindFile> pending = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> pending.forEach(WriteBehindFile::flushPending), "Factorio write behind shutdown"));
+    }
+
+    private final Path file;
+    private final long delayMillis;
+    private final Supplier<byte[]> content;
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final LongAdder writes = new LongAdder();
+
+    /**
+     * @param delayMillis time between the first change and the write
+     * @param content     the current content of the file, called on the writing thread
+     */
+    public WriteBehindFile(@NotNull Path file, long delayMillis, @NotNull Supplier<byte[]> content) {
+        this.file = file;
+        this.delayMillis = delayMillis;
+        this.content = content;
+    }
+
+    /**
+     * Schedule the write of the file, unless it is already scheduled.
+     */
+    public void changed() {
+        if (scheduled.compareAndSet(false, true)) {
+            pending.add(this);
+            scheduler.schedule(this::flushPending, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write the current content now.
+     */
+    public synchronized void flush() throws IOException {
+        // changes from here on schedule the next write
+        scheduled.set(false);
+        pending.remove(this);
+
+        byte[] bytes = content.get();
+        Files.createDirectories(file.getParent());
+        Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tempFile, bytes);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        writes.increment();
+    }
+
+    /**
+     * @return the number of times the file was written
+     */
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    private void flushPending() {
+        if (!scheduled.get()) {
+            return;
+        }
+
+        try {
+            flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package moe.knox.factorio.core.util;
+
+import moe.knox.factorio.core.CoreException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts only some directories of a zip file.
+ * <p>
+ * The entries are selected by the central directory of the zip, so the entries which are not needed are never read
+ * or inflated. The selected entries are inflated and written in parallel.
+ */
+public final class ZipExtractor {
+    private final static int BUFFER_SIZE = 256 * 1024;
+    private final static ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+    private final int parallelism;
+
+    /**
+     * A directory in the zip, which is extracted into the save dir.
+     *
+     * @param inZipDir like `/lualib/`, it is matched anywhere in the name of an entry, so the root directory of a
+     *                 GitHub zipball does not matter
+     */
+    public record Target(@NotNull String inZipDir, @NotNull Path saveDir) {
+    }
+
+    /**
+     * @param files extracted files
+     * @param bytes uncompressed size of the extracted files
+     */
+    public record Result(int files, long bytes) {
+    }
+
+    public ZipExtractor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ZipExtractor(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Extract the files of all targets. An entry in more than one target is extracted into each of them.
+     */
+    public Result extract(@NotNull Path zipPath, @NotNull List<Target> targets) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
+            List<Extraction> extractions = select(zipFile, targets);
+
+            // the directories are created up front, so the files can be written in any order
+            Set<Path> directories = new HashSet<>();
+            for (Extraction extraction : extractions) {
+                directories.add(extraction.target.getParent());
+            }
+            for (Path directory : directories) {
+                Files.createDirectories(directory);
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(parallelism, extractions.size())));
+            try {
+                List<ForkJoinTask<Long>> tasks = new ArrayList<>(extractions.size());
+                for (Extraction extraction : extractions) {
+                    tasks.add(pool.submit(() -> write(zipFile, extraction)));
+                }
+
+                long bytes = 0;
+                for (ForkJoinTask<Long> task : tasks) {
+                    bytes += task.get();
+                }
+
+                return new Result(extractions.size(), bytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Extraction of " + zipPath + " was interrupted");
+            } catch (ExecutionException e) {
+                // the pool wraps the checked exceptions of the tasks
+                for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                    if (cause instanceof IOException ioException) {
+                        throw ioException;
+                    }
+                }
+                throw new CoreException("Extraction of " + zipPath + " failed", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Read the central directory, it is at the end of the zip, so a truncated zip has none. The entries are not read,
+     * the CRC of an entry is checked when it is extracted.
+     *
+     * @throws IOException if the zip is not complete
+     */
+    public static void verify(@NotNull Path zipPath) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
+            zipFile.size();
+        } catch (ZipException e) {
+            throw new IOException("Zip " + zipPath + " is damaged", e);
+        }
+    }
+
+    /**
+     * The files of the targets, in the order of the central directory
+     */
+    private static List<Extraction> select(ZipFile zipFile, List<Target> targets) throws IOException {
+        List<Extraction> extractions = new ArrayList<>();
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (entry.isDirectory()) {
+                continue;
+            }
+
+            String name = entry.getName();
+            for (Target target : targets) {
+                int pos = name.lastIndexOf(target.inZipDir());
+                if (pos < 0) {
+                    continue;
+                }
+
+                String fileName = name.substring(pos + target.inZipDir().length());
+                Path saveDir = target.saveDir().toAbsolutePath().normalize();
+                Path file = saveDir.resolve(fileName).normalize();
+                if (!file.startsWith(saveDir) || file.equals(saveDir)) {
+                    throw new IOException("Zip entry " + name + " is outside of " + target.inZipDir());
+                }
+
+                extractions.add(new Extraction(entry, file));
+            }
+        }
+
+        return extractions;
+    }
+
+    /**
+     * Runs on a thread of the pool, every thread has its own inflater and buffer.
+     *
+     * @throws IOException also if the CRC of the entry does not match
+     */
+    private static long write(ZipFile zipFile, Extraction extraction) throws IOException {
+        ByteBuffer buffer = buffers.get();
+        long written = 0;
+        CRC32 crc = new CRC32();
+        try (InputStream inputStream = new CheckedInputStream(zipFile.getInputStream(extraction.entry), crc);
+             FileChannel channel = FileChannel.open(extraction.target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int read;
+            while ((read = inputStream.readNBytes(buffer.array(), 0, buffer.capacity())) > 0) {
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer);
+                }
+            }
+        }
+
+        if (extraction.entry.getCrc() != -1 && extraction.entry.getCrc() != crc.getValue()) {
+            throw new IOException("Zip entry " + extraction.entry.getName() + " is damaged");
+        }
+        return written;
+    }
+
+    private record Extraction(ZipEntry entry, Path target) {
+    }
+}
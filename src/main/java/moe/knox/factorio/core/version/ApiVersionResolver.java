@@ -1,11 +1,13 @@
 package moe.knox.factorio.core.version;
 
 import com.intellij.util.text.SemVer;
+import moe.knox.factorio.core.http.HttpCache;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Set;
@@ -19,6 +21,19 @@ public final class ApiVersionResolver {
     final private SemVer minimalSupportedVersion = new SemVer("1.1.62", 1, 1, 62);
     final private static String versionsHtmlPage = "https://lua-api.factorio.com/";
 
+    /**
+     * null to use the cache in the plugin directory, it is only looked up when something is downloaded
+     */
+    final private HttpCache httpCache;
+
+    public ApiVersionResolver() {
+        this(null);
+    }
+
+    public ApiVersionResolver(HttpCache httpCache) {
+        this.httpCache = httpCache;
+    }
+
     public ApiVersionCollection supportedVersions() throws IOException {
         var allVersions = getAllVersions();
         var lastVersion = Collections.max(allVersions);
@@ -47,7 +62,8 @@ public final class ApiVersionResolver {
     {
         var versions = new TreeSet<SemVer>();
 
-        Document mainPageDoc = Jsoup.connect(versionsHtmlPage).get();
+        byte[] mainPage = (httpCache != null ? httpCache : HttpCache.getInstance()).getBytes(versionsHtmlPage);
+        Document mainPageDoc = Jsoup.parse(new ByteArrayInputStream(mainPage), null, versionsHtmlPage);
         Elements allLinks = mainPageDoc.select("a");
         for (Element link : allLinks) {
             var semVer = SemVer.parseFromText(link.text());
@@ -0,0 +1,338 @@
+package moe.knox.factorio.core.version;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.util.text.SemVer;
+import moe.knox.factorio.core.http.HttpCache;
+import moe.knox.factorio.core.http.HttpResponseException;
+import moe.knox.factorio.core.http.RequestScheduler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The tags of the factorio-data repository, sorted by their version.
+ * <p>
+ * The tags are kept in a file for some time, so the startup does not wait for GitHub. {@link #getTags()} answers
+ * from that file and refreshes it in the background when it is too old, {@link #fetchTags()} waits for the refresh.
+ * All pages of the GitHub response are read, not only the first one.
+ */
+public final class TagCatalog {
+    private static final String tagsLink = "https://api.github.com/repos/wube/factorio-data/git/refs/tags?per_page=100";
+    private static final Duration defaultTimeToLive = Duration.ofHours(6);
+    private static final int timeoutMillis = 30_000;
+    private static final int format = 1;
+    private static final Pattern nextLink = Pattern.compile("<([^>]+)>\\s*;\\s*rel=\"next\"");
+
+    private static final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Factorio tag catalog refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static TagCatalog instance;
+
+    private final Gson gson = new Gson();
+    private final Path cacheFile;
+    private final String link;
+    private final Duration timeToLive;
+    private final RequestScheduler requestScheduler;
+    private final Clock clock;
+
+    // guarded by this
+    private List<Tag> tags;
+    private long fetchedAt;
+    private CompletableFuture<List<Tag>> refresh;
+
+    /**
+     * A tag like `refs/tags/1.1.70`
+     *
+     * @param name the version of the tag
+     */
+    public record Tag(@NotNull String name, @NotNull String ref, @NotNull SemVer version) {
+    }
+
+    private static class CacheFile {
+        int format;
+        long fetchedAt;
+        List<String> refs;
+    }
+
+    private static class RefTag {
+        String ref;
+    }
+
+    /**
+     * @param link       the first page of the refs of the tags
+     * @param timeToLive age after which the tags are refreshed
+     */
+    public TagCatalog(@NotNull Path cacheFile, @NotNull String link, @NotNull Duration timeToLive, @NotNull RequestScheduler requestScheduler, @NotNull Clock clock) {
+        this.cacheFile = cacheFile;
+        this.link = link;
+        this.timeToLive = timeToLive;
+        this.requestScheduler = requestScheduler;
+        this.clock = clock;
+    }
+
+    /**
+     * The catalog shared by the downloaders and the settings
+     */
+    public static synchronized TagCatalog getInstance() {
+        if (instance == null) {
+            instance = new TagCatalog(Path.of(PathManager.getPluginsPath(), "factorio_autocompletion", "factorio_data_tags.json"),
+                    tagsLink, defaultTimeToLive, RequestScheduler.getInstance(), Clock.systemUTC());
+        }
+        return instance;
+    }
+
+    /**
+     * The known tags, without waiting for GitHub. When they are too old, they are refreshed in the background.
+     *
+     * @return empty when the tags were never downloaded
+     */
+    @NotNull
+    public synchronized List<Tag> getTags() {
+        load();
+        if (isStale()) {
+            refresh();
+        }
+        return tags;
+    }
+
+    /**
+     * The tags, when they are too old the future completes with the refreshed tags.
+     */
+    @NotNull
+    public synchronized CompletableFuture<List<Tag>> getTagsAsync() {
+        load();
+        return isStale() ? refresh() : CompletableFuture.completedFuture(tags);
+    }
+
+    /**
+     * The tags, which are downloaded first when they are too old. If that fails, the old tags are used.
+     *
+     * @throws IOException if the tags were never downloaded and can not be downloaded now
+     */
+    @NotNull
+    public List<Tag> fetchTags() throws IOException {
+        CompletableFuture<List<Tag>> pending;
+        synchronized (this) {
+            load();
+            if (!isStale()) {
+                return tags;
+            }
+            pending = refresh();
+        }
+
+        try {
+            return pending.join();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (!tags.isEmpty()) {
+                    return tags;
+                }
+            }
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Download the tags in the background, unless that is already running.
+     */
+    @NotNull
+    public synchronized CompletableFuture<List<Tag>> refresh() {
+        if (refresh != null && !refresh.isDone()) {
+            return refresh;
+        }
+
+        CompletableFuture<List<Tag>> future = new CompletableFuture<>();
+        refresh = future;
+        refresher.execute(() -> {
+            try {
+                List<String> refs = download();
+                future.complete(update(refs));
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * The next {@link #getTags()} or {@link #fetchTags()} downloads the tags again.
+     */
+    public synchronized void invalidate() {
+        load();
+        fetchedAt = 0;
+    }
+
+    /**
+     * @return the tag with the highest version, null without tags
+     */
+    @Nullable
+    public static Tag latest(@NotNull List<Tag> tags) {
+        return tags.isEmpty() ? null : tags.get(tags.size() - 1);
+    }
+
+    /**
+     * @return the tag of the version, null if there is none
+     */
+    @Nullable
+    public static Tag find(@NotNull List<Tag> tags, @NotNull String version) {
+        for (Tag tag : tags) {
+            if (tag.name().equals(version)) {
+                return tag;
+            }
+        }
+        return null;
+    }
+
+    private boolean isStale() {
+        return clock.millis() - fetchedAt >= timeToLive.toMillis();
+    }
+
+    private synchronized List<Tag> update(List<String> refs) throws IOException {
+        tags = toTags(refs);
+        fetchedAt = clock.millis();
+
+        CacheFile content = new CacheFile();
+        content.format = format;
+        content.fetchedAt = fetchedAt;
+        content.refs = refs;
+
+        Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+        Path tempFile = Files.createTempFile(cacheFile.toAbsolutePath().getParent(), cacheFile.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                gson.toJson(content, writer);
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+
+        return tags;
+    }
+
+    /**
+     * Read the file once, a missing or broken file is an empty catalog, which is stale.
+     */
+    private void load() {
+        if (tags != null) {
+            return;
+        }
+
+        tags = List.of();
+        fetchedAt = 0;
+        if (!Files.isRegularFile(cacheFile)) {
+            return;
+        }
+
+        try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            CacheFile content = gson.fromJson(reader, CacheFile.class);
+            if (content != null && content.format == format && content.refs != null) {
+                tags = toTags(content.refs);
+                fetchedAt = content.fetchedAt;
+            }
+        } catch (IOException | JsonParseException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Tags which are not a version are left out.
+     */
+    private static List<Tag> toTags(List<String> refs) {
+        List<Tag> tags = new ArrayList<>();
+        for (String ref : refs) {
+            String name = ref.substring(ref.lastIndexOf('/') + 1);
+            SemVer version = SemVer.parseFromText(name);
+            if (version != null) {
+                tags.add(new Tag(name, ref, version));
+            }
+        }
+
+        tags.sort(Comparator.comparing(Tag::version));
+        return List.copyOf(tags);
+    }
+
+    /**
+     * @return the refs of all pages
+     */
+    private List<String> download() throws IOException {
+        List<String> refs = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        String pageLink = link;
+        while (pageLink != null && visited.add(pageLink)) {
+            String currentLink = pageLink;
+            pageLink = requestScheduler.execute(currentLink, () -> downloadPage(currentLink, refs));
+        }
+        return refs;
+    }
+
+    /**
+     * @return the link of the next page, null on the last page
+     */
+    @Nullable
+    private String downloadPage(String pageLink, List<String> refs) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(pageLink).openConnection();
+        try {
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setRequestProperty("Accept", "application/vnd.github+json");
+
+            int statusCode = connection.getResponseCode();
+            if (statusCode >= 400) {
+                throw new HttpResponseException(statusCode, pageLink, HttpCache.retryAfter(connection));
+            }
+
+            RefTag[] page;
+            try (InputStream inputStream = connection.getInputStream();
+                 Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+                page = gson.fromJson(reader, RefTag[].class);
+            } catch (JsonParseException e) {
+                throw new IOException("Invalid tags on " + pageLink, e);
+            }
+
+            if (page != null) {
+                for (RefTag refTag : page) {
+                    if (refTag != null && refTag.ref != null) {
+                        refs.add(refTag.ref);
+                    }
+                }
+            }
+
+            String linkHeader = connection.getHeaderField("Link");
+            if (linkHeader == null) {
+                return null;
+            }
+            Matcher matcher = nextLink.matcher(linkHeader);
+            return matcher.find() ? matcher.group(1) : null;
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.intellij.openapi.options.SearchableConfigurable;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.NlsContexts;
 import moe.knox.factorio.core.version.FactorioApiVersion;
+import moe.knox.factorio.core.version.TagCatalog;
 import moe.knox.factorio.core.parser.api.ApiParser;
 import moe.knox.factorio.core.LuaLibDownloader;
 import moe.knox.factorio.core.parser.prototype.PrototypeParser;
@@ -34,6 +35,8 @@ public class FactorioConfig implements SearchableConfigurable {
         config = FactorioState.getInstance(project);
         apiVersionResolver = new ApiVersionResolver();
         latestExistingVersion = apiVersionResolver.supportedVersions().latestVersion();
+        // a changed version looks up its lualib tag, which is refreshed in the background while the settings are open
+        TagCatalog.getInstance().getTags();
 
         enableFactorioIntegrationCheckBox.setSelected(config.integrationActive);
 
@@ -73,7 +76,13 @@ public class FactorioConfig implements SearchableConfigurable {
         }
 
         reloadButton.addActionListener(actionEvent -> {
-            removeParsedLibraries();
+            // the api is generated again in place, so the unchanged files are not indexed again
+            ApiParser.regenerateCurrentAPI(project);
+            PrototypeParser.removeCurrentPrototypes();
+            // the lualib is downloaded again, from the newest tags
+            TagCatalog.getInstance().invalidate();
+            LuaLibDownloader.removeCurrentLualib(project);
+            LuaLibDownloader.forgetStoredLualibs();
             updateLibraries();
         });
     }
@@ -131,6 +140,10 @@ public class FactorioConfig implements SearchableConfigurable {
         ApiParser.removeCurrentAPI(project);
         PrototypeParser.removeCurrentPrototypes();
         LuaLibDownloader.removeCurrentLualib(project);
+
+        // the versions are not switched back to, their files are removed from the blob store as well
+        ApiParser.forgetStoredAPIs();
+        LuaLibDownloader.forgetStoredLualibs();
     }
 
     private void updateLibraries()
@@ -0,0 +1,140 @@
+package moe.knox.factorio.core;
+
+import junit.framework.TestCase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DownloadCoordinatorTest extends TestCase {
+    @TempDir
+    Path tempDir;
+
+    private final List<String> reloads = new ArrayList<>();
+    private final DownloadCoordinator coordinator = new DownloadCoordinator(reloads::add);
+
+    private static final DownloadCoordinator.Key api = new DownloadCoordinator.Key(DownloadCoordinator.Artifact.API, "1.1.70");
+    private static final DownloadCoordinator.Key prototypes = new DownloadCoordinator.Key(DownloadCoordinator.Artifact.PROTOTYPES, "1.1.70");
+
+    @Test
+    void runningDownloadIsShared() {
+        var starts = new AtomicInteger();
+        var downloads = new ArrayList<CompletableFuture<DownloadCoordinator.Result>>();
+
+        var first = coordinator.start(api, null, download -> {
+            starts.incrementAndGet();
+            downloads.add(download);
+        });
+        var second = coordinator.start(api, null, download -> starts.incrementAndGet());
+
+        assertSame(first, second);
+        assertEquals(1, starts.get());
+        assertEquals(DownloadCoordinator.Status.RUNNING, coordinator.getStatus(api));
+        assertTrue(coordinator.isRunning(DownloadCoordinator.Artifact.API));
+        assertFalse(coordinator.isRunning(DownloadCoordinator.Artifact.LUALIB));
+
+        downloads.get(0).complete(new DownloadCoordinator.Result(tempDir, false));
+        assertEquals(DownloadCoordinator.Status.DONE, coordinator.getStatus(api));
+
+        // a finished download is started again
+        coordinator.start(api, null, download -> starts.incrementAndGet());
+        assertEquals(2, starts.get());
+    }
+
+    @Test
+    void reloadAfterAllDownloadsOfTheVersion() {
+        var downloads = new ArrayList<CompletableFuture<DownloadCoordinator.Result>>();
+        coordinator.start(api, null, downloads::add);
+        coordinator.start(prototypes, null, downloads::add);
+
+        downloads.get(0).complete(new DownloadCoordinator.Result(tempDir, true));
+        assertTrue(reloads.isEmpty());
+
+        downloads.get(1).complete(new DownloadCoordinator.Result(tempDir, false));
+        assertEquals(List.of("1.1.70"), reloads);
+
+        // nothing changed, nothing to reload
+        coordinator.start(api, null, download -> download.complete(new DownloadCoordinator.Result(tempDir, false)));
+        assertEquals(List.of("1.1.70"), reloads);
+    }
+
+    @Test
+    void previousDirectoryIsUsedWhileRunning() throws Exception {
+        Path previous = Files.createDirectories(tempDir.resolve("1.1.70"));
+        var downloads = new ArrayList<CompletableFuture<DownloadCoordinator.Result>>();
+        coordinator.start(api, previous, downloads::add);
+
+        assertEquals(previous, coordinator.getPrevious(api));
+        assertNull(coordinator.getPrevious(prototypes));
+
+        downloads.get(0).complete(new DownloadCoordinator.Result(previous, true));
+        assertNull(coordinator.getPrevious(api));
+    }
+
+    @Test
+    void awaitWithTimeout() {
+        assertNull(coordinator.await(api, Duration.ofMillis(10)));
+
+        var downloads = new ArrayList<CompletableFuture<DownloadCoordinator.Result>>();
+        coordinator.start(api, null, downloads::add);
+        assertNull(coordinator.await(api, Duration.ofMillis(10)));
+
+        var result = new DownloadCoordinator.Result(tempDir, true);
+        CompletableFuture.runAsync(() -> downloads.get(0).complete(result));
+        assertEquals(result, coordinator.await(api, Duration.ofSeconds(10)));
+    }
+
+    @Test
+    void failedStarterFailsTheDownload() {
+        try {
+            coordinator.start(api, null, download -> {
+                throw new IllegalStateException("no progress manager");
+            });
+            fail("the exception of the starter is rethrown");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertEquals(DownloadCoordinator.Status.FAILED, coordinator.getStatus(api));
+        assertNull(coordinator.await(api, Duration.ofMillis(10)));
+        assertTrue(reloads.isEmpty());
+    }
+
+    @Test
+    void failedDownloadWhichChangedFilesIsReloaded() {
+        var downloads = new ArrayList<CompletableFuture<DownloadCoordinator.Result>>();
+        coordinator.start(api, null, downloads::add);
+        coordinator.start(prototypes, null, downloads::add);
+
+        downloads.get(0).completeExceptionally(new DownloadCoordinator.Failure("connection lost", true));
+        downloads.get(1).completeExceptionally(new DownloadCoordinator.Failure("connection lost", false));
+
+        assertEquals(DownloadCoordinator.Status.FAILED, coordinator.getStatus(api));
+        assertEquals(List.of("1.1.70"), reloads);
+    }
+
+    @Test
+    void keyStaysReservedUntilTheDownloadIsCompleted() {
+        var starts = new AtomicInteger();
+        var downloads = new ArrayList<CompletableFuture<DownloadCoordinator.Result>>();
+        coordinator.start(api, null, downloads::add);
+
+        // however long the download takes, no second download of the key is started
+        coordinator.start(api, null, download -> starts.incrementAndGet());
+        assertEquals(0, starts.get());
+        assertEquals(DownloadCoordinator.Status.RUNNING, coordinator.getStatus(api));
+
+        // the task of a closed project is never run, its onFinished fails the download
+        downloads.get(0).completeExceptionally(new DownloadCoordinator.Failure("did not finish", false));
+        assertEquals(DownloadCoordinator.Status.FAILED, coordinator.getStatus(api));
+
+        coordinator.start(api, null, download -> starts.incrementAndGet());
+        assertEquals(1, starts.get());
+    }
+}
@@ -0,0 +1,57 @@
+package moe.knox.factorio.core;
+
+import junit.framework.TestCase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class FactorioPrototypeStateTest extends TestCase {
+    @TempDir
+    Path stateDir;
+
+    @Test
+    void changesAreWrittenTogether() throws Exception {
+        Path file = stateDir.resolve("prototype_state.jsonl");
+        var state = new FactorioPrototypeState(file, 200);
+
+        state.setPrototypeTypes(List.of("accumulator"));
+        state.setKuckuck("kuckuck");
+        state.setPrototypeTypes(List.of("accumulator", "car"));
+
+        // reads see the change before it is written
+        assertEquals(List.of("accumulator", "car"), state.getPrototypeTypes());
+        assertFalse(Files.exists(file));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (state.getWriter().getWrites() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, state.getWriter().getWrites());
+        assertEquals("{\"format\":1,\"kuckuck\":\"kuckuck\"}\n\"accumulator\"\n\"car\"\n", Files.readString(file));
+
+        // no temporary files are left
+        try (var files = Files.list(stateDir)) {
+            assertEquals(List.of(file), files.toList());
+        }
+
+        var loaded = new FactorioPrototypeState(file, 200);
+        assertEquals(List.of("accumulator", "car"), loaded.getPrototypeTypes());
+    }
+
+    @Test
+    void brokenFileIsEmptyState() throws IOException {
+        Path file = stateDir.resolve("prototype_state.jsonl");
+        Files.writeString(file, "<DataHolder/>");
+
+        var state = new FactorioPrototypeState(file, 200);
+        assertEquals(List.of(), state.getPrototypeTypes());
+
+        state.setPrototypeTypes(List.of("fish"));
+        state.flush();
+        assertEquals(List.of("fish"), new FactorioPrototypeState(file, 200).getPrototypeTypes());
+    }
+}
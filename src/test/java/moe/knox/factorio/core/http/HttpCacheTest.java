@@ -0,0 +1,170 @@
+package moe.knox.factorio.core.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class HttpCacheTest extends TestCase {
+    private static final String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+    @TempDir
+    Path cacheDir;
+
+    private HttpServer server;
+    private String baseLink;
+    private final List<Integer> statusCodes = new ArrayList<>();
+    private String content = "first";
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/etag", exchange -> serve(exchange, "If-None-Match", "ETag", '"' + content + '"'));
+        server.createContext("/last-modified", exchange -> serve(exchange, "If-Modified-Since", "Last-Modified", lastModified));
+        server.createContext("/gzip", exchange -> {
+            try (exchange) {
+                if ("\"gzip\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    statusCodes.add(304);
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+
+                var compressed = new ByteArrayOutputStream();
+                try (var gzip = new GZIPOutputStream(compressed)) {
+                    gzip.write(content.repeat(1000).getBytes(StandardCharsets.UTF_8));
+                }
+                statusCodes.add(200);
+                exchange.getResponseHeaders().set("ETag", "\"gzip\"");
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, compressed.size());
+                try (OutputStream responseBody = exchange.getResponseBody()) {
+                    compressed.writeTo(responseBody);
+                }
+            }
+        });
+        server.createContext("/error", exchange -> {
+            statusCodes.add(503);
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+        baseLink = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void unchangedResourcesAreRevalidated() throws IOException {
+        var httpCache = new HttpCache(cacheDir);
+
+        assertEquals("first", get(httpCache, "/etag"));
+        assertEquals("first", get(httpCache, "/etag"));
+        assertEquals("first", get(httpCache, "/last-modified"));
+        assertEquals("first", get(httpCache, "/last-modified"));
+        assertEquals(List.of(200, 304, 200, 304), statusCodes);
+
+        content = "second";
+        assertEquals("second", get(httpCache, "/etag"));
+        assertEquals(200, statusCodes.get(statusCodes.size() - 1).intValue());
+    }
+
+    @Test
+    void cachedCopyIsServedWhenOffline() throws IOException {
+        get(new HttpCache(cacheDir), "/etag");
+        server.stop(0);
+
+        // a new instance, like after a restart of the IDE
+        assertEquals("first", get(new HttpCache(cacheDir), "/etag"));
+    }
+
+    @Test
+    void errorsWithoutCachedCopy() throws IOException {
+        var httpCache = new HttpCache(cacheDir);
+
+        try {
+            get(httpCache, "/missing");
+            fail("missing resources are not cached");
+        } catch (HttpResponseException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+
+        try {
+            get(httpCache, "/error");
+            fail("server errors are only hidden by a cached copy");
+        } catch (HttpResponseException e) {
+            assertEquals(503, e.getStatusCode());
+        }
+    }
+
+    @Test
+    void invalidatedResourcesAreDownloadedAgain() throws IOException {
+        var httpCache = new HttpCache(cacheDir);
+        get(httpCache, "/etag");
+        httpCache.invalidate(baseLink + "/etag");
+        get(httpCache, "/etag");
+
+        assertEquals(List.of(200, 200), statusCodes);
+    }
+
+    @Test
+    void streamedBodyIsCached() throws IOException {
+        var httpCache = new HttpCache(cacheDir);
+
+        // the body is decompressed while it is read, the rest of it is read by closing the stream
+        try (InputStream inputStream = httpCache.openStreaming(baseLink + "/gzip")) {
+            assertEquals("first", new String(inputStream.readNBytes(5), StandardCharsets.UTF_8));
+        }
+
+        try (InputStream inputStream = httpCache.openStreaming(baseLink + "/gzip")) {
+            assertEquals("first".repeat(1000), new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals("first".repeat(1000), get(httpCache, "/gzip"));
+        assertEquals(List.of(200, 304, 304), statusCodes);
+
+        // no temporary files are left
+        try (var files = Files.list(cacheDir)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    private String get(HttpCache httpCache, String path) throws IOException {
+        return new String(httpCache.getBytes(baseLink + path), StandardCharsets.UTF_8);
+    }
+
+    private void serve(HttpExchange exchange, String conditionHeader, String validatorHeader, String validator) throws IOException {
+        try (exchange) {
+            if (validator.equals(exchange.getRequestHeaders().getFirst(conditionHeader))) {
+                statusCodes.add(304);
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            byte[] body = content.getBytes(StandardCharsets.UTF_8);
+            statusCodes.add(200);
+            exchange.getResponseHeaders().set(validatorHeader, validator);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        }
+    }
+}
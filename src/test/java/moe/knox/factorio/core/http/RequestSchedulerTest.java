@@ -0,0 +1,203 @@
+package moe.knox.factorio.core.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs against a local server, which answers slowly and with errors.
+ */
+public class RequestSchedulerTest extends TestCase {
+    @TempDir
+    Path cacheDir;
+
+    private HttpServer server;
+    private String baseLink;
+    private final Map<String, AtomicInteger> requestsByPath = new ConcurrentHashMap<>();
+    private final AtomicInteger concurrentRequests = new AtomicInteger();
+    private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+    private volatile long delayMillis = 20;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        // the first request of every page is throttled or fails
+        server.createContext("/flaky", exchange -> serve(exchange, attempt -> {
+            if (attempt > 1) {
+                return 200;
+            }
+            if (exchange.getRequestURI().getPath().hashCode() % 2 == 0) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                return 429;
+            }
+            return 503;
+        }));
+        server.createContext("/broken", exchange -> serve(exchange, attempt -> 503));
+        server.createContext("/missing", exchange -> serve(exchange, attempt -> 404));
+        server.createContext("/page", exchange -> serve(exchange, attempt -> 200));
+        server.start();
+        baseLink = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void temporaryErrorsAreRetried() throws Exception {
+        var scheduler = new RequestScheduler(new RequestScheduler.Settings(4, 1000, 100, 4, 10, 100, 1000));
+        var httpCache = new HttpCache(cacheDir);
+
+        List<String> bodies = fetchAll(scheduler, httpCache, "/flaky/", 12);
+
+        for (int i = 0; i < 12; i++) {
+            assertEquals("/flaky/" + i + "#2", bodies.get(i));
+        }
+        assertTrue("at most 4 requests at the same time: " + maxConcurrentRequests.get(), maxConcurrentRequests.get() <= 4);
+
+        var metrics = scheduler.getMetrics().get(0);
+        assertEquals("localhost", metrics.host());
+        assertEquals(24, metrics.requests());
+        assertEquals(12, metrics.retries());
+        assertEquals(12, metrics.tooManyRequests() + metrics.serverErrors());
+        assertTrue(metrics.tooManyRequests() > 0);
+        assertTrue(metrics.serverErrors() > 0);
+        assertEquals(0, metrics.failures());
+    }
+
+    @Test
+    void permanentErrorsAreNotRetried() {
+        var scheduler = new RequestScheduler(new RequestScheduler.Settings(4, 1000, 100, 3, 10, 100, 1000));
+        var httpCache = new HttpCache(cacheDir);
+
+        assertStatusCode(404, scheduler, httpCache, "/missing/1");
+        assertEquals(1, requestsByPath.get("/missing/1").get());
+
+        // gives up after all attempts
+        assertStatusCode(503, scheduler, httpCache, "/broken/1");
+        assertEquals(3, requestsByPath.get("/broken/1").get());
+
+        var metrics = scheduler.getMetrics().get(0);
+        assertEquals(4, metrics.requests());
+        assertEquals(2, metrics.retries());
+        assertEquals(3, metrics.serverErrors());
+        assertEquals(2, metrics.failures());
+    }
+
+    @Test
+    void slowResponsesReduceConcurrency() throws Exception {
+        delayMillis = 120;
+        var scheduler = new RequestScheduler(new RequestScheduler.Settings(6, 1000, 100, 1, 10, 100, 50));
+
+        fetchAll(scheduler, new HttpCache(cacheDir), "/page/", 6);
+
+        assertEquals(1, scheduler.getMetrics().get(0).concurrencyLimit());
+        assertTrue(scheduler.getMetrics().get(0).averageLatencyMillis() >= 100);
+    }
+
+    @Test
+    void fastResponsesIncreaseConcurrency() throws Exception {
+        delayMillis = 0;
+        var scheduler = new RequestScheduler(new RequestScheduler.Settings(6, 1000, 100, 1, 10, 100, 5000));
+
+        fetchAll(scheduler, new HttpCache(cacheDir), "/page/", 30);
+
+        assertEquals(6, scheduler.getMetrics().get(0).concurrencyLimit());
+    }
+
+    @Test
+    void requestRateIsLimited() throws Exception {
+        delayMillis = 0;
+        var scheduler = new RequestScheduler(new RequestScheduler.Settings(6, 20, 1, 1, 10, 100, 5000));
+
+        long start = System.nanoTime();
+        fetchAll(scheduler, new HttpCache(cacheDir), "/page/", 11);
+
+        // the first request uses the token of the bucket, the others wait 50 ms each
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 450);
+    }
+
+    private List<String> fetchAll(RequestScheduler scheduler, HttpCache httpCache, String path, int pages) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < pages; i++) {
+                String url = baseLink + path + i;
+                futures.add(executor.submit(() -> new String(scheduler.execute(url, () -> httpCache.getBytes(url)), StandardCharsets.UTF_8)));
+            }
+
+            List<String> bodies = new ArrayList<>();
+            for (Future<String> future : futures) {
+                bodies.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return bodies;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertStatusCode(int statusCode, RequestScheduler scheduler, HttpCache httpCache, String path) {
+        String url = baseLink + path;
+        try {
+            scheduler.execute(url, () -> httpCache.getBytes(url));
+            fail("the request fails with " + statusCode);
+        } catch (HttpResponseException e) {
+            assertEquals(statusCode, e.getStatusCode());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private void serve(HttpExchange exchange, StatusCodeOfAttempt statusCodeOfAttempt) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        int attempt = requestsByPath.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+        maxConcurrentRequests.accumulateAndGet(concurrentRequests.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(delayMillis);
+
+            int statusCode = statusCodeOfAttempt.statusCode(attempt);
+            if (statusCode != 200) {
+                exchange.sendResponseHeaders(statusCode, -1);
+                return;
+            }
+
+            byte[] body = (path + "#" + attempt).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            concurrentRequests.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface StatusCodeOfAttempt {
+        int statusCode(int attempt) throws IOException;
+    }
+}
@@ -0,0 +1,226 @@
+package moe.knox.factorio.core.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import moe.knox.factorio.core.parser.GeneratedFiles;
+import moe.knox.factorio.core.util.ZipExtractor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Runs against a local server, which supports Range requests and breaks connections.
+ */
+public class ResumableDownloaderTest extends TestCase {
+    private static final Pattern range = Pattern.compile("bytes=(\\d+)-");
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private String baseLink;
+    private byte[] content;
+    private static final String etag = "\"v1\"";
+    /**
+     * the Range header of every request, "" without it
+     */
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    /**
+     * the number of responses, which break after half of their body
+     */
+    private final AtomicInteger brokenResponses = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        content = new byte[300_000];
+        new Random(42).nextBytes(content);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/ranges", exchange -> serve(exchange, true));
+        server.createContext("/no-ranges", exchange -> serve(exchange, false));
+        server.createContext("/chunked", this::serveChunkedZip);
+        server.start();
+        baseLink = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void brokenDownloadsAreResumed() throws IOException {
+        brokenResponses.set(2);
+        var file = tempDir.resolve("factorio-data.zip");
+
+        var result = downloader().download(baseLink + "/ranges", file, GeneratedFiles.hash(content));
+
+        assertEquals(-1, Files.mismatch(file, write(tempDir.resolve("expected"), content)));
+        assertEquals(content.length, result.size());
+        assertEquals(2, result.resumes());
+        assertEquals(3, ranges.size());
+        assertEquals("", ranges.get(0));
+        assertEquals("bytes=" + content.length / 2 + "-", ranges.get(1));
+        assertEquals("bytes=" + (content.length / 2 + content.length / 4) + "-", ranges.get(2));
+        assertFalse(Files.exists(tempDir.resolve("factorio-data.zip.part")));
+        assertFalse(Files.exists(tempDir.resolve("factorio-data.zip.part.validator")));
+    }
+
+    @Test
+    void partOfAPreviousRunIsResumed() throws IOException {
+        var file = tempDir.resolve("factorio-data.zip");
+        brokenResponses.set(1);
+        try {
+            new ResumableDownloader(new RequestScheduler(new RequestScheduler.Settings(1, 1000, 100, 1, 1, 1, 1000)))
+                    .download(baseLink + "/ranges", file, null);
+            fail("the connection broke");
+        } catch (IOException e) {
+            // expected
+        }
+        assertFalse(Files.exists(file));
+        assertEquals(content.length / 2, Files.size(tempDir.resolve("factorio-data.zip.part")));
+
+        var result = downloader().download(baseLink + "/ranges", file, null);
+        assertEquals(GeneratedFiles.hash(content), result.sha256());
+        assertEquals(1, result.resumes());
+    }
+
+    @Test
+    void changedFileIsDownloadedAgain() throws IOException {
+        var file = tempDir.resolve("factorio-data.zip");
+        // a part of another version of the file
+        write(tempDir.resolve("factorio-data.zip.part"), new byte[1000]);
+        Files.writeString(tempDir.resolve("factorio-data.zip.part.validator"), "\"v0\"");
+
+        var result = downloader().download(baseLink + "/ranges", file, GeneratedFiles.hash(content));
+
+        assertEquals(0, result.resumes());
+        assertEquals(content.length, Files.size(file));
+    }
+
+    @Test
+    void serverWithoutRangesStartsAgain() throws IOException {
+        brokenResponses.set(1);
+        var file = tempDir.resolve("factorio-data.zip");
+
+        var result = downloader().download(baseLink + "/no-ranges", file, GeneratedFiles.hash(content));
+
+        assertEquals(0, result.resumes());
+        assertEquals(GeneratedFiles.hash(content), GeneratedFiles.hash(Files.readAllBytes(file)));
+    }
+
+    @Test
+    void wrongChecksumIsRejected() throws IOException {
+        var file = tempDir.resolve("factorio-data.zip");
+        try {
+            downloader().download(baseLink + "/ranges", file, GeneratedFiles.hash(new byte[0]));
+            fail("the checksum does not match");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertFalse(Files.exists(file));
+        assertFalse(Files.exists(tempDir.resolve("factorio-data.zip.part")));
+    }
+
+    @Test
+    void truncatedChunkedZipIsRejected() throws IOException {
+        var file = tempDir.resolve("factorio-data.zip");
+        try {
+            downloader().download(baseLink + "/chunked?truncated", file, null, ZipExtractor::verify);
+            fail("the zip is truncated");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertFalse(Files.exists(file));
+        assertFalse(Files.exists(tempDir.resolve("factorio-data.zip.part")));
+
+        var result = downloader().download(baseLink + "/chunked", file, null, ZipExtractor::verify);
+        assertEquals(GeneratedFiles.hash(zip()), result.sha256());
+    }
+
+    private static ResumableDownloader downloader() {
+        return new ResumableDownloader(new RequestScheduler(new RequestScheduler.Settings(1, 1000, 100, 4, 1, 1, 1000)));
+    }
+
+    private static Path write(Path file, byte[] bytes) throws IOException {
+        Files.write(file, bytes);
+        return file;
+    }
+
+    /**
+     * A zip with the content, the body ends properly after half of it, if the query is `truncated`
+     */
+    private void serveChunkedZip(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] zip = zip();
+            int length = "truncated".equals(exchange.getRequestURI().getQuery()) ? zip.length / 2 : zip.length;
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(zip, 0, length);
+            }
+        }
+    }
+
+    private byte[] zip() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("factorio-data/lualib/util.lua"));
+            zip.write(content);
+            zip.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+    private void serve(HttpExchange exchange, boolean supportsRanges) throws IOException {
+        try (exchange) {
+            String rangeHeader = exchange.getRequestHeaders().getFirst("Range");
+            ranges.add(rangeHeader != null ? rangeHeader : "");
+
+            int start = 0;
+            String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            Matcher matcher = rangeHeader != null ? range.matcher(rangeHeader) : null;
+            if (supportsRanges && matcher != null && matcher.matches() && (ifRange == null || ifRange.equals(etag))) {
+                start = Integer.parseInt(matcher.group(1));
+                if (start >= content.length) {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes */" + content.length);
+                    exchange.sendResponseHeaders(416, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (content.length - 1) + "/" + content.length);
+            }
+
+            exchange.getResponseHeaders().set("ETag", etag);
+            int length = content.length - start;
+            exchange.sendResponseHeaders(start > 0 ? 206 : 200, length);
+
+            OutputStream body = exchange.getResponseBody();
+            if (brokenResponses.getAndDecrement() > 0) {
+                // half of the body, then the connection breaks
+                body.write(content, start, length / 2);
+                body.flush();
+                throw new IOException("connection broken on purpose");
+            }
+            body.write(content, start, length);
+        }
+    }
+}
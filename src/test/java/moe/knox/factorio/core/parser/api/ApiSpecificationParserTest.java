@@ -3,12 +3,24 @@ package moe.knox.factorio.core.parser.api;
 import junit.framework.TestCase;
 import moe.knox.factorio.core.version.ApiVersionResolver;
 import moe.knox.factorio.core.version.FactorioApiVersion;
+import moe.knox.factorio.core.parser.api.data.Concept;
+import moe.knox.factorio.core.parser.api.data.Operator;
 import moe.knox.factorio.core.parser.api.data.RuntimeApi;
+import moe.knox.factorio.core.parser.api.data.ValueType;
+import moe.knox.factorio.core.parser.api.snapshot.RuntimeApiSnapshot;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
 public class ApiSpecificationParserTest extends TestCase {
@@ -34,4 +46,97 @@ public class ApiSpecificationParserTest extends TestCase {
         assertNotNull(runtimeApi.concepts);
         assertNotNull(runtimeApi.defines);
     }
-}
\ No newline at end of file
+
+    @Test
+    void parseFixture() throws IOException {
+        RuntimeApi runtimeApi;
+        try (Reader reader = new InputStreamReader(Objects.requireNonNull(getClass().getResourceAsStream("/fixtures/runtime-api.json")), StandardCharsets.UTF_8)) {
+            runtimeApi = service.parse(reader);
+        }
+
+        assertEquals("1.1.70", runtimeApi.application_version);
+        assertEquals(2, runtimeApi.classes.size());
+        assertEquals("LuaControl", runtimeApi.classes.get(0).name);
+
+        var luaEntity = runtimeApi.classes.get(1);
+        assertEquals("destroy", luaEntity.methods.get(0).name);
+        assertEquals("do_cliff_correction", luaEntity.methods.get(0).parameters.get(0).name);
+        assertEquals(new ValueType.Dictionary(new ValueType.Simple("string"), new ValueType.Simple("uint")), luaEntity.methods.get(1).returnType);
+        assertEquals("param_end", luaEntity.methods.get(1).parameters.get(1).name);
+        assertEquals(new ValueType.Array(new ValueType.Array(new ValueType.Simple("LuaEntity"))), luaEntity.attributes.get(2).type);
+        assertEquals(new ValueType.LuaLazyLoadedValue(new ValueType.Simple("LuaEntityPrototype")), luaEntity.attributes.get(3).type);
+        assertEquals(2, luaEntity.operators.size());
+        assertEquals(Operator.Type.INDEX, luaEntity.operators.get(0).getType());
+        assertEquals(new ValueType.Simple("LuaEntity"), luaEntity.operators.get(0).attribute.type);
+        assertNull(luaEntity.operators.get(0).method);
+        assertEquals(Operator.Type.CALL, luaEntity.operators.get(1).getType());
+        assertEquals("x", luaEntity.operators.get(1).method.parameters.get(0).name);
+        assertNull(luaEntity.operators.get(1).attribute);
+
+        var alignment = runtimeApi.concepts.get(0);
+        assertEquals("Alignment", alignment.name());
+        var union = (ValueType.Union) alignment.type();
+        assertTrue(union.fullFormat());
+        assertEquals(new ValueType.Literal("top-left", "Top left."), union.options().get(0));
+        assertEquals(new ValueType.Type("string", "Something else."), union.options().get(2));
+
+        var mapPosition = (ValueType.Table) runtimeApi.concepts.get(1).type();
+        assertEquals("x", mapPosition.parameters().get(0).name);
+
+        assertEquals(new ValueType.Literal("3", ""), runtimeApi.concepts.get(7).type());
+        assertEquals("game", runtimeApi.globalObjects.get(0).name);
+    }
+
+    @Test
+    void readKey() throws IOException {
+        try (Reader reader = new InputStreamReader(Objects.requireNonNull(getClass().getResourceAsStream("/fixtures/runtime-api.json")), StandardCharsets.UTF_8)) {
+            assertEquals(new RuntimeApiSnapshot.Key("1.1.70", "3"), service.readKey(reader));
+        }
+
+        // the versions are read in any order, a missing one is null
+        assertEquals(new RuntimeApiSnapshot.Key("1.1.70", null), service.readKey(new StringReader("{\"classes\": [], \"application_version\": \"1.1.70\"}")));
+    }
+
+    @Test
+    void typeAroundComplexTypeIsUnwrapped() {
+        String json = """
+                {"application_version": "1.1.70", "concepts": [
+                  {"name": "Ids", "order": 0, "description": "", "type": {"complex_type": "type", "description": "The ids.", "value": {"complex_type": "array", "value": "uint"}}},
+                  {"name": "Id", "order": 1, "description": "", "type": {"complex_type": "type", "description": "An id.", "value": "uint"}}
+                ]}
+                """;
+        RuntimeApi runtimeApi = service.parse(new StringReader(json));
+
+        assertEquals(new ValueType.Array(new ValueType.Simple("uint")), runtimeApi.concepts.get(0).type());
+        assertEquals(new ValueType.Type("uint", "An id."), runtimeApi.concepts.get(1).type());
+    }
+
+    @Test
+    void parseSections() throws IOException {
+        RuntimeApi expected;
+        try (Reader reader = new InputStreamReader(Objects.requireNonNull(getClass().getResourceAsStream("/fixtures/runtime-api.json")), StandardCharsets.UTF_8)) {
+            expected = service.parse(reader);
+        }
+
+        List<RuntimeApi.Section> sections = new ArrayList<>();
+        RuntimeApi runtimeApi;
+        try (Reader reader = new InputStreamReader(Objects.requireNonNull(getClass().getResourceAsStream("/fixtures/runtime-api.json")), StandardCharsets.UTF_8)) {
+            runtimeApi = service.parseSections(reader, (section, api) -> {
+                // a section is complete when it is passed on
+                assertNotNull(section.name(), api);
+                sections.add(section);
+            });
+        }
+
+        // in the order of the json
+        assertEquals(List.of(RuntimeApi.Section.CLASSES, RuntimeApi.Section.EVENTS, RuntimeApi.Section.DEFINES,
+                RuntimeApi.Section.BUILTIN_TYPES, RuntimeApi.Section.CONCEPTS, RuntimeApi.Section.GLOBAL_OBJECTS), sections);
+        assertEquals(expected.application_version, runtimeApi.application_version);
+        assertEquals(expected.classes.stream().map(factorioClass -> factorioClass.name).toList(), runtimeApi.classes.stream().map(factorioClass -> factorioClass.name).toList());
+        assertEquals(expected.classes.get(1).methods.get(1).returnType, runtimeApi.classes.get(1).methods.get(1).returnType);
+        assertEquals(expected.defines.stream().map(define -> define.name).toList(), runtimeApi.defines.stream().map(define -> define.name).toList());
+        assertEquals(expected.concepts.stream().map(Concept::name).toList(), runtimeApi.concepts.stream().map(Concept::name).toList());
+        assertEquals(expected.concepts.get(0).type(), runtimeApi.concepts.get(0).type());
+        assertEquals(expected.globalObjects.size(), runtimeApi.globalObjects.size());
+    }
+}
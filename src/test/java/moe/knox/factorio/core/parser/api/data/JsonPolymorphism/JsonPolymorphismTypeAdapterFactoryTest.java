@@ -0,0 +1,52 @@
+package moe.knox.factorio.core.parser.api.data.JsonPolymorphism;
+
+import com.google.gson.reflect.TypeToken;
+import junit.framework.TestCase;
+import moe.knox.factorio.core.parser.api.ParsingHelper;
+import moe.knox.factorio.core.parser.api.data.Operator;
+import moe.knox.factorio.core.parser.api.data.ValueType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class JsonPolymorphismTypeAdapterFactoryTest extends TestCase {
+    private static final String OPERATORS = """
+            [
+              {"name": "call", "order": 1, "description": "Call operator.", "parameters": [{"name": "x", "order": 0, "description": "", "type": {"complex_type": "array", "value": "uint"}, "optional": false}], "takes_table": false, "return_type": "string"},
+              {"name": "index", "order": 0, "description": "Index access.", "type": "LuaEntity", "read": true, "write": false},
+              {"name": "unknown", "order": 2},
+              {"order": 3, "description": "Length.", "type": "uint", "read": true, "write": false, "name": "length"},
+              {}
+            ]""";
+
+    @Test
+    public void testOperatorsAreBoundByTheirDiscriminator() {
+        List<Operator> operators = ParsingHelper.getGson().fromJson(OPERATORS, new TypeToken<List<Operator>>() {}.getType());
+        assertEquals(5, operators.size());
+
+        Operator call = operators.get(0);
+        assertEquals(Operator.Type.CALL, call.getType());
+        assertNull(call.attribute);
+        assertEquals("call", call.method.name);
+        assertEquals(new ValueType.Array(new ValueType.Simple("uint")), call.method.parameters.get(0).type);
+        assertEquals(new ValueType.Simple("string"), call.method.returnType);
+
+        Operator index = operators.get(1);
+        assertEquals(Operator.Type.INDEX, index.getType());
+        assertNull(index.method);
+        assertEquals(new ValueType.Simple("LuaEntity"), index.attribute.type);
+        assertTrue(index.attribute.read);
+
+        Operator unknown = operators.get(2);
+        assertEquals("unknown", unknown.name);
+        assertNull(unknown.method);
+        assertNull(unknown.attribute);
+
+        Operator length = operators.get(3);
+        assertEquals(Operator.Type.LENGTH, length.getType());
+        assertEquals("Length.", length.attribute.description);
+        assertEquals(3.0, length.attribute.order);
+
+        assertNull(operators.get(4).name);
+    }
+}
@@ -1,11 +1,15 @@
 package moe.knox.factorio.core.parser.api.data;
 
 import junit.framework.TestCase;
+import moe.knox.factorio.core.parser.api.ParsingHelper;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
 
 public class ValueTypeTest extends TestCase {
@@ -18,7 +22,8 @@ public class ValueTypeTest extends TestCase {
         return Stream.of(
                 Arguments.of("simple", new ValueType.Simple("boolean")),
                 Arguments.of("array", new ValueType.Array(new ValueType.Simple("int"))),
-                Arguments.of("LuaLazyLoadedValue", new ValueType.LuaLazyLoadedValue(new ValueType.Simple("int")))
+                Arguments.of("LuaLazyLoadedValue", new ValueType.LuaLazyLoadedValue(new ValueType.Simple("int"))),
+                Arguments.of("table", new ValueType.Table(new ArrayList<>(), null, null))
         );
     }
 
@@ -27,4 +32,75 @@ public class ValueTypeTest extends TestCase {
     public void testTypesPerNativeName(String expectedNativeName, ValueType valueType) {
         assertEquals(valueType.getNativeName(), expectedNativeName);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testInternCanonicalizesEqualTypes() {
+        var interner = new ValueTypeInterner();
+
+        ValueType first = interner.intern(new ValueType.Array(interner.intern(new ValueType.Simple("uint"))));
+        ValueType second = interner.intern(new ValueType.Array(interner.intern(new ValueType.Simple("uint"))));
+        assertSame(first, second);
+
+        ValueType union = interner.intern(new ValueType.Union(List.of(interner.intern(new ValueType.Simple("LuaEntity")), interner.intern(new ValueType.Simple("nil"))), false));
+        assertSame(union, interner.intern(new ValueType.Union(List.of(interner.intern(new ValueType.Simple("LuaEntity")), interner.intern(new ValueType.Simple("nil"))), false)));
+    }
+
+    @Test
+    public void testInternSkipsTables() {
+        var interner = new ValueTypeInterner();
+
+        var table = new ValueType.Table(new ArrayList<>(), null, null);
+        var equalTable = new ValueType.Table(new ArrayList<>(), null, null);
+        assertSame(table, interner.intern(table));
+        assertSame(equalTable, interner.intern(equalTable));
+
+        var arrayOfTable = new ValueType.Array(table);
+        var equalArrayOfTable = new ValueType.Array(table);
+        assertSame(arrayOfTable, interner.intern(arrayOfTable));
+        assertSame(equalArrayOfTable, interner.intern(equalArrayOfTable));
+    }
+
+    @Test
+    public void testInternComparesTheValuesOfTheNode() {
+        var interner = new ValueTypeInterner();
+        ValueType uint = interner.intern(new ValueType.Simple("uint"));
+
+        var struct = interner.intern(new ValueType.Struct(List.of(new ValueType.Struct.StructAttribute("count", 1, "", uint, false, true, false))));
+        assertSame(struct, interner.intern(new ValueType.Struct(List.of(new ValueType.Struct.StructAttribute("count", 1, "", uint, false, true, false)))));
+        assertNotSame(struct, interner.intern(new ValueType.Struct(List.of(new ValueType.Struct.StructAttribute("count", 1, "", uint, true, true, false)))));
+
+        var withoutParameters = interner.intern(new ValueType.Function(null));
+        assertNotSame(withoutParameters, interner.intern(new ValueType.Function(List.of())));
+        assertEquals(5, interner.size());
+    }
+
+    @Test
+    public void testInternersAreIndependent() {
+        var first = new ValueTypeInterner();
+        var second = new ValueTypeInterner();
+
+        ValueType type = first.intern(new ValueType.Simple("uint"));
+        assertNotSame(type, second.intern(new ValueType.Simple("uint")));
+        assertEquals(1, second.size());
+    }
+
+    @Test
+    public void testSharedGsonInternsWithTheInternerOfTheScope() {
+        String json = "{\"complex_type\": \"array\", \"value\": \"uint\"}";
+        var gson = ParsingHelper.getGson();
+
+        try (ValueTypeInterner.Scope scope = ValueTypeInterner.open()) {
+            ValueType first = gson.fromJson(json, ValueType.class);
+            assertSame(first, gson.fromJson(json, ValueType.class));
+            assertSame(scope.getInterner(), ValueTypeInterner.current());
+
+            try (ValueTypeInterner.Scope ignored = ValueTypeInterner.open()) {
+                assertNotSame(first, gson.fromJson(json, ValueType.class));
+            }
+            assertSame(scope.getInterner(), ValueTypeInterner.current());
+        }
+
+        assertNull(ValueTypeInterner.current());
+        assertNotSame(gson.fromJson(json, ValueType.class), gson.fromJson(json, ValueType.class));
+    }
+}
@@ -0,0 +1,132 @@
+package moe.knox.factorio.core.parser.api.snapshot;
+
+import junit.framework.TestCase;
+import moe.knox.factorio.core.parser.api.ApiSpecificationParser;
+import moe.knox.factorio.core.parser.api.data.RuntimeApi;
+import moe.knox.factorio.core.parser.api.data.ValueType;
+import moe.knox.factorio.core.version.FactorioApiVersion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
+
+public class RuntimeApiSnapshotTest extends TestCase {
+    private RuntimeApi runtimeApi;
+
+    @BeforeEach
+    protected void setUp() throws IOException {
+        try (Reader reader = new InputStreamReader(Objects.requireNonNull(getClass().getResourceAsStream("/fixtures/runtime-api.json")), StandardCharsets.UTF_8)) {
+            runtimeApi = (new ApiSpecificationParser()).parse(reader);
+        }
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+        RuntimeApiSnapshot.write(runtimeApi, outputStream);
+
+        var key = RuntimeApiSnapshot.readKey(new ByteArrayInputStream(outputStream.toByteArray()));
+        assertEquals(new RuntimeApiSnapshot.Key("1.1.70", "3"), key);
+
+        RuntimeApi loaded = RuntimeApiSnapshot.read(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertEquals(runtimeApi.classes.size(), loaded.classes.size());
+        for (int i = 0; i < runtimeApi.classes.size(); i++) {
+            var expectedClass = runtimeApi.classes.get(i);
+            var loadedClass = loaded.classes.get(i);
+
+            assertEquals(expectedClass.name, loadedClass.name);
+            assertEquals(expectedClass.baseClasses, loadedClass.baseClasses);
+            assertEquals(expectedClass.methods.size(), loadedClass.methods.size());
+            assertEquals(expectedClass.attributes.size(), loadedClass.attributes.size());
+            for (int j = 0; j < expectedClass.attributes.size(); j++) {
+                assertEquals(expectedClass.attributes.get(j).type, loadedClass.attributes.get(j).type);
+            }
+            assertEquals(expectedClass.operators.size(), loadedClass.operators.size());
+        }
+
+        var method = loaded.classes.get(1).methods.get(1);
+        assertEquals("set_recipe", method.name);
+        assertEquals(runtimeApi.classes.get(1).methods.get(1).returnType, method.returnType);
+        assertEquals("Sets the given recipe.\nMay fail.", method.description);
+
+        assertEquals(runtimeApi.concepts.size(), loaded.concepts.size());
+        for (int i = 0; i < runtimeApi.concepts.size(); i++) {
+            assertEquals(runtimeApi.concepts.get(i).name(), loaded.concepts.get(i).name());
+        }
+        assertEquals(runtimeApi.concepts.get(0).type(), loaded.concepts.get(0).type());
+
+        assertEquals("on-click", loaded.defines.get(0).subkeys.get(0).values.get(0).name);
+        assertEquals("game", loaded.globalObjects.get(0).name);
+        assertEquals("LuaGameScript", loaded.globalObjects.get(0).type);
+    }
+
+    @Test
+    void equalValueTypesAreStoredOnce() throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+        RuntimeApiSnapshot.write(runtimeApi, outputStream);
+        RuntimeApi loaded = RuntimeApiSnapshot.read(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        ValueType returnType = loaded.classes.get(1).methods.get(1).returnType;
+        ValueType conceptType = loaded.concepts.stream().filter(c -> c.name().equals("Counts")).findFirst().orElseThrow().type();
+
+        assertEquals(returnType, conceptType);
+        assertSame(returnType, conceptType);
+    }
+
+    @Test
+    void store(@TempDir Path tempDir) throws IOException {
+        var store = new RuntimeApiSnapshotStore(tempDir);
+        var key = new RuntimeApiSnapshot.Key("1.1.70", "3");
+
+        assertNull(store.load(key));
+
+        store.save(runtimeApi);
+        assertNotNull(store.load(key));
+        assertNull(store.load(new RuntimeApiSnapshot.Key("1.1.71", "3")));
+
+        store.remove(FactorioApiVersion.createVersion("1.1.70"));
+        assertNull(store.load(key));
+    }
+
+    @Test
+    void snapshotOfAnotherApiVersionIsAMiss(@TempDir Path tempDir) throws IOException {
+        var store = new RuntimeApiSnapshotStore(tempDir);
+        store.save(runtimeApi);
+
+        assertNull(store.load(new RuntimeApiSnapshot.Key("1.1.70", "4")));
+        assertNull(store.load(new RuntimeApiSnapshot.Key("1.1.70", null)));
+
+        // the snapshot of the new api_version replaces the outdated one
+        runtimeApi.api_version = "4";
+        store.save(runtimeApi);
+        assertEquals("4", Objects.requireNonNull(store.load(new RuntimeApiSnapshot.Key("1.1.70", "4"))).api_version);
+        assertNull(store.load(new RuntimeApiSnapshot.Key("1.1.70", "3")));
+    }
+
+    @Test
+    void corruptSnapshotIsRemoved(@TempDir Path tempDir) throws IOException {
+        var store = new RuntimeApiSnapshotStore(tempDir);
+        // a valid header, followed by a string with a negative length, which fails inside the decoder
+        Path snapshotFile = tempDir.resolve("1.1.70.snapshot");
+        try (var out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(snapshotFile)))) {
+            out.writeInt(RuntimeApiSnapshot.MAGIC);
+            RuntimeApiSnapshot.writeVarInt(out, RuntimeApiSnapshot.FORMAT_VERSION);
+            out.writeBoolean(true);
+            out.writeUTF("1.1.70");
+            out.writeBoolean(true);
+            out.writeUTF("3");
+            RuntimeApiSnapshot.writeVarInt(out, 1);
+            RuntimeApiSnapshot.writeVarInt(out, -1);
+        }
+
+        assertNull(store.load(new RuntimeApiSnapshot.Key("1.1.70", "3")));
+        assertFalse(Files.exists(snapshotFile));
+    }
+}
@@ -16,8 +16,13 @@ import org.junit.jupiter.params.provider.MethodSource;
 import java.io.BufferedWriter;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -37,4 +42,24 @@ public class ApiFileWriterTest extends TestCase {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void writeConceptsOfEveryKind() throws IOException {
+        RuntimeApi runtimeApi;
+        try (Reader reader = new InputStreamReader(Objects.requireNonNull(getClass().getResourceAsStream("/fixtures/runtime-api.json")), StandardCharsets.UTF_8)) {
+            runtimeApi = new ApiSpecificationParser().parse(reader);
+        }
+
+        var writer = new StringWriter();
+        ApiFileWriter.fromIoWriter(writer).writeRuntimeApi(runtimeApi);
+        var output = writer.toString();
+
+        assertTrue(output.contains("---@class MapPosition\n"));
+        assertTrue(output.contains("---@alias Tick uint\n"));
+        assertTrue(output.contains("---@alias Counts table<string, uint>\n"));
+        assertTrue(output.contains("---@alias Positions MapPosition[]\n"));
+        assertTrue(output.contains("---@class Bounds\n"));
+        assertTrue(output.contains("---@type double|nil\nBounds.right = nil\n"));
+        assertTrue(output.indexOf("Bounds.left") < output.indexOf("Bounds.right"));
+    }
+}
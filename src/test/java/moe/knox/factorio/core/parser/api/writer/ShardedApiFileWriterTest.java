@@ -0,0 +1,118 @@
+package moe.knox.factorio.core.parser.api.writer;
+
+import com.google.gson.JsonParser;
+import junit.framework.TestCase;
+import moe.knox.factorio.core.parser.api.ApiSpecificationParser;
+import moe.knox.factorio.core.parser.api.data.RuntimeApi;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public class ShardedApiFileWriterTest extends TestCase {
+    @Test
+    void writeRuntimeApi(@TempDir Path tempDir) throws IOException {
+        var runtimeApi = parseFixture();
+
+        var result = new ShardedApiFileWriter(tempDir, 4).writeRuntimeApi(runtimeApi);
+        var fileNames = result.files();
+        assertEquals(fileNames, result.changedFiles());
+
+        assertEquals(List.of("global_objects.lua", "defines.lua", "class_LuaControl.lua", "class_LuaEntity.lua", "concepts_0.lua"), fileNames);
+        for (String fileName : fileNames) {
+            assertTrue(Files.isRegularFile(tempDir.resolve(fileName)));
+        }
+
+        var manifest = JsonParser.parseString(Files.readString(tempDir.resolve(ShardedApiFileWriter.MANIFEST_FILE_NAME))).getAsJsonObject();
+        assertEquals("1.1.70", manifest.get("application_version").getAsString());
+        assertEquals(fileNames.size(), manifest.getAsJsonArray("files").size());
+        assertEquals(64, manifest.getAsJsonArray("files").get(0).getAsJsonObject().get("sha256").getAsString().length());
+
+        var luaEntity = Files.readString(tempDir.resolve("class_LuaEntity.lua"));
+        assertTrue(luaEntity.startsWith("--- "));
+        assertTrue(luaEntity.contains("---@class LuaEntity : LuaControl"));
+        assertFalse(luaEntity.contains("---@class LuaControl"));
+
+        var concepts = Files.readString(tempDir.resolve("concepts_0.lua"));
+        assertTrue(concepts.contains("---@alias Positions MapPosition[]"));
+    }
+
+    @Test
+    void unchangedFilesAreNotWrittenAgain(@TempDir Path tempDir) throws IOException {
+        var writer = new ShardedApiFileWriter(tempDir, 4);
+        writer.writeRuntimeApi(parseFixture());
+
+        var definesFile = tempDir.resolve("defines.lua");
+        var lastModified = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(definesFile, lastModified);
+        // a file changed on disk is written again, the file of a removed class is deleted
+        Files.writeString(tempDir.resolve("class_LuaControl.lua"), "changed");
+
+        var runtimeApi = parseFixture();
+        runtimeApi.classes.removeIf(factorioClass -> factorioClass.name.equals("LuaEntity"));
+        var result = writer.writeRuntimeApi(runtimeApi);
+
+        assertTrue(result.hasChanges());
+        assertEquals(List.of("class_LuaControl.lua", "class_LuaEntity.lua"), result.changedFiles());
+        assertEquals(lastModified, Files.getLastModifiedTime(definesFile));
+        assertFalse(Files.exists(tempDir.resolve("class_LuaEntity.lua")));
+
+        result = writer.writeRuntimeApi(runtimeApi);
+        assertFalse(result.hasChanges());
+    }
+
+    @Test
+    void singleFileOfTheOldLayoutIsRemoved(@TempDir Path tempDir) throws IOException {
+        // generated before the api was split, without a manifest
+        Files.writeString(tempDir.resolve(ShardedApiFileWriter.LEGACY_FILE_NAME), "---@class LuaEntity : LuaControl");
+
+        var result = new ShardedApiFileWriter(tempDir, 4).writeRuntimeApi(parseFixture());
+
+        assertFalse(Files.exists(tempDir.resolve(ShardedApiFileWriter.LEGACY_FILE_NAME)));
+        assertTrue(result.changedFiles().contains(ShardedApiFileWriter.LEGACY_FILE_NAME));
+        assertFalse(result.files().contains(ShardedApiFileWriter.LEGACY_FILE_NAME));
+        assertTrue(Files.isRegularFile(tempDir.resolve("class_LuaEntity.lua")));
+    }
+
+    @Test
+    void sectionsAreWrittenWhileParsing(@TempDir Path tempDir) throws IOException {
+        var expectedDir = tempDir.resolve("expected");
+        var expected = new ShardedApiFileWriter(expectedDir, 4).writeRuntimeApi(parseFixture());
+
+        var pipelinedDir = tempDir.resolve("pipelined");
+        List<RuntimeApi.Section> sections = new ArrayList<>();
+        ShardedApiFileWriter.Result result;
+        try (var session = new ShardedApiFileWriter(pipelinedDir, 4).begin();
+             Reader reader = new InputStreamReader(Objects.requireNonNull(getClass().getResourceAsStream("/fixtures/runtime-api.json")), StandardCharsets.UTF_8)) {
+            RuntimeApi runtimeApi = new ApiSpecificationParser().parseSections(reader, (section, api) -> {
+                sections.add(section);
+                session.submit(section, api);
+            });
+            result = session.finish(runtimeApi);
+        }
+
+        // in the order of the json
+        assertEquals(RuntimeApi.Section.CLASSES, sections.get(0));
+        assertEquals(expected.files(), result.files());
+        for (String fileName : result.files()) {
+            assertEquals(Files.readString(expectedDir.resolve(fileName)), Files.readString(pipelinedDir.resolve(fileName)));
+        }
+        assertEquals(Files.readString(expectedDir.resolve(ShardedApiFileWriter.MANIFEST_FILE_NAME)),
+                Files.readString(pipelinedDir.resolve(ShardedApiFileWriter.MANIFEST_FILE_NAME)));
+    }
+
+    private RuntimeApi parseFixture() throws IOException {
+        try (Reader reader = new InputStreamReader(Objects.requireNonNull(getClass().getResourceAsStream("/fixtures/runtime-api.json")), StandardCharsets.UTF_8)) {
+            return new ApiSpecificationParser().parse(reader);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package moe.knox.factorio.core.parser.api.writer;
+
+import junit.framework.TestCase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+public class Utf8ChannelStubOutputTest extends TestCase {
+    @ParameterizedTest
+    @ValueSource(ints = {4, 7, Utf8ChannelStubOutput.DEFAULT_BUFFER_SIZE})
+    void encodesLikeTheJdk(int bufferSize) throws IOException {
+        String text = "--- Entities can be \u00fcmlaut, \u6771\u4eac or \uD83D\uDE80 ".repeat(20);
+
+        assertEquals(text, write(bufferSize, output -> output.append(text)));
+    }
+
+    @Test
+    void appendSingleLineReplacesLineFeeds() throws IOException {
+        assertEquals("--- first second  third", write(16, output -> output.append("--- ").appendSingleLine("first\nsecond\n\nthird")));
+    }
+
+    @Test
+    void appendRepeated() throws IOException {
+        assertEquals("---------- Classes", write(8, output -> output.appendRepeated('-', 10).append(" Classes")));
+    }
+
+    @Test
+    void unpairedSurrogatesAreReplaced() throws IOException {
+        assertEquals("a?b?", write(16, output -> output.append("a\uDE80b").append('\uD83D')));
+    }
+
+    private static String write(int bufferSize, Content content) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var output = new Utf8ChannelStubOutput(Channels.newChannel(bytes), bufferSize)) {
+            content.write(output);
+        }
+
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    private interface Content {
+        void write(StubOutput output) throws IOException;
+    }
+}
@@ -0,0 +1,119 @@
+package moe.knox.factorio.core.parser.prototype;
+
+import junit.framework.TestCase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+public class PackedStubSinkTest extends TestCase {
+    @TempDir
+    Path outputDir;
+
+    @Test
+    void stubsArePackedIntoBalancedFiles() throws IOException {
+        // a stub of an output with one file per stub
+        Files.writeString(outputDir.resolve("Prototype_Old.lua"), "---@class Prototype_Old" + System.lineSeparator());
+
+        var sink = new PackedStubSink(outputDir, 3);
+        int largestStub = 0;
+        for (int i = 0; i < 30; i++) {
+            String stub = stub("Prototype_" + i, 10 + i * 7);
+            largestStub = Math.max(largestStub, stub.length());
+            sink.write("Prototype_" + i + ".lua", stub);
+        }
+        assertTrue(sink.finish());
+
+        List<Path> packs = PackedStubSink.listPacks(outputDir);
+        assertEquals(3, packs.size());
+        try (var files = Files.list(outputDir)) {
+            assertEquals(3, files.count());
+        }
+
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (Path pack : packs) {
+            min = Math.min(min, Files.size(pack));
+            max = Math.max(max, Files.size(pack));
+        }
+        // every stub is added to the smallest pack
+        assertTrue("packs are balanced: " + min + " / " + max, max - min <= largestStub + 100);
+
+        String content = Files.readString(packs.get(0));
+        assertTrue(content.startsWith("-- stub Prototype_0.lua "));
+        assertTrue(content.contains(System.lineSeparator() + System.lineSeparator() + "-- stub "));
+    }
+
+    @Test
+    void unchangedPacksAreNotRewritten() throws IOException {
+        var sink = new PackedStubSink(outputDir, 2);
+        sink.write("Prototype_Car.lua", stub("Prototype_Car", 3));
+        sink.write("Prototype_Fish.lua", stub("Prototype_Fish", 3));
+        assertTrue(sink.finish());
+
+        Path pack = outputDir.resolve("prototype_stubs_1.lua");
+        FileTime modified = FileTime.fromMillis(1000);
+        Files.setLastModifiedTime(pack, modified);
+
+        sink = new PackedStubSink(outputDir, 2);
+        sink.write("Prototype_Car.lua", stub("Prototype_Car", 3));
+        sink.write("Prototype_Fish.lua", stub("Prototype_Fish", 3));
+        assertFalse(sink.finish());
+        assertEquals(modified, Files.getLastModifiedTime(pack));
+    }
+
+    @Test
+    void resumedRunKeepsPreviousStubs() throws IOException {
+        var sink = new PackedStubSink(outputDir, 2);
+        String carHash = sink.write("Prototype_Car.lua", stub("Prototype_Car", 3));
+        String fishHash = sink.write("Prototype_Fish.lua", stub("Prototype_Fish", 3));
+        sink.finish();
+
+        // an empty run keeps everything
+        sink = new PackedStubSink(outputDir, 2);
+        assertFalse(sink.finish());
+        assertEquals(2, PackedStubSink.listPacks(outputDir).size());
+
+        sink = new PackedStubSink(outputDir, 2);
+        assertTrue(sink.contains("Prototype_Car.lua", carHash));
+        assertFalse(sink.contains("Prototype_Fish.lua", carHash));
+        assertFalse(sink.contains("Prototype_Tree.lua", fishHash));
+        sink.write("Prototype_Tree.lua", stub("Prototype_Tree", 5));
+        assertTrue(sink.finish());
+
+        // the fish was not confirmed by the journal, it is dropped
+        sink = new PackedStubSink(outputDir, 2);
+        assertTrue(sink.contains("Prototype_Car.lua", carHash));
+        assertFalse(sink.contains("Prototype_Fish.lua", fishHash));
+        assertTrue(sink.contains("Prototype_Tree.lua", new FileStubSink(outputDir).write("Prototype_Tree.lua", stub("Prototype_Tree", 5))));
+    }
+
+    @Test
+    void fileSinkRemovesPacks() throws IOException {
+        var packedSink = new PackedStubSink(outputDir, 2);
+        packedSink.write("Prototype_Car.lua", stub("Prototype_Car", 3));
+        packedSink.finish();
+
+        var fileSink = new FileStubSink(outputDir);
+        String hash = fileSink.write("Prototype_Car.lua", stub("Prototype_Car", 3));
+        assertTrue(fileSink.finish());
+
+        assertTrue(PackedStubSink.listPacks(outputDir).isEmpty());
+        assertTrue(fileSink.contains("Prototype_Car.lua", hash));
+    }
+
+    private static String stub(String name, int properties) {
+        String newLine = System.lineSeparator();
+        StringBuilder stub = new StringBuilder("---@class ").append(name).append(newLine);
+        stub.append("local ").append(name).append(" = {}").append(newLine).append(newLine);
+        for (int i = 0; i < properties; i++) {
+            stub.append("---@type double").append(newLine);
+            stub.append(name).append(".property_").append(i).append(" = nil").append(newLine).append(newLine);
+        }
+        return stub.toString();
+    }
+}
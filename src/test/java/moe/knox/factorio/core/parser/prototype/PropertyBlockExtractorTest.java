@@ -0,0 +1,70 @@
+package moe.knox.factorio.core.parser.prototype;
+
+import junit.framework.TestCase;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Objects;
+
+public class PropertyBlockExtractorTest extends TestCase {
+    @Test
+    void extractFromWikiPage() throws IOException {
+        Document document;
+        try (InputStream stream = Objects.requireNonNull(getClass().getResourceAsStream("/fixtures/wiki/Prototype_Car.html"))) {
+            document = Jsoup.parse(stream, null, "https://wiki.factorio.com/Prototype/Car");
+        }
+
+        var block = PropertyBlockExtractor.extract(Objects.requireNonNull(document.selectFirst("h3 + p")));
+
+        assertNotNull(block);
+        assertEquals("Types/SpriteVariations", block.typeName());
+        assertEquals("/Types/SpriteVariations", block.typeLink());
+        assertFalse(block.array());
+        assertEquals(List.of(), block.descriptions());
+    }
+
+    @Test
+    void extractArrayWithDescriptions() {
+        var block = PropertyBlockExtractor.extract(paragraph(
+                "<b>Type</b>: table of <a href=\"/Types/Energy\">Types/Energy</a> <i>or</i> <a href=\"/Types/ItemProductPrototype\">Types/ItemProductPrototype</a><br>" +
+                "<b>Default</b>:: <code>{}</code>:<br>" +
+                "<br>" +
+                "Only   used   by <a href=\"/Prototype/Car\">cars</a>.<br>"));
+
+        assertNotNull(block);
+        // the last link is the type
+        assertEquals("Types/ItemProductPrototype", block.typeName());
+        assertEquals("/Types/ItemProductPrototype", block.typeLink());
+        assertTrue(block.array());
+        // empty lines between descriptions are kept, trailing line breaks are not
+        assertEquals(List.of("Default {}", "", "Only used by cars."), block.descriptions());
+    }
+
+    @Test
+    void extractTypeWithoutLink() {
+        var block = PropertyBlockExtractor.extract(paragraph("<b>Type</b>: table<br>Inline definition"));
+
+        assertNotNull(block);
+        assertNull(block.typeName());
+        assertNull(block.typeLink());
+        assertFalse(block.array());
+        assertEquals(List.of("Inline definition"), block.descriptions());
+    }
+
+    @Test
+    void rejectParagraphsWithoutType() {
+        assertNull(PropertyBlockExtractor.extract(paragraph("Used for the car: <a href=\"/Types/Sound\">Sound</a>")));
+        assertNull(PropertyBlockExtractor.extract(paragraph("<b>Mandatory</b>: yes<br><b>Type</b>: bool")));
+        // the label is not followed by a type
+        assertNull(PropertyBlockExtractor.extract(paragraph("<b>Type</b><br>bool")));
+    }
+
+    private static Element paragraph(String html) {
+        return Objects.requireNonNull(Jsoup.parseBodyFragment("<p>" + html + "</p>").selectFirst("p"));
+    }
+}
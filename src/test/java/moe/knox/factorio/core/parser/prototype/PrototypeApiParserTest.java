@@ -0,0 +1,115 @@
+package moe.knox.factorio.core.parser.prototype;
+
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import moe.knox.factorio.core.CoreException;
+import moe.knox.factorio.core.http.HttpCache;
+import moe.knox.factorio.core.parser.prototype.data.PrototypeApi;
+import moe.knox.factorio.core.version.FactorioApiVersion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+public class PrototypeApiParserTest extends TestCase {
+    private static final String NL = System.lineSeparator();
+
+    @Test
+    void parse() throws IOException {
+        var prototypeApi = parseFixture();
+
+        assertEquals("1.1.89", prototypeApi.application_version);
+        assertEquals("prototype", prototypeApi.stage);
+
+        // arranged by order
+        assertEquals(List.of("PrototypeBase", "EntityWithOwnerPrototype", "AccumulatorPrototype"),
+                prototypeApi.prototypes.stream().map(prototype -> prototype.name).toList());
+
+        var accumulator = prototypeApi.prototypes.get(2);
+        assertFalse(accumulator.isAbstract);
+        assertEquals("accumulator", accumulator.typename);
+        assertEquals(List.of("energy_source", "charge_cooldown", "default_output_signal"),
+                accumulator.properties.stream().map(property -> property.name).toList());
+        assertTrue(accumulator.properties.get(2).optional);
+
+        assertEquals(6, prototypeApi.types.size());
+    }
+
+    @Test
+    void writeStubs() throws IOException {
+        var prototypeApi = parseFixture();
+        var stubs = new PrototypeStubWriter().writeStubs(prototypeApi);
+
+        assertEquals(List.of(
+                "Prototype_PrototypeBase.lua", "Prototype_EntityWithOwner.lua", "Prototype_Accumulator.lua",
+                "Order.lua", "Vector3D.lua", "ForceCondition.lua", "SignalIDConnector.lua", "ItemProductPrototype.lua"
+        ), List.copyOf(stubs.keySet()));
+
+        assertEquals(List.of("accumulator"), PrototypeStubWriter.prototypeIds(prototypeApi));
+
+        assertEquals(
+                "---Entity with energy source with specialised animation for charging/discharging." + NL +
+                "---Used for the accumulator entity." + NL +
+                "---@class Prototype_Accumulator : Prototype_EntityWithOwner" + NL +
+                "local Prototype_Accumulator = {}" + NL + NL +
+                "---@type ElectricEnergySource" + NL +
+                "Prototype_Accumulator.energy_source = nil" + NL + NL +
+                "--- How long (in ticks) the animation will last after discharge has been initialized." + NL +
+                "---@type uint16" + NL +
+                "Prototype_Accumulator.charge_cooldown = nil" + NL + NL +
+                "--- [optional] The name of the signal that is the default for when an accumulator is connected to the circuit network." + NL +
+                "---@type SignalIDConnector" + NL +
+                "Prototype_Accumulator.default_output_signal = nil" + NL + NL,
+                stubs.get("Prototype_Accumulator.lua"));
+
+        assertTrue(stubs.get("Prototype_EntityWithOwner.lua").contains("--- [optional, default false]" + NL));
+        assertTrue(stubs.get("Prototype_PrototypeBase.lua").contains("--- [optional, default ] Used to order prototypes in inventory." + NL));
+
+        assertEquals("---The order property is a simple string." + NL + "---@alias Order string" + NL, stubs.get("Order.lua"));
+        assertEquals("---@alias Vector3D float[]" + NL, stubs.get("Vector3D.lua"));
+        assertEquals("---@alias ForceCondition string|'\"all\"'|'\"enemy\"'" + NL, stubs.get("ForceCondition.lua"));
+        assertEquals("---@alias ItemProductPrototype table<string, uint16|double>[]" + NL, stubs.get("ItemProductPrototype.lua"));
+
+        var signal = stubs.get("SignalIDConnector.lua");
+        assertTrue(signal.contains("---@class SignalIDConnector" + NL));
+        assertTrue(signal.contains("---@type string|'\"virtual\"'|'\"item\"'" + NL + "SignalIDConnector.type = nil"));
+    }
+
+    @Test
+    void onlyAMissingPrototypeApiIsNull(@TempDir Path cacheDir) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            int status = exchange.getRequestURI().getPath().startsWith("/1.1.50/") ? 404 : 403;
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            var parser = new PrototypeApiParser(new HttpCache(cacheDir), "http://localhost:" + server.getAddress().getPort());
+            assertNull(parser.parse(FactorioApiVersion.createVersion("1.1.50")));
+
+            try {
+                parser.parse(FactorioApiVersion.createVersion("1.1.89"));
+                fail("only a missing prototype api falls back to the wiki");
+            } catch (CoreException e) {
+                // expected
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private PrototypeApi parseFixture() throws IOException {
+        try (Reader reader = new InputStreamReader(Objects.requireNonNull(getClass().getResourceAsStream("/fixtures/prototype-api.json")), StandardCharsets.UTF_8)) {
+            return new PrototypeApiParser().parse(reader);
+        }
+    }
+}
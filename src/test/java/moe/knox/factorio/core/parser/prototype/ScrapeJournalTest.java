@@ -0,0 +1,73 @@
+package moe.knox.factorio.core.parser.prototype;
+
+import junit.framework.TestCase;
+import moe.knox.factorio.core.parser.GeneratedFiles;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+public class ScrapeJournalTest extends TestCase {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void finishedPagesAreResumed() throws IOException {
+        Path journalFile = tempDir.resolve("journal.jsonl");
+        Path outputDir = Files.createDirectories(tempDir.resolve("library"));
+
+        var journal = ScrapeJournal.open(journalFile);
+        journal.record(done("prototype:/Prototype/Fish", outputDir, "Fish.lua", "---@class Fish"));
+        journal.record(done("prototype:/Prototype/Tree", outputDir, "Tree.lua", "---@class Tree"));
+        journal.record(ScrapeJournal.Entry.of("prototype:/Prototype/Missing", ScrapeJournal.Status.NOT_FOUND));
+        // interrupted while writing the last line
+        Files.writeString(journalFile, "{\"key\":\"prototype:/Prot", StandardOpenOption.APPEND);
+
+        assertTrue(ScrapeJournal.isIncomplete(journalFile));
+
+        // the output of a finished page was changed
+        Files.writeString(outputDir.resolve("Tree.lua"), "changed");
+
+        journal = ScrapeJournal.open(journalFile);
+        var fish = journal.finished("prototype:/Prototype/Fish", outputDir);
+        assertNotNull(fish);
+        assertEquals("fish", fish.id);
+        assertEquals(Map.of("SpriteVariations", "/Types/SpriteVariations"), fish.types);
+        assertNull(journal.finished("prototype:/Prototype/Tree", outputDir));
+        assertEquals(ScrapeJournal.Status.NOT_FOUND, journal.finished("prototype:/Prototype/Missing", outputDir).status);
+        assertNull(journal.finished("prototype:/Prototype/Car", outputDir));
+    }
+
+    @Test
+    void completeJournalStartsAgain() throws IOException {
+        Path journalFile = tempDir.resolve("journal.jsonl");
+        Path outputDir = Files.createDirectories(tempDir.resolve("library"));
+
+        assertFalse(ScrapeJournal.isIncomplete(journalFile));
+
+        var journal = ScrapeJournal.open(journalFile);
+        journal.record(done("prototype:/Prototype/Fish", outputDir, "Fish.lua", "---@class Fish"));
+        journal.markComplete();
+        assertFalse(ScrapeJournal.isIncomplete(journalFile));
+
+        journal = ScrapeJournal.open(journalFile);
+        assertNull(journal.finished("prototype:/Prototype/Fish", outputDir));
+    }
+
+    private static ScrapeJournal.Entry done(String key, Path outputDir, String file, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        Files.write(outputDir.resolve(file), bytes);
+
+        var entry = ScrapeJournal.Entry.of(key, ScrapeJournal.Status.DONE);
+        entry.file = file;
+        entry.sha256 = GeneratedFiles.hash(bytes);
+        entry.id = file.substring(0, file.indexOf('.')).toLowerCase();
+        entry.types = Map.of("SpriteVariations", "/Types/SpriteVariations");
+        return entry;
+    }
+}
@@ -0,0 +1,153 @@
+package moe.knox.factorio.core.parser.prototype;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import moe.knox.factorio.core.http.HttpCache;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves recorded wiki pages from a local http server
+ */
+public class WikiPageFetcherTest extends TestCase {
+    private static final List<String> links = List.of(
+            "/Prototype/Fish", "/Prototype/Tree", "/Prototype/Missing", "/Prototype/Car",
+            "/Prototype/Fish", "/Prototype/Tree", "/Prototype/Car", "/Prototype/Fish"
+    );
+
+    @TempDir
+    Path cacheDir;
+
+    private HttpServer server;
+    private String baseLink;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/Prototype/", this::servePage);
+        server.start();
+        baseLink = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void fetchAllKeepsTheOrderOfTheLinks() throws InterruptedException {
+        var completed = new AtomicInteger();
+        var pages = new WikiPageFetcher(new HttpCache(cacheDir), baseLink, 3).fetchAll(links, link -> link, this::parseId, completed::incrementAndGet);
+
+        assertEquals(links.size(), completed.get());
+        assertEquals(links, pages.stream().map(WikiPageFetcher.Page::link).toList());
+
+        var ids = pages.stream().map(WikiPageFetcher.Page::result).toList();
+        assertEquals(Arrays.asList("fish", "tree", null, "car", "fish", "tree", "car", "fish"), ids);
+
+        var missingPage = pages.get(2);
+        assertTrue(missingPage.isNotFound());
+        assertNotNull(missingPage.error());
+    }
+
+    @Test
+    void fetchAllBoundsTheConcurrentRequests() throws InterruptedException {
+        new WikiPageFetcher(new HttpCache(cacheDir), baseLink, 2).fetchAll(links, link -> link, this::parseId, () -> {});
+
+        assertTrue(maxInFlight.get() <= 2);
+        assertTrue(maxInFlight.get() >= 1);
+    }
+
+    @Test
+    void linksToTheSamePageShareTheFetch() throws InterruptedException {
+        var sameLinks = List.of("/Prototype/Fish", "/Prototype/Fish#pictures", "/Prototype/F%69sh");
+        var fetcher = new WikiPageFetcher(new HttpCache(cacheDir), baseLink, 3);
+        var pages = fetcher.fetchAll(sameLinks, link -> link, this::parseId, () -> {});
+
+        assertEquals(List.of("fish", "fish", "fish"), pages.stream().map(WikiPageFetcher.Page::result).toList());
+        assertEquals(1, requests.get());
+        assertEquals(1, fetcher.getFetches());
+        assertEquals(2, fetcher.getSharedFetches());
+    }
+
+    @Test
+    void fetchAllStopsAtTheEnd() throws InterruptedException {
+        var endLinks = List.of("/Prototype/Fish", "/Prototype/Tree", "/Prototype/Car", "/Prototype/Missing");
+        var pages = new WikiPageFetcher(new HttpCache(cacheDir), baseLink, 1).fetchAll(endLinks, link -> link,
+                (link, document) -> link.endsWith("Tree") ? null : parseId(link, document),
+                page -> page.error() == null && page.result() == null, () -> {});
+
+        assertEquals(List.of("/Prototype/Fish", "/Prototype/Tree"), pages.stream().map(WikiPageFetcher.Page::link).toList());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void normaliseLink() {
+        assertEquals("/Types/FileName", WikiPageFetcher.normaliseLink("/Types/FileName#example"));
+        assertEquals("/Types/Item_to_place", WikiPageFetcher.normaliseLink("/Types/Item%20to place"));
+    }
+
+    @Test
+    void failedRequestsAreReturnedAsErrors() throws InterruptedException {
+        var pages = new WikiPageFetcher(new HttpCache(cacheDir), "http://localhost:1", 2).fetchAll(List.of("/Prototype/Fish"), link -> link, this::parseId, () -> {});
+
+        assertNull(pages.get(0).result());
+        assertNotNull(pages.get(0).error());
+        assertFalse(pages.get(0).isNotFound());
+    }
+
+    private String parseId(String link, Document document) {
+        Element caption = document.selectFirst("td.caption code");
+        return caption == null ? null : caption.text();
+    }
+
+    private void servePage(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            String name = exchange.getRequestURI().getPath().substring("/Prototype/".length());
+            try (InputStream page = getClass().getResourceAsStream("/fixtures/wiki/Prototype_" + name + ".html")) {
+                // slow enough to let the requests overlap
+                Thread.sleep(20);
+
+                if (page == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+
+                byte[] body = page.readAllBytes();
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream responseBody = exchange.getResponseBody()) {
+                    responseBody.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+}
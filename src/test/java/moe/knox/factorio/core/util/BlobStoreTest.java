@@ -0,0 +1,153 @@
+package moe.knox.factorio.core.util;
+
+import junit.framework.TestCase;
+import moe.knox.factorio.core.parser.GeneratedFiles;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+public class BlobStoreTest extends TestCase {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void sameFilesOfTwoVersionsAreStoredOnce() throws IOException {
+        var blobStore = new BlobStore(tempDir.resolve("store"));
+        var v1 = writeDir("lualib/1.1.70", Map.of("util.lua", "return {}", "dataloader.lua", "data = {}", "sub/noise.lua", "noise 1"));
+        var v2 = writeDir("lualib/1.1.71", Map.of("util.lua", "return {}", "dataloader.lua", "data = {}", "sub/noise.lua", "noise 2"));
+
+        var first = blobStore.store("lualib/1.1.70", v1);
+        assertEquals(3, first.files());
+        assertEquals(0, first.sharedFiles());
+
+        var second = blobStore.store("lualib/1.1.71", v2);
+        assertEquals(3, second.files());
+        assertEquals(2, second.sharedFiles());
+        assertEquals("return {}".length() + "data = {}".length(), second.sharedBytes());
+
+        assertTrue(Files.isSameFile(v1.resolve("util.lua"), v2.resolve("util.lua")));
+        assertFalse(Files.isSameFile(v1.resolve("sub/noise.lua"), v2.resolve("sub/noise.lua")));
+        assertEquals("noise 2", Files.readString(v2.resolve("sub/noise.lua")));
+    }
+
+    @Test
+    void deletedDirectoryIsRestored() throws IOException {
+        var blobStore = new BlobStore(tempDir.resolve("store"));
+        var files = Map.of("util.lua", "return {}", "sub/noise.lua", "noise");
+        var dir = writeDir("lualib/1.1.70", files);
+        blobStore.store("lualib/1.1.70", dir);
+
+        deleteDir(dir);
+        assertTrue(blobStore.restore("lualib/1.1.70", dir));
+        for (var file : files.entrySet()) {
+            assertEquals(file.getValue(), Files.readString(dir.resolve(file.getKey())));
+        }
+        assertFalse(Files.exists(tempDir.resolve("lualib/1.1.70.tmp")));
+
+        assertFalse(blobStore.restore("lualib/1.1.71", tempDir.resolve("lualib/1.1.71")));
+        assertFalse(Files.exists(tempDir.resolve("lualib/1.1.71")));
+    }
+
+    @Test
+    void unreferencedBlobsAreCollected() throws IOException {
+        var blobStore = new BlobStore(tempDir.resolve("store"));
+        var v1 = writeDir("lualib/1.1.70", Map.of("util.lua", "return {}", "noise.lua", "noise 1"));
+        var v2 = writeDir("lualib/1.1.71", Map.of("util.lua", "return {}", "noise.lua", "noise 2"));
+        blobStore.store("lualib/1.1.70", v1);
+        blobStore.store("lualib/1.1.71", v2);
+
+        assertEquals(new BlobStore.GarbageResult(0, 0), blobStore.collectGarbage());
+
+        blobStore.forget("lualib/1.1.70");
+        assertFalse(blobStore.contains("lualib/1.1.70"));
+        assertEquals(new BlobStore.GarbageResult(1, "noise 1".length()), blobStore.collectGarbage());
+
+        // the other version still has all its files
+        deleteDir(v2);
+        assertTrue(blobStore.restore("lualib/1.1.71", v2));
+        assertEquals("noise 2", Files.readString(v2.resolve("noise.lua")));
+    }
+
+    @Test
+    void allDirectoriesBelowAKeyAreForgotten() throws IOException {
+        var blobStore = new BlobStore(tempDir.resolve("store"));
+        blobStore.store("lualib/1.1.70", writeDir("lualib/1.1.70", Map.of("util.lua", "return {}")));
+        blobStore.store("lualib/1.1.71", writeDir("lualib/1.1.71", Map.of("util.lua", "return {}")));
+        blobStore.store("factorio_api/1.1.70", writeDir("factorio_api/1.1.70", Map.of("defines.lua", "defines")));
+
+        blobStore.forget("lualib");
+
+        assertFalse(blobStore.contains("lualib/1.1.70"));
+        assertFalse(blobStore.contains("lualib/1.1.71"));
+        assertTrue(blobStore.contains("factorio_api/1.1.70"));
+        assertEquals(new BlobStore.GarbageResult(1, "return {}".length()), blobStore.collectGarbage());
+    }
+
+    @Test
+    void switchingBackToAVersionDoesNotDownloadIt() throws IOException {
+        var blobStore = new BlobStore(tempDir.resolve("store"));
+        var downloads = new ArrayList<String>();
+
+        // like the lualib downloader: restore, or download and store, then collect the garbage
+        for (var version : List.of("1.1.70", "2.0.7", "1.1.70")) {
+            // a version switch removes only the dirs of the other versions
+            var dir = tempDir.resolve("lualib");
+            if (Files.exists(dir)) {
+                deleteDir(dir);
+            }
+
+            var versionDir = dir.resolve(version);
+            if (!blobStore.restore("lualib/" + version, versionDir)) {
+                downloads.add(version);
+                writeDir("lualib/" + version, Map.of("util.lua", "return {}", "version.lua", version));
+                blobStore.store("lualib/" + version, versionDir);
+            }
+            blobStore.collectGarbage();
+            assertEquals(version, Files.readString(versionDir.resolve("version.lua")));
+        }
+
+        assertEquals(List.of("1.1.70", "2.0.7"), downloads);
+    }
+
+    @Test
+    void rewrittenFileDoesNotChangeTheBlob() throws IOException {
+        var blobStore = new BlobStore(tempDir.resolve("store"));
+        var v1 = writeDir("factorio_api/1.1.70", Map.of("defines.lua", "defines"));
+        var v2 = writeDir("factorio_api/1.1.71", Map.of("defines.lua", "defines"));
+        blobStore.store("factorio_api/1.1.70", v1);
+        blobStore.store("factorio_api/1.1.71", v2);
+
+        GeneratedFiles.writeIfChanged(v2.resolve("defines.lua"), "changed defines".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("defines", Files.readString(v1.resolve("defines.lua")));
+        deleteDir(v1);
+        assertTrue(blobStore.restore("factorio_api/1.1.70", v1));
+        assertEquals("defines", Files.readString(v1.resolve("defines.lua")));
+    }
+
+    private Path writeDir(String name, Map<String, String> files) throws IOException {
+        Path dir = tempDir.resolve(name);
+        for (var file : files.entrySet()) {
+            Path path = dir.resolve(file.getKey());
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, file.getValue());
+        }
+        return dir;
+    }
+
+    private static void deleteDir(Path dir) throws IOException {
+        try (var walk = Files.walk(dir)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package moe.knox.factorio.core.util;
+
+import junit.framework.TestCase;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest extends TestCase {
+    @Test
+    void concurrentCallsShareTheWork() throws Exception {
+        var singleFlight = new SingleFlight<String, String>();
+        var runs = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> singleFlight.run("Types/FileName", () -> {
+                started.countDown();
+                await(release);
+                return "FileName#" + runs.incrementAndGet();
+            })));
+            await(started);
+
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> singleFlight.run("Types/FileName", () -> "FileName#" + runs.incrementAndGet())));
+            }
+            // the other calls are waiting for the running work
+            while (singleFlight.getHits() < 3) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("FileName#1", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, runs.get());
+        assertEquals(1, singleFlight.getMisses());
+        assertEquals(3, singleFlight.getHits());
+
+        // finished work is not kept
+        assertEquals("again", singleFlight.run("Types/FileName", () -> "again"));
+        assertEquals(2, singleFlight.getMisses());
+    }
+
+    @Test
+    void failedWorkIsRunAgain() {
+        var singleFlight = new SingleFlight<String, String>();
+
+        try {
+            singleFlight.run("Types/Sound", () -> {
+                throw new IllegalStateException("broken page");
+            });
+            fail("the exception of the work is rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals("broken page", e.getMessage());
+        }
+
+        assertEquals("Sound", singleFlight.run("Types/Sound", () -> "Sound"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package moe.knox.factorio.core.util;
+
+import junit.framework.TestCase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ZipExtractorTest extends TestCase {
+    private static final String root = "wube-factorio-data-1a2b3c/";
+
+    @Test
+    void extractsOnlyTheTargets(@TempDir Path tempDir) throws IOException {
+        var largeFile = "data:extend({})\n".repeat(50_000);
+        var zipFile = writeZip(tempDir.resolve("factorio-data.zip"), Map.of(
+                "core/lualib/util.lua", "return {}",
+                "core/lualib/collision-mask-util/init.lua", "local util = {}",
+                "core/prototypes/style.lua", "style",
+                "base/prototypes/entity/entities.lua", largeFile,
+                "base/graphics/entity/chest.png", "png",
+                "base/locale/en/base.cfg", "[entity-name]"
+        ));
+
+        var lualibDir = tempDir.resolve("lualib");
+        var coreDir = tempDir.resolve("prototypes/core");
+        var baseDir = tempDir.resolve("prototypes/base");
+        var result = new ZipExtractor(2).extract(zipFile, List.of(
+                new ZipExtractor.Target("/lualib/", lualibDir),
+                new ZipExtractor.Target("/core/prototypes/", coreDir),
+                new ZipExtractor.Target("/base/prototypes/", baseDir)
+        ));
+
+        assertEquals(4, result.files());
+        assertEquals("return {}", Files.readString(lualibDir.resolve("util.lua")));
+        assertEquals("local util = {}", Files.readString(lualibDir.resolve("collision-mask-util/init.lua")));
+        assertEquals("style", Files.readString(coreDir.resolve("style.lua")));
+        assertEquals(largeFile, Files.readString(baseDir.resolve("entity/entities.lua")));
+        assertEquals(9 + 15 + 5 + largeFile.length(), result.bytes());
+
+        // nothing else is extracted
+        assertFalse(Files.exists(tempDir.resolve("prototypes/base/graphics")));
+        try (var files = Files.walk(tempDir)) {
+            assertEquals(4, files.filter(file -> file.toString().endsWith(".lua")).count());
+        }
+    }
+
+    @Test
+    void entriesOutsideOfTheTargetAreRejected(@TempDir Path tempDir) throws IOException {
+        var zipFile = writeZip(tempDir.resolve("evil.zip"), Map.of("core/lualib/../../../outside.lua", "evil"));
+
+        var lualibDir = tempDir.resolve("out/lualib");
+        try {
+            new ZipExtractor(1).extract(zipFile, List.of(new ZipExtractor.Target("/lualib/", lualibDir)));
+            fail("the entry is outside of the target");
+        } catch (IOException e) {
+            // expected
+        }
+        assertFalse(Files.exists(tempDir.resolve("outside.lua")));
+    }
+
+    @Test
+    void onlyTheExtractedEntriesAreChecked(@TempDir Path tempDir) throws IOException {
+        var zipFile = writeZip(tempDir.resolve("factorio-data.zip"), Map.of(
+                "core/lualib/util.lua", "lualib content",
+                "base/graphics/entity/chest.png", "graphics content"
+        ), 0);
+        // the entries are stored uncompressed, the changed bytes are read without an error of the inflater
+        damage(zipFile, "graphics content");
+        ZipExtractor.verify(zipFile);
+
+        var lualibDir = tempDir.resolve("lualib");
+        new ZipExtractor(1).extract(zipFile, List.of(new ZipExtractor.Target("/lualib/", lualibDir)));
+        assertEquals("lualib content", Files.readString(lualibDir.resolve("util.lua")));
+
+        damage(zipFile, "lualib content");
+        try {
+            new ZipExtractor(1).extract(zipFile, List.of(new ZipExtractor.Target("/lualib/", tempDir.resolve("lualib2"))));
+            fail("the CRC of the entry does not match");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    void truncatedZipIsRejected(@TempDir Path tempDir) throws IOException {
+        var zipFile = writeZip(tempDir.resolve("factorio-data.zip"), Map.of("core/lualib/util.lua", "return {}"));
+        byte[] bytes = Files.readAllBytes(zipFile);
+        Files.write(zipFile, Arrays.copyOf(bytes, bytes.length - 10));
+
+        try {
+            ZipExtractor.verify(zipFile);
+            fail("the central directory is cut off");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static void damage(Path zipFile, String content) throws IOException {
+        byte[] bytes = Files.readAllBytes(zipFile);
+        byte[] search = content.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i <= bytes.length - search.length; i++) {
+            if (Arrays.equals(bytes, i, i + search.length, search, 0, search.length)) {
+                bytes[i] ^= 1;
+                Files.write(zipFile, bytes);
+                return;
+            }
+        }
+        fail("the content is not in the zip");
+    }
+
+    private static Path writeZip(Path file, Map<String, String> entries) throws IOException {
+        return writeZip(file, entries, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    private static Path writeZip(Path file, Map<String, String> entries, int level) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(bytes)) {
+            zip.setLevel(level);
+            for (var entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(root + entry.getKey()));
+                zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            bytes.writeTo(outputStream);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,165 @@
+package moe.knox.factorio.core.version;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import moe.knox.factorio.core.http.RequestScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs against a local server, which answers like the paginated refs of GitHub.
+ */
+public class TagCatalogTest extends TestCase {
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private String baseLink;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile boolean broken = false;
+    private volatile String firstPage = "[{\"ref\": \"refs/tags/1.1.10\"}, {\"ref\": \"refs/tags/1.1.9\"}, {\"ref\": \"refs/tags/not-a-version\"}]";
+
+    private final MutableClock clock = new MutableClock();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/tags", exchange -> {
+            if ("page=2".equals(exchange.getRequestURI().getQuery())) {
+                respond(exchange, "[{\"ref\": \"refs/tags/0.18.47\"}, {\"ref\": \"refs/tags/1.1.70\"}]");
+            } else {
+                exchange.getResponseHeaders().set("Link", "<" + baseLink + "/tags?page=2>; rel=\"next\", <" + baseLink + "/tags?page=2>; rel=\"last\"");
+                respond(exchange, firstPage);
+            }
+        });
+        server.start();
+        baseLink = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void allPagesAreSortedByVersion() throws IOException {
+        var tags = catalog().fetchTags();
+
+        assertEquals(List.of("0.18.47", "1.1.9", "1.1.10", "1.1.70"), tags.stream().map(TagCatalog.Tag::name).toList());
+        assertEquals("refs/tags/1.1.70", TagCatalog.latest(tags).ref());
+        assertEquals("1.1.9", TagCatalog.find(tags, "1.1.9").name());
+        assertNull(TagCatalog.find(tags, "1.1.71"));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void tagsAreCachedUntilTheyAreTooOld() throws IOException {
+        catalog().fetchTags();
+        assertEquals(2, requests.get());
+
+        // another catalog, like after a restart, uses the file
+        clock.advance(Duration.ofHours(5));
+        assertEquals(4, catalog().fetchTags().size());
+        assertEquals(2, requests.get());
+
+        clock.advance(Duration.ofHours(2));
+        firstPage = "[{\"ref\": \"refs/tags/1.1.71\"}]";
+        var tags = catalog().fetchTags();
+        assertEquals("1.1.71", TagCatalog.latest(tags).name());
+        assertEquals(4, requests.get());
+    }
+
+    @Test
+    void getTagsDoesNotWait() throws Exception {
+        var catalog = catalog();
+        assertTrue(catalog.getTags().isEmpty());
+
+        // the background refresh of the first call
+        var tags = catalog.refresh().get(10, TimeUnit.SECONDS);
+        assertEquals(4, tags.size());
+        assertEquals(tags, catalog.getTags());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void oldTagsAreUsedWhenGitHubFails() throws IOException {
+        catalog().fetchTags();
+
+        broken = true;
+        clock.advance(Duration.ofDays(1));
+        var catalog = catalog();
+        assertEquals(4, catalog.fetchTags().size());
+
+        try {
+            new TagCatalog(tempDir.resolve("other.json"), baseLink + "/tags", Duration.ofHours(6), scheduler(), clock).fetchTags();
+            fail("there are no old tags");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private TagCatalog catalog() {
+        return new TagCatalog(tempDir.resolve("tags.json"), baseLink + "/tags", Duration.ofHours(6), scheduler(), clock);
+    }
+
+    private static RequestScheduler scheduler() {
+        return new RequestScheduler(new RequestScheduler.Settings(2, 1000, 100, 1, 1, 1, 1000));
+    }
+
+    private void respond(HttpExchange exchange, String body) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            if (broken) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(bytes);
+            }
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant now = Instant.parse("2023-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}